@@ -15,19 +15,59 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.crossbar.autobahn.utils.ABLogger;
 import io.crossbar.autobahn.utils.IABLogger;
 import io.crossbar.autobahn.wamp.interfaces.IAuthenticator;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
 import io.crossbar.autobahn.wamp.types.ExitInfo;
 import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.crossbar.autobahn.wamp.utils.HashedWheelTimer;
 import io.crossbar.autobahn.wamp.utils.Platform;
 
+/**
+ * Connects a Session through one of the given transports and joins a realm.
+ * <p>
+ * With several transports, e.g. to the routers of a cluster, each
+ * connection picks one in turn or the one that connected fastest so far,
+ * see {@link #setTransportSelection(int)}. When a transport can't
+ * connect or is closed, the client fails over to the next one and skips
+ * the failed one for a cool-down period.
+ * <p>
+ * Once all transports failed in a row, they are tried again after a
+ * delay that grows exponentially with each round, see
+ * {@link #setMaxRetries(int)}. The session joins again on its own and
+ * restores its subscriptions and registrations, also when the router
+ * said GOODBYE. The exit future completes once the session left or no
+ * retries are left.
+ */
 public class Client {
 
     private static final IABLogger LOGGER = ABLogger.getLogger(Client.class.getName());
+
+    public static final int TRANSPORT_ROUND_ROBIN = 0;
+    public static final int TRANSPORT_LOWEST_RTT = 1;
+
     private final List<ITransport> mTransports;
+    private final TransportPool mTransportPool;
+    // Transports that failed since the last successful connect.
+    private final AtomicInteger mFailures = new AtomicInteger();
+    private volatile int mTransportSelection = TRANSPORT_ROUND_ROBIN;
+    private volatile int mCoolDown = 30000;
+    // Rounds over all transports since the last successful connect.
+    private final AtomicInteger mRetries = new AtomicInteger();
+    private volatile int mMaxRetries = 0;
+    private volatile int mInitialRetryDelay = 1500;
+    private volatile int mMaxRetryDelay = 300000;
+    private volatile double mRetryDelayGrowth = 1.5;
+    private volatile double mRetryDelayJitter = 0.1;
+    private final HashedWheelTimer mRetryTimer = new HashedWheelTimer("autobahn-reconnect");
 
     private Session mSession;
     private String mRealm;
@@ -42,6 +82,7 @@ public class Client {
     public Client(ITransport transport) {
         mTransports = new ArrayList<>();
         mTransports.add(transport);
+        mTransportPool = new TransportPool(mTransports);
     }
 
     public Client(ITransport transport, Executor executor) {
@@ -86,6 +127,7 @@ public class Client {
 
     public Client(List<ITransport> transports) {
         mTransports = transports;
+        mTransportPool = new TransportPool(mTransports);
     }
 
     public Client(List<ITransport> transports, Executor executor) {
@@ -110,6 +152,130 @@ public class Client {
         add(session, realm, null);
     }
 
+    /**
+     * Set how the transport of each connection is picked:
+     * {@link #TRANSPORT_ROUND_ROBIN} takes them in turn,
+     * {@link #TRANSPORT_LOWEST_RTT} the one that took the least time to
+     * connect so far, trying each of them once first.
+     * <p>
+     * DEFAULT: TRANSPORT_ROUND_ROBIN
+     *
+     * @param selection One of the TRANSPORT_ constants.
+     */
+    public void setTransportSelection(int selection) {
+        mTransportSelection = selection;
+    }
+
+    public int getTransportSelection() {
+        return mTransportSelection;
+    }
+
+    /**
+     * Set how long a transport that failed to connect or was lost is
+     * skipped, unless all others failed too.
+     * <p>
+     * DEFAULT: 30 seconds
+     *
+     * @param millis Cool-down in milliseconds.
+     */
+    public void setCoolDown(int millis) {
+        if (millis >= 0) {
+            mCoolDown = millis;
+        }
+    }
+
+    public int getCoolDown() {
+        return mCoolDown;
+    }
+
+    /**
+     * Set how many more rounds over all transports are made once each of
+     * them failed in a row, -1 to retry forever.
+     * <p>
+     * DEFAULT: 0 (no retries)
+     *
+     * @param maxRetries Number of retries.
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries >= -1) {
+            mMaxRetries = maxRetries;
+        }
+    }
+
+    public int getMaxRetries() {
+        return mMaxRetries;
+    }
+
+    /**
+     * Set the delay before the first retry.
+     * <p>
+     * DEFAULT: 1.5 seconds
+     *
+     * @param millis Delay in milliseconds.
+     */
+    public void setInitialRetryDelay(int millis) {
+        if (millis >= 0) {
+            mInitialRetryDelay = millis;
+        }
+    }
+
+    public int getInitialRetryDelay() {
+        return mInitialRetryDelay;
+    }
+
+    /**
+     * Set the delay the growth of the retry delay stops at.
+     * <p>
+     * DEFAULT: 5 minutes
+     *
+     * @param millis Delay in milliseconds.
+     */
+    public void setMaxRetryDelay(int millis) {
+        if (millis >= 0) {
+            mMaxRetryDelay = millis;
+        }
+    }
+
+    public int getMaxRetryDelay() {
+        return mMaxRetryDelay;
+    }
+
+    /**
+     * Set the factor the retry delay is multiplied by with each retry.
+     * <p>
+     * DEFAULT: 1.5
+     *
+     * @param growth Factor of at least 1.
+     */
+    public void setRetryDelayGrowth(double growth) {
+        if (growth >= 1) {
+            mRetryDelayGrowth = growth;
+        }
+    }
+
+    public double getRetryDelayGrowth() {
+        return mRetryDelayGrowth;
+    }
+
+    /**
+     * Set by how much each retry delay is randomly made longer or
+     * shorter, so that the clients of a router that went away don't all
+     * come back at the same time.
+     * <p>
+     * DEFAULT: 0.1 (up to 10%)
+     *
+     * @param jitter Fraction of the delay, from 0 to 1.
+     */
+    public void setRetryDelayJitter(double jitter) {
+        if (jitter >= 0 && jitter <= 1) {
+            mRetryDelayJitter = jitter;
+        }
+    }
+
+    public double getRetryDelayJitter() {
+        return mRetryDelayJitter;
+    }
+
     public CompletableFuture<ExitInfo> connect() {
         return connect(new TransportOptions());
     }
@@ -121,26 +287,130 @@ public class Client {
                         LOGGER.i(String.format("JOINED session=%s realm=%s", details.sessionID,
                                 details.realm))));
         mSession.addOnDisconnectListener((session, wasClean) -> {
-            for (ITransport transport: mTransports) {
-                try {
-                    transport.close();
-                } catch (Exception ignore) {
-
-                }
+            // A GOODBYE from the router or a clean close is no reason to stop.
+            if (!mSession.isGoodbyeSent()) {
+                // Once the session can connect again.
+                mSession.getDisconnectFuture().thenRunAsync(
+                        () -> retry(options, exitFuture, null), getExecutor());
+                return;
             }
-            exitFuture.complete(new ExitInfo(wasClean));
+            exit(exitFuture, new ExitInfo(true), null);
         });
-        CompletableFuture.runAsync(() -> {
+        mFailures.set(0);
+        mRetries.set(0);
+        CompletableFuture.runAsync(() -> connect(options, exitFuture), getExecutor());
+        return exitFuture;
+    }
+
+    private void connect(TransportOptions options, CompletableFuture<ExitInfo> exitFuture) {
+        ITransport transport = mTransportPool.next(mTransportSelection == TRANSPORT_LOWEST_RTT);
+        try {
+            transport.connect(new TransportHandler(transport), options);
+        } catch (Exception e) {
+            LOGGER.w("Failed to connect: " + e.getMessage(), e);
+            mTransportPool.onFailed(transport, mCoolDown, TimeUnit.MILLISECONDS);
+            mFailures.incrementAndGet();
+            retry(options, exitFuture, e);
+        }
+    }
+
+    // Fails over to the next transport, or tries all of them again after
+    // the retry delay once each failed in a row.
+    private void retry(TransportOptions options, CompletableFuture<ExitInfo> exitFuture,
+                       Exception cause) {
+        if (mFailures.get() < mTransportPool.size()) {
+            connect(options, exitFuture);
+            return;
+        }
+        int retries = mRetries.getAndIncrement();
+        if (mMaxRetries != -1 && retries >= mMaxRetries) {
+            exit(exitFuture, new ExitInfo(false), cause);
+            return;
+        }
+        long delay = getRetryDelay(retries);
+        LOGGER.i(String.format("All transports failed, retrying in %dms", delay));
+        mFailures.set(0);
+        mRetryTimer.newTimeout(() -> CompletableFuture.runAsync(
+                () -> connect(options, exitFuture), getExecutor()), delay, TimeUnit.MILLISECONDS);
+    }
+
+    long getRetryDelay(int retries) {
+        double delay = Math.min(mInitialRetryDelay * Math.pow(mRetryDelayGrowth, retries),
+                mMaxRetryDelay);
+        delay *= 1 + mRetryDelayJitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.round(delay);
+    }
+
+    private void exit(CompletableFuture<ExitInfo> exitFuture, ExitInfo exitInfo,
+                      Exception cause) {
+        mRetryTimer.stop();
+        for (ITransport transport: mTransports) {
             try {
-                mTransports.get(0).connect(mSession, options);
-            } catch (Exception e) {
-                exitFuture.completeExceptionally(e);
+                transport.close();
+            } catch (Exception ignore) {
+
             }
-        }, getExecutor());
-        return exitFuture;
+        }
+        if (cause != null) {
+            exitFuture.completeExceptionally(cause);
+        } else {
+            exitFuture.complete(exitInfo);
+        }
     }
 
     public void setOptions(TransportOptions options) {
-        mTransports.get(0).setOptions(options);
+        for (ITransport transport: mTransports) {
+            transport.setOptions(options);
+        }
+    }
+
+    // Passes everything on to the session, taking note of how the
+    // transport fares on the way.
+    private final class TransportHandler implements ITransportHandler {
+
+        private final ITransport mTransport;
+        private final long mConnectStarted = System.nanoTime();
+
+        TransportHandler(ITransport transport) {
+            mTransport = transport;
+        }
+
+        @Override
+        public void onConnect(ITransport transport, ISerializer serializer) throws Exception {
+            mTransportPool.onConnected(mTransport, System.nanoTime() - mConnectStarted);
+            mFailures.set(0);
+            mRetries.set(0);
+            mSession.onConnect(transport, serializer);
+        }
+
+        @Override
+        public void onMessage(byte[] payload, boolean isBinary) throws Exception {
+            mSession.onMessage(payload, isBinary);
+        }
+
+        @Override
+        public void onWritabilityChanged(boolean writable) {
+            mSession.onWritabilityChanged(writable);
+        }
+
+        @Override
+        public void onLeave(CloseDetails details) {
+            mSession.onLeave(details);
+        }
+
+        @Override
+        public void onDisconnect(boolean wasClean) {
+            if (!mSession.isGoodbyeSent()) {
+                LOGGER.d("Transport closed, skipping it for " + mCoolDown + "ms");
+                mTransportPool.onFailed(mTransport, mCoolDown, TimeUnit.MILLISECONDS);
+                mFailures.incrementAndGet();
+            }
+            mSession.onDisconnect(wasClean);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return mSession.isConnected();
+        }
     }
 }
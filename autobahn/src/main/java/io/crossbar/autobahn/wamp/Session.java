@@ -20,7 +20,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -46,12 +48,15 @@ import io.crossbar.autobahn.wamp.interfaces.TriFunction;
 import io.crossbar.autobahn.wamp.messages.Abort;
 import io.crossbar.autobahn.wamp.messages.Authenticate;
 import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Cancel;
 import io.crossbar.autobahn.wamp.messages.Challenge;
 import io.crossbar.autobahn.wamp.messages.Error;
 import io.crossbar.autobahn.wamp.messages.Event;
 import io.crossbar.autobahn.wamp.messages.Goodbye;
 import io.crossbar.autobahn.wamp.messages.Hello;
+import io.crossbar.autobahn.wamp.messages.Interrupt;
 import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
 import io.crossbar.autobahn.wamp.messages.Publish;
 import io.crossbar.autobahn.wamp.messages.Published;
 import io.crossbar.autobahn.wamp.messages.Register;
@@ -68,6 +73,7 @@ import io.crossbar.autobahn.wamp.messages.Yield;
 import io.crossbar.autobahn.wamp.reflectionRoles.ReflectionServices;
 import io.crossbar.autobahn.wamp.reflectionRoles.WampException;
 import io.crossbar.autobahn.wamp.requests.CallRequest;
+import io.crossbar.autobahn.wamp.requests.InvocationRequest;
 import io.crossbar.autobahn.wamp.requests.PublishRequest;
 import io.crossbar.autobahn.wamp.requests.RegisterRequest;
 import io.crossbar.autobahn.wamp.requests.SubscribeRequest;
@@ -87,10 +93,12 @@ import io.crossbar.autobahn.wamp.types.Registration;
 import io.crossbar.autobahn.wamp.types.SessionDetails;
 import io.crossbar.autobahn.wamp.types.SubscribeOptions;
 import io.crossbar.autobahn.wamp.types.Subscription;
+import io.crossbar.autobahn.wamp.utils.ConcurrentLongMap;
+import io.crossbar.autobahn.wamp.utils.HashedWheelTimer;
 import io.crossbar.autobahn.wamp.utils.IDGenerator;
+import io.crossbar.autobahn.wamp.utils.SerialExecutor;
 import io.crossbar.autobahn.wamp.utils.Platform;
 
-import static io.crossbar.autobahn.wamp.messages.MessageMap.MESSAGE_TYPE_MAP;
 import static io.crossbar.autobahn.wamp.utils.Shortcuts.getOrDefault;
 import static java.util.concurrent.CompletableFuture.runAsync;
 
@@ -107,31 +115,67 @@ public class Session implements ISession, ITransportHandler {
     private final int STATE_GOODBYE_SENT = 6;
     private final int STATE_ABORT_SENT = 7;
 
-    private ITransport mTransport;
-    private ISerializer mSerializer;
+    private static final String ERROR_TIMEOUT = "wamp.error.timeout";
+    private static final String ERROR_CANCELED = "wamp.error.canceled";
+    private static final String CANCEL_MODE_KILL = "kill";
+
+    private volatile ITransport mTransport;
+    private volatile ISerializer mSerializer;
     private Executor mExecutor;
     private CompletableFuture<SessionDetails> mJoinFuture;
     private List<IAuthenticator> mAuthenticators;
 
-    private final ArrayList<OnJoinListener> mOnJoinListeners;
-    private final ArrayList<OnReadyListener> mOnReadyListeners;
-    private final ArrayList<OnLeaveListener> mOnLeaveListeners;
-    private final ArrayList<OnConnectListener> mOnConnectListeners;
-    private final ArrayList<OnDisconnectListener> mOnDisconnectListeners;
-    private final ArrayList<OnUserErrorListener> mOnUserErrorListeners;
+    private final List<OnJoinListener> mOnJoinListeners;
+    private final List<OnReadyListener> mOnReadyListeners;
+    private final List<OnLeaveListener> mOnLeaveListeners;
+    private final List<OnConnectListener> mOnConnectListeners;
+    private final List<OnDisconnectListener> mOnDisconnectListeners;
+    private final List<OnUserErrorListener> mOnUserErrorListeners;
+    private final List<OnWritabilityChangedListener> mOnWritabilityChangedListeners;
     private final IDGenerator mIDGenerator;
-    private final Map<Long, CallRequest> mCallRequests;
-    private final Map<Long, SubscribeRequest> mSubscribeRequests;
-    private final Map<Long, PublishRequest> mPublishRequests;
-    private final Map<Long, RegisterRequest> mRegisterRequest;
-    private final Map<Long, List<Subscription>> mSubscriptions;
-    private final Map<Long, Registration> mRegistrations;
-    private final Map<Long, UnsubscribeRequest> mUnsubscribeRequests;
-    private final Map<Long, UnregisterRequest> mUnregisterRequests;
-
-    private int mState = STATE_DISCONNECTED;
-    private long mSessionID;
-    private boolean mGoodbyeSent;
+    private final MessageHandler[] mMessageHandlers;
+
+    // Pending requests and active subscriptions/registrations, keyed by WAMP ID.
+    // These are written by application threads and by the transport thread
+    // concurrently, hence the thread-safe, primitive-keyed tables.
+    private final ConcurrentLongMap<CallRequest> mCallRequests;
+    private final ConcurrentLongMap<SubscribeRequest> mSubscribeRequests;
+    private final ConcurrentLongMap<PublishRequest> mPublishRequests;
+    private final ConcurrentLongMap<RegisterRequest> mRegisterRequest;
+    private final ConcurrentLongMap<List<Subscription>> mSubscriptions;
+    private final ConcurrentLongMap<SerialExecutor> mEventLanes;
+    private final ConcurrentLongMap<Registration> mRegistrations;
+    private final ConcurrentLongMap<UnsubscribeRequest> mUnsubscribeRequests;
+    private final ConcurrentLongMap<UnregisterRequest> mUnregisterRequests;
+    private final ConcurrentLongMap<InvocationRequest> mInvocations;
+
+    // Subscriptions and registrations restored after a reconnect, by the
+    // ID of the SUBSCRIBE/REGISTER request.
+    private final ConcurrentLongMap<List<Subscription>> mResubscribeRequests;
+    private final ConcurrentLongMap<Registration> mReregisterRequests;
+    // The router picks new IDs for what is restored, these map the ID a
+    // Subscription or Registration was created with to the current one.
+    private final ConcurrentLongMap<Long> mRestoredSubscriptionIDs;
+    private final ConcurrentLongMap<Long> mRestoredRegistrationIDs;
+    // Those whose restore was cut short by losing the transport again,
+    // restored by the next join along with the rest.
+    private final List<List<Subscription>> mPendingRestoreSubscriptions;
+    private final List<Registration> mPendingRestoreRegistrations;
+
+    // One timer for the deadlines of all pending calls of this session,
+    // its thread is started by the first call with a timeout and ticks
+    // until the session disconnects.
+    private final HashedWheelTimer mCallTimer;
+
+    private volatile int mState = STATE_DISCONNECTED;
+    private volatile long mSessionID;
+    private volatile boolean mCompleteOnWrite;
+    // Completes once the session is reset after the last disconnect and
+    // can be connected again.
+    private volatile CompletableFuture<Void> mDisconnectFuture =
+            CompletableFuture.completedFuture(null);
+    // Set once the application leaves, until it joins again.
+    private volatile boolean mGoodbyeSent;
     private String mRealm;
     private ReflectionServices mReflectionServices;
 
@@ -140,21 +184,32 @@ public class Session implements ISession, ITransportHandler {
     }
 
     public Session(Executor executor) {
-        mOnJoinListeners = new ArrayList<>();
-        mOnReadyListeners = new ArrayList<>();
-        mOnLeaveListeners = new ArrayList<>();
-        mOnConnectListeners = new ArrayList<>();
-        mOnDisconnectListeners = new ArrayList<>();
-        mOnUserErrorListeners = new ArrayList<>();
+        mOnJoinListeners = new CopyOnWriteArrayList<>();
+        mOnReadyListeners = new CopyOnWriteArrayList<>();
+        mOnLeaveListeners = new CopyOnWriteArrayList<>();
+        mOnConnectListeners = new CopyOnWriteArrayList<>();
+        mOnDisconnectListeners = new CopyOnWriteArrayList<>();
+        mOnUserErrorListeners = new CopyOnWriteArrayList<>();
+        mOnWritabilityChangedListeners = new CopyOnWriteArrayList<>();
         mIDGenerator = new IDGenerator();
-        mCallRequests = new HashMap<>();
-        mSubscribeRequests = new HashMap<>();
-        mPublishRequests = new HashMap<>();
-        mRegisterRequest = new HashMap<>();
-        mSubscriptions = new HashMap<>();
-        mRegistrations = new HashMap<>();
-        mUnsubscribeRequests = new HashMap<>();
-        mUnregisterRequests = new HashMap<>();
+        mMessageHandlers = createMessageHandlers();
+        mCallRequests = new ConcurrentLongMap<>();
+        mSubscribeRequests = new ConcurrentLongMap<>();
+        mPublishRequests = new ConcurrentLongMap<>();
+        mRegisterRequest = new ConcurrentLongMap<>();
+        mSubscriptions = new ConcurrentLongMap<>();
+        mEventLanes = new ConcurrentLongMap<>();
+        mRegistrations = new ConcurrentLongMap<>();
+        mUnsubscribeRequests = new ConcurrentLongMap<>();
+        mUnregisterRequests = new ConcurrentLongMap<>();
+        mInvocations = new ConcurrentLongMap<>();
+        mResubscribeRequests = new ConcurrentLongMap<>();
+        mReregisterRequests = new ConcurrentLongMap<>();
+        mRestoredSubscriptionIDs = new ConcurrentLongMap<>();
+        mRestoredRegistrationIDs = new ConcurrentLongMap<>();
+        mPendingRestoreSubscriptions = new CopyOnWriteArrayList<>();
+        mPendingRestoreRegistrations = new CopyOnWriteArrayList<>();
+        mCallTimer = new HashedWheelTimer("autobahn-call-timeouts");
         if (executor == null) {
             throw new IllegalArgumentException("executor must not be null");
         }
@@ -193,36 +248,111 @@ public class Session implements ISession, ITransportHandler {
     }
 
     private void send(IMessage message) {
-        if (!isConnected()) {
+        ITransport transport = mTransport;
+        ISerializer serializer = mSerializer;
+        if (transport == null || serializer == null) {
+            throw new IllegalStateException("no transport");
+        }
+
+        LOGGER.d("  >>> TX : " + message);
+        transport.send(message, serializer);
+    }
+
+    private CompletableFuture<Void> sendAsync(IMessage message) {
+        ITransport transport = mTransport;
+        ISerializer serializer = mSerializer;
+        if (transport == null || serializer == null) {
             throw new IllegalStateException("no transport");
         }
 
         LOGGER.d("  >>> TX : " + message);
-        mTransport.send(mSerializer.serialize(message.marshal()), mSerializer.isBinary());
+        return transport.sendAsync(message, serializer);
+    }
+
+    /**
+     * When enabled, a publish without acknowledge returns a future that
+     * completes once the PUBLISH was written to the socket, and fails if
+     * the transport dropped or rejected it, instead of a future that is
+     * complete right away. Producers can wait for it to pace themselves.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to complete publications when written.
+     */
+    public void setCompleteOnWrite(boolean enabled) {
+        mCompleteOnWrite = enabled;
+    }
+
+    public boolean getCompleteOnWrite() {
+        return mCompleteOnWrite;
+    }
+
+    /**
+     * Returns whether messages can be sent without exceeding the send
+     * buffer of the transport, see OnWritabilityChangedListener.
+     * @return false while the send buffer is full or not connected
+     */
+    public boolean isWritable() {
+        ITransport transport = mTransport;
+        return transport != null && transport.isWritable();
+    }
+
+    @Override
+    public void onWritabilityChanged(boolean writable) {
+        // Synchronously, so that listeners see the changes in order.
+        for (OnWritabilityChangedListener listener: mOnWritabilityChangedListeners) {
+            listener.onWritabilityChanged(this, writable);
+        }
     }
 
     @Override
     public void onMessage(byte[] payload, boolean isBinary) throws Exception {
-        // transform bytes to raw message:
-        List<Object> rawMessage = mSerializer.unserialize(payload, isBinary);
+        // transform bytes to raw message, args and kwargs are only decoded
+        // once they are used:
+        onRawMessage(mSerializer.unserializeLazily(payload, isBinary));
+    }
 
-        // transform raw message to typed message:
+    private void onRawMessage(List<Object> rawMessage) {
+        // transform raw message to typed message, both the parser and
+        // the handler are looked up directly by the message type code:
         try {
-            int messageType = (int) rawMessage.get(0);
-            Class<? extends IMessage> messageKlass = MESSAGE_TYPE_MAP.get(messageType);
-            IMessage message = (IMessage) messageKlass.getMethod(
-                    "parse", List.class).invoke(null, rawMessage);
+            IMessage message = MessageMap.parse(rawMessage);
             LOGGER.d("  <<< RX : " + message);
             if (mSessionID == 0) {
                 onPreSessionMessage(message);
             } else {
-                onMessage(message);
+                onMessage((int) rawMessage.get(0), message);
             }
         } catch (Exception e) {
             LOGGER.d("mapping received message bytes to IMessage failed: " + e.getMessage());
         }
     }
 
+    private void onMessage(int messageType, IMessage message) throws Exception {
+        MessageHandler handler = mMessageHandlers[messageType];
+        if (handler == null) {
+            throw new ProtocolError(String.format("Unexpected message %s",
+                    message.getClass().getName()));
+        }
+        handler.handle(message);
+    }
+
+    private MessageHandler[] createMessageHandlers() {
+        MessageHandler[] handlers = new MessageHandler[MessageMap.MAX_MESSAGE_TYPE + 1];
+        handlers[Result.MESSAGE_TYPE] = message -> onResult((Result) message);
+        handlers[Subscribed.MESSAGE_TYPE] = message -> onSubscribed((Subscribed) message);
+        handlers[Event.MESSAGE_TYPE] = message -> onEvent((Event) message);
+        handlers[Published.MESSAGE_TYPE] = message -> onPublished((Published) message);
+        handlers[Registered.MESSAGE_TYPE] = message -> onRegistered((Registered) message);
+        handlers[Invocation.MESSAGE_TYPE] = message -> onInvocation((Invocation) message);
+        handlers[Interrupt.MESSAGE_TYPE] = message -> onInterrupt((Interrupt) message);
+        handlers[Goodbye.MESSAGE_TYPE] = message -> onGoodbye((Goodbye) message);
+        handlers[Unregistered.MESSAGE_TYPE] = message -> onUnregistered((Unregistered) message);
+        handlers[Unsubscribed.MESSAGE_TYPE] = message -> onUnsubscribed((Unsubscribed) message);
+        handlers[Error.MESSAGE_TYPE] = message -> onError((Error) message);
+        return handlers;
+    }
+
     @Override
     public void onLeave(CloseDetails details) {
         if (mState == STATE_DISCONNECTED) {
@@ -245,6 +375,7 @@ public class Session implements ISession, ITransportHandler {
             Welcome msg = (Welcome) message;
             mState = STATE_JOINED;
             mSessionID = msg.session;
+            restore();
             SessionDetails details = new SessionDetails(msg.realm, msg.session, msg.authid,
                     msg.authrole, msg.authmethod);
             mJoinFuture.complete(details);
@@ -319,281 +450,391 @@ public class Session implements ISession, ITransportHandler {
         }
     }
 
-    private void onMessage(IMessage message) throws Exception {
-        if (message instanceof Result) {
-            Result msg = (Result) message;
-            CallRequest request = getOrDefault(mCallRequests, msg.request, null);
-            if (request == null) {
-                throw new ProtocolError(String.format(
-                        "RESULT received for non-pending request ID %s", msg.request));
-            }
+    private void onResult(Result msg) throws Exception {
+        if (msg.progress) {
+            onProgressResult(msg);
+            return;
+        }
+        CallRequest request = mCallRequests.remove(msg.request);
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "RESULT received for non-pending request ID %s", msg.request));
+        }
+        request.cancelTimeout();
+
+        if (request.receivesProgress()) {
+            // Complete only after the consumer has seen all progressive results.
+            request.afterProgress(() -> {
+                try {
+                    completeCall(request, msg);
+                } catch (Exception e) {
+                    request.onReply.completeExceptionally(e);
+                }
+            }, mExecutor);
+        } else {
+            completeCall(request, msg);
+        }
+    }
 
-            mCallRequests.remove(msg.request);
-            if (request.resultTypeRef != null) {
-                // FIXME: check args length > 1 and == 0, and kwargs != null
-                // we cannot currently POJO automap these cases!
-                request.onReply.complete(mSerializer.convertValue(
-                        msg.args.get(0), request.resultTypeRef));
-            } else if (request.resultTypeClass != null) {
-                request.onReply.complete(mSerializer.convertValue(
-                        msg.args.get(0), request.resultTypeClass));
-            } else {
-                request.onReply.complete(new CallResult(msg.args, msg.kwargs));
-            }
-        } else if (message instanceof Subscribed) {
-            Subscribed msg = (Subscribed) message;
-            SubscribeRequest request = getOrDefault(mSubscribeRequests, msg.request, null);
-            if (request == null) {
-                throw new ProtocolError(String.format(
-                        "SUBSCRIBED received for non-pending request ID %s", msg.request));
+    private void onProgressResult(Result msg) {
+        CallRequest request = mCallRequests.get(msg.request);
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "RESULT received for non-pending request ID %s", msg.request));
+        }
+        if (!request.receivesProgress()) {
+            throw new ProtocolError(String.format(
+                    "Progressive RESULT received for request ID %s without receive_progress",
+                    msg.request));
+        }
+        CallResult result = new CallResult(msg.args, msg.kwargs);
+        request.afterProgress(() -> {
+            try {
+                request.options.onProgress.accept(result);
+            } catch (Exception e) {
+                LOGGER.w("Progress consumer failed", e);
             }
+        }, mExecutor);
+    }
 
-            mSubscribeRequests.remove(msg.request);
-            if (!mSubscriptions.containsKey(msg.subscription)) {
-                mSubscriptions.put(msg.subscription, new ArrayList<>());
-            }
-            Subscription subscription = new Subscription(msg.subscription, request.topic,
-                    request.resultTypeRef, request.resultTypeClass, request.handler, this);
-            mSubscriptions.get(msg.subscription).add(subscription);
-            request.onReply.complete(subscription);
-        } else if (message instanceof Event) {
-            Event msg = (Event) message;
-            List<Subscription> subscriptions = getOrDefault(mSubscriptions, msg.subscription, null);
-            if (subscriptions == null) {
-                throw new ProtocolError(String.format(
-                        "EVENT received for non-subscribed subscription ID %s", msg.subscription));
+    private void completeCall(CallRequest request, Result msg) {
+        if (request.resultTypeRef != null) {
+            // FIXME: check args length > 1 and == 0, and kwargs != null
+            // we cannot currently POJO automap these cases!
+            request.onReply.complete(mSerializer.convertArg(
+                    msg.args, 0, request.resultTypeRef));
+        } else if (request.resultTypeClass != null) {
+            request.onReply.complete(mSerializer.convertArg(
+                    msg.args, 0, request.resultTypeClass));
+        } else {
+            request.onReply.complete(new CallResult(msg.args, msg.kwargs));
+        }
+    }
+
+    private void onSubscribed(Subscribed msg) throws Exception {
+        List<Subscription> restored = mResubscribeRequests.remove(msg.request);
+        if (restored != null) {
+            for (Subscription subscription: restored) {
+                setRestoredID(mRestoredSubscriptionIDs, subscription.subscription,
+                        msg.subscription);
             }
+            mSubscriptions.computeIfAbsent(
+                    msg.subscription, id -> new CopyOnWriteArrayList<>()).addAll(restored);
+            return;
+        }
+        SubscribeRequest request = mSubscribeRequests.remove(msg.request);
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "SUBSCRIBED received for non-pending request ID %s", msg.request));
+        }
 
-            List<CompletableFuture<?>> futures = new ArrayList<>();
+        Subscription subscription = new Subscription(msg.subscription, request.topic,
+                request.resultTypeRef, request.resultTypeClass, request.handler,
+                request.options, this);
+        mSubscriptions.computeIfAbsent(
+                msg.subscription, id -> new CopyOnWriteArrayList<>()).add(subscription);
+        request.onReply.complete(subscription);
+    }
 
-            for (Subscription subscription: subscriptions) {
-                EventDetails details = new EventDetails(
-                        subscription, msg.publication,
-                        msg.topic != null ? msg.topic : subscription.topic,
-                        msg.retained, -1, null,
-                        null, this);
-
-                CompletableFuture future = null;
-                // Check if we expect a POJO.
-                Object arg;
-                if (subscription.resultTypeRef != null) {
-                    arg = mSerializer.convertValue(msg.args.get(0), subscription.resultTypeRef);
-                } else if (subscription.resultTypeClass != null) {
-                    arg = mSerializer.convertValue(msg.args.get(0), subscription.resultTypeClass);
-                } else {
-                    arg = msg.args;
-                }
+    private void onEvent(Event msg) throws Exception {
+        List<Subscription> subscriptions = mSubscriptions.get(msg.subscription);
+        if (subscriptions == null) {
+            throw new ProtocolError(String.format(
+                    "EVENT received for non-subscribed subscription ID %s", msg.subscription));
+        }
 
-                if (subscription.handler instanceof Runnable) {
-                    Runnable handler = (Runnable) subscription.handler;
-                    future = runAsync(handler::run, mExecutor);
-                } else if (subscription.handler instanceof Consumer) {
-                    Consumer handler = (Consumer) subscription.handler;
-                    future = runAsync(() -> handler.accept(arg), mExecutor);
-                } else if (subscription.handler instanceof Function) {
-                    Function handler = (Function) subscription.handler;
-                    future = runAsync(() -> handler.apply(arg), mExecutor);
-                } else if (subscription.handler instanceof BiConsumer) {
-                    BiConsumer handler = (BiConsumer) subscription.handler;
-                    future = runAsync(() -> handler.accept(arg, details), mExecutor);
-                } else if (subscription.handler instanceof BiFunction) {
-                    BiFunction handler = (BiFunction) subscription.handler;
-                    future = runAsync(() -> handler.apply(arg, details), mExecutor);
-                } else if (subscription.handler instanceof TriConsumer) {
-                    TriConsumer handler = (TriConsumer) subscription.handler;
-                    future = runAsync(
-                            () -> handler.accept(arg, msg.kwargs, details), mExecutor);
-                } else if (subscription.handler instanceof TriFunction) {
-                    TriFunction handler = (TriFunction) subscription.handler;
-                    future = runAsync(() -> handler.apply(arg, msg.kwargs, details), mExecutor);
-                } else {
-                    // FIXME: never going to reach here, though would be better to throw.
-                }
-                futures.add(future);
-            }
+        // Events of a subscription are delivered in order on its own lane,
+        // lanes of different subscriptions run in parallel on mExecutor.
+        SerialExecutor lane = mEventLanes.computeIfAbsent(
+                msg.subscription, id -> new SerialExecutor(mExecutor));
 
-            // Not really doing anything with the combined futures.
-            combineFutures(futures);
-        } else if (message instanceof Published) {
-            Published msg = (Published) message;
-            PublishRequest request = getOrDefault(mPublishRequests, msg.request, null);
-            if (request == null) {
-                throw new ProtocolError(String.format(
-                        "PUBLISHED received for non-pending request ID %s", msg.request));
-            }
+        ISerializer serializer = mSerializer;
+        for (Subscription subscription: subscriptions) {
+            lane.execute(() -> dispatchEvent(subscription, msg, serializer));
+        }
+    }
 
-            mPublishRequests.remove(msg.request);
-            Publication publication = new Publication(msg.publication);
-            request.onReply.complete(publication);
-        } else if (message instanceof Registered) {
-            Registered msg = (Registered) message;
-            RegisterRequest request = getOrDefault(mRegisterRequest, msg.request, null);
-
-            if (request == null) {
-                throw new ProtocolError(String.format(
-                        "REGISTERED received for already existing registration ID %s",
-                        msg.request));
-            }
-            mRegisterRequest.remove(msg.request);
-            Registration registration = new Registration(
-                    msg.registration, request.procedure, request.endpoint, this);
-            mRegistrations.put(msg.registration, registration);
-            request.onReply.complete(registration);
-        } else if (message instanceof Invocation) {
-            Invocation msg = (Invocation) message;
-            Registration registration = getOrDefault(mRegistrations, msg.registration, null);
-
-            if (registration == null) {
-                throw new ProtocolError(String.format(
-                        "INVOCATION received for non-registered registration ID %s",
-                        msg.registration));
-            }
+    private void dispatchEvent(Subscription subscription, Event msg, ISerializer serializer) {
+        // Decoded here rather than on the receiving thread, and not at all
+        // for handlers that don't take the args.
+        Object arg;
+        if (subscription.handler instanceof Runnable) {
+            arg = null;
+        } else if (subscription.resultTypeRef != null) {
+            // Check if we expect a POJO.
+            arg = serializer.convertArg(msg.args, 0, subscription.resultTypeRef);
+        } else if (subscription.resultTypeClass != null) {
+            arg = serializer.convertArg(msg.args, 0, subscription.resultTypeClass);
+        } else {
+            arg = msg.args;
+        }
 
-            long callerSessionID = getOrDefault(msg.details, "caller", -1L);
-            String callerAuthID = getOrDefault(msg.details, "caller_authid", null);
-            String callerAuthRole = getOrDefault(msg.details, "caller_authrole", null);
-            
-            InvocationDetails details = new InvocationDetails(
-                    registration, registration.procedure, callerSessionID, callerAuthID, callerAuthRole, this);
-
-            runAsync(() -> {
-                Object result;
-                if (registration.endpoint instanceof Supplier) {
-                    Supplier endpoint = (Supplier) registration.endpoint;
-                    result = endpoint.get();
-                } else if (registration.endpoint instanceof Function) {
-                    Function endpoint = (Function) registration.endpoint;
-                    result = endpoint.apply(msg.args);
-                } else if (registration.endpoint instanceof BiFunction) {
-                    BiFunction endpoint = (BiFunction) registration.endpoint;
-                    result = endpoint.apply(msg.args, details);
-                } else if (registration.endpoint instanceof TriFunction) {
-                    TriFunction endpoint = (TriFunction) registration.endpoint;
-                    result = endpoint.apply(msg.args, msg.kwargs, details);
-                } else {
-                    IInvocationHandler endpoint = (IInvocationHandler) registration.endpoint;
-                    result = endpoint.apply(msg.args, msg.kwargs, details);
-                }
+        if (subscription.handler instanceof Runnable) {
+            ((Runnable) subscription.handler).run();
+        } else if (subscription.handler instanceof Consumer) {
+            ((Consumer) subscription.handler).accept(arg);
+        } else if (subscription.handler instanceof Function) {
+            ((Function) subscription.handler).apply(arg);
+        } else if (subscription.handler instanceof BiConsumer) {
+            ((BiConsumer) subscription.handler).accept(arg, newEventDetails(subscription, msg));
+        } else if (subscription.handler instanceof BiFunction) {
+            ((BiFunction) subscription.handler).apply(arg, newEventDetails(subscription, msg));
+        } else if (subscription.handler instanceof TriConsumer) {
+            ((TriConsumer) subscription.handler).accept(
+                    arg, msg.kwargs, newEventDetails(subscription, msg));
+        } else if (subscription.handler instanceof TriFunction) {
+            ((TriFunction) subscription.handler).apply(
+                    arg, msg.kwargs, newEventDetails(subscription, msg));
+        } else {
+            // FIXME: never going to reach here, though would be better to throw.
+        }
+    }
 
-                if (result instanceof CompletableFuture) {
-                    CompletableFuture<InvocationResult> fResult =
-                            (CompletableFuture<InvocationResult>) result;
-                    fResult.whenCompleteAsync((invocRes, throwable) -> {
-                        if (throwable != null) {
-
-                            if (throwable instanceof WampException){
-                                WampException casted = (WampException) throwable;
-                                send(new Error(Invocation.MESSAGE_TYPE, msg.request,
-                                        casted.getErrorUri(), casted.getArguments(), casted.getKwArguments()));
-                            }
-                            else{
-                                List<Object> args = new ArrayList<>();
-                                args.add(throwable.getMessage());
-                                send(new Error(Invocation.MESSAGE_TYPE, msg.request,
-                                        "wamp.error.runtime_error", args, null));
-                            }
-
-                        } else {
-                            send(new Yield(msg.request, invocRes.results, invocRes.kwresults));
-                        }
-                    }, mExecutor);
-                } else if (result instanceof InvocationResult) {
-                    InvocationResult res = (InvocationResult) result;
-                    send(new Yield(msg.request, res.results, res.kwresults));
-                } else if (result instanceof List) {
-                    send(new Yield(msg.request, (List) result, null));
-                } else if (result instanceof Map) {
-                    send(new Yield(msg.request, null, (Map) result));
-                } else if (result instanceof Void) {
-                    send(new Yield(msg.request, null, null));
-                } else {
-                    List<Object> item = new ArrayList<>();
-                    item.add(result);
-                    send(new Yield(msg.request, item, null));
-                }
-            }, mExecutor).whenCompleteAsync((aVoid, throwable) -> {
-                // FIXME: implement better errors
-                if (throwable != null) {
-                    if (throwable instanceof WampException){
-                        WampException casted = (WampException) throwable;
-                        send(new Error(Invocation.MESSAGE_TYPE, msg.request,
-                                casted.getErrorUri(), casted.getArguments(), casted.getKwArguments()));
-                    }
-                    else
-                    {
-                        List<Object> args = new ArrayList<>();
-                        args.add(throwable.getMessage());
-                        send(new Error(Invocation.MESSAGE_TYPE, msg.request, "wamp.error.runtime_error",
-                                args, null));
+    private EventDetails newEventDetails(Subscription subscription, Event msg) {
+        return new EventDetails(
+                subscription, msg.publication,
+                msg.topic != null ? msg.topic : subscription.topic,
+                msg.retained, -1, null,
+                null, this);
+    }
+
+    private void onPublished(Published msg) throws Exception {
+        PublishRequest request = mPublishRequests.remove(msg.request);
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "PUBLISHED received for non-pending request ID %s", msg.request));
+        }
+
+        Publication publication = new Publication(msg.publication);
+        request.onReply.complete(publication);
+    }
+
+    private void onRegistered(Registered msg) throws Exception {
+        Registration restored = mReregisterRequests.remove(msg.request);
+        if (restored != null) {
+            setRestoredID(mRestoredRegistrationIDs, restored.registration, msg.registration);
+            mRegistrations.put(msg.registration, restored);
+            return;
+        }
+        RegisterRequest request = mRegisterRequest.remove(msg.request);
+
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "REGISTERED received for already existing registration ID %s",
+                    msg.request));
+        }
+        Registration registration = new Registration(
+                msg.registration, request.procedure, request.endpoint, request.options, this);
+        mRegistrations.put(msg.registration, registration);
+        request.onReply.complete(registration);
+    }
+
+    private void onInvocation(Invocation msg) throws Exception {
+        Registration registration = mRegistrations.get(msg.registration);
+
+        if (registration == null) {
+            throw new ProtocolError(String.format(
+                    "INVOCATION received for non-registered registration ID %s",
+                    msg.registration));
+        }
+
+        long callerSessionID = getOrDefault(msg.details, "caller", -1L);
+        String callerAuthID = getOrDefault(msg.details, "caller_authid", null);
+        String callerAuthRole = getOrDefault(msg.details, "caller_authrole", null);
+        
+        boolean receiveProgress = getOrDefault(msg.details, "receive_progress", false);
+
+        InvocationDetails details = new InvocationDetails(
+                registration, registration.procedure, callerSessionID, callerAuthID, callerAuthRole,
+                this, receiveProgress, (args, kwargs) -> {
+                    // Nothing to send once the invocation was interrupted.
+                    if (mInvocations.containsKey(msg.request)) {
+                        send(new Yield(msg.request, args, kwargs, true));
                     }
-                }
-            });
-        } else if (message instanceof Goodbye) {
-            Goodbye msg = (Goodbye) message;
-            CloseDetails details = new CloseDetails(msg.reason, msg.message);
-            List<CompletableFuture<?>> futures = new ArrayList<>();
-            for (OnLeaveListener listener: mOnLeaveListeners) {
-                futures.add(runAsync(() -> listener.onLeave(this, details), mExecutor));
+                });
+        InvocationRequest invocation = new InvocationRequest(msg.request, details);
+        mInvocations.put(msg.request, invocation);
+
+        runAsync(() -> {
+            if (details.isCancelled()) {
+                // Interrupted before it even started.
+                return;
             }
-            CompletableFuture d = combineFutures(futures);
-            d.thenRunAsync(() -> {
-                LOGGER.d("Notified Session.onLeave listeners, now closing transport");
-                if (mTransport != null && mTransport.isOpen()) {
-                    try {
-                        mTransport.close();
-                    } catch (Exception e) {
-                        throw new CompletionException(e);
+            Object result;
+            if (registration.endpoint instanceof Supplier) {
+                Supplier endpoint = (Supplier) registration.endpoint;
+                result = endpoint.get();
+            } else if (registration.endpoint instanceof Function) {
+                Function endpoint = (Function) registration.endpoint;
+                result = endpoint.apply(msg.args);
+            } else if (registration.endpoint instanceof BiFunction) {
+                BiFunction endpoint = (BiFunction) registration.endpoint;
+                result = endpoint.apply(msg.args, details);
+            } else if (registration.endpoint instanceof TriFunction) {
+                TriFunction endpoint = (TriFunction) registration.endpoint;
+                result = endpoint.apply(msg.args, msg.kwargs, details);
+            } else {
+                IInvocationHandler endpoint = (IInvocationHandler) registration.endpoint;
+                result = endpoint.apply(msg.args, msg.kwargs, details);
+            }
+
+            if (result instanceof CompletableFuture) {
+                CompletableFuture<InvocationResult> fResult =
+                        (CompletableFuture<InvocationResult>) result;
+                invocation.setResult(fResult);
+                fResult.whenCompleteAsync((invocRes, throwable) -> {
+                    if (throwable != null) {
+                        sendInvocationError(msg.request, throwable);
+                    } else if (mInvocations.remove(msg.request) != null) {
+                        send(new Yield(msg.request, invocRes.results, invocRes.kwresults));
                     }
+                }, mExecutor);
+            } else if (mInvocations.remove(msg.request) == null) {
+                // Interrupted while running, the ERROR was already sent.
+            } else if (result instanceof InvocationResult) {
+                InvocationResult res = (InvocationResult) result;
+                send(new Yield(msg.request, res.results, res.kwresults));
+            } else if (result instanceof List) {
+                send(new Yield(msg.request, (List) result, null));
+            } else if (result instanceof Map) {
+                send(new Yield(msg.request, null, (Map) result));
+            } else if (result instanceof Void) {
+                send(new Yield(msg.request, null, null));
+            } else {
+                List<Object> item = new ArrayList<>();
+                item.add(result);
+                send(new Yield(msg.request, item, null));
+            }
+        }, mExecutor).whenCompleteAsync((aVoid, throwable) -> {
+            if (throwable != null) {
+                sendInvocationError(msg.request, throwable);
+            }
+        });
+    }
+
+    private void sendInvocationError(long request, Throwable throwable) {
+        if (mInvocations.remove(request) == null) {
+            // Interrupted, the ERROR was already sent.
+            return;
+        }
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        // FIXME: implement better errors
+        if (throwable instanceof WampException) {
+            WampException casted = (WampException) throwable;
+            send(new Error(Invocation.MESSAGE_TYPE, request,
+                    casted.getErrorUri(), casted.getArguments(), casted.getKwArguments()));
+        } else {
+            List<Object> args = new ArrayList<>();
+            args.add(throwable.getMessage());
+            send(new Error(Invocation.MESSAGE_TYPE, request, "wamp.error.runtime_error",
+                    args, null));
+        }
+    }
+
+    private void onInterrupt(Interrupt msg) {
+        InvocationRequest invocation = mInvocations.remove(msg.request);
+        if (invocation == null) {
+            // Already answered, nothing to interrupt.
+            return;
+        }
+        LOGGER.d(String.format("Invocation %s of %s interrupted, mode=%s",
+                msg.request, invocation.details.procedure, msg.mode));
+        invocation.cancel();
+        // The router has already answered the caller and doesn't wait for us.
+        if (!Interrupt.KILL_NO_WAIT.equals(msg.mode)) {
+            send(new Error(Invocation.MESSAGE_TYPE, msg.request, ERROR_CANCELED, null, null));
+        }
+    }
+
+    private void onGoodbye(Goodbye msg) throws Exception {
+        CloseDetails details = new CloseDetails(msg.reason, msg.message);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (OnLeaveListener listener: mOnLeaveListeners) {
+            futures.add(runAsync(() -> listener.onLeave(this, details), mExecutor));
+        }
+        CompletableFuture d = combineFutures(futures);
+        d.thenRunAsync(() -> {
+            LOGGER.d("Notified Session.onLeave listeners, now closing transport");
+            if (mTransport != null && mTransport.isOpen()) {
+                try {
+                    mTransport.close();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
                 }
-                mState = STATE_DISCONNECTED;
-            }, mExecutor);
-        } else if (message instanceof Unregistered) {
-            Unregistered msg = (Unregistered) message;
-            UnregisterRequest request = getOrDefault(mUnregisterRequests, msg.request, null);
-            if (request == null) {
-                throw new ProtocolError(String.format(
-                        "UNREGISTERED received for already unregistered registration ID %s",
-                        msg.registration));
             }
-            if (mRegistrations.containsKey(request.registrationID)) {
-                mRegistrations.remove(request.registrationID);
+            mState = STATE_DISCONNECTED;
+        }, mExecutor);
+    }
+
+    private void onUnregistered(Unregistered msg) throws Exception {
+        UnregisterRequest request = mUnregisterRequests.remove(msg.request);
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "UNREGISTERED received for already unregistered registration ID %s",
+                    msg.registration));
+        }
+        mRegistrations.remove(request.registrationID);
+        request.onReply.complete(0);
+    }
+
+    private void onUnsubscribed(Unsubscribed msg) throws Exception {
+        UnsubscribeRequest request = mUnsubscribeRequests.remove(msg.request);
+        if (request == null) {
+            throw new ProtocolError(String.format(
+                    "UNSUBSCRIBED received for non-pending request ID %s", msg.request));
+        }
+        List<Subscription> subscriptions = mSubscriptions.get(request.subscriptionID);
+        if (subscriptions == null || subscriptions.isEmpty()) {
+            mEventLanes.remove(request.subscriptionID);
+        }
+        request.onReply.complete(subscriptions == null ? 0 : subscriptions.size());
+    }
+
+    private void onError(Error msg) throws Exception {
+        CompletableFuture<?> onReply = null;
+        if (msg.requestType == Call.MESSAGE_TYPE) {
+            CallRequest request = mCallRequests.remove(msg.request);
+            if (request != null) {
+                request.cancelTimeout();
+                onReply = request.onReply;
             }
-            request.onReply.complete(0);
-        } else if (message instanceof Unsubscribed) {
-            Unsubscribed msg = (Unsubscribed) message;
-            UnsubscribeRequest request = getOrDefault(mUnsubscribeRequests, msg.request, null);
-            List<Subscription> subscriptions = mSubscriptions.get(request.subscriptionID);
-            request.onReply.complete(subscriptions.size());
-        } else if (message instanceof Error) {
-            Error msg = (Error) message;
-            CompletableFuture<?> onReply = null;
-            if (msg.requestType == Call.MESSAGE_TYPE && mCallRequests.containsKey(msg.request)) {
-                onReply = mCallRequests.get(msg.request).onReply;
-                mCallRequests.remove(msg.request);
-            } else if (msg.requestType == Publish.MESSAGE_TYPE
-                    && mPublishRequests.containsKey(msg.request)) {
-                onReply = mPublishRequests.get(msg.request).onReply;
-                mPublishRequests.remove(msg.request);
-            } else if (msg.requestType == Subscribe.MESSAGE_TYPE
-                    && mSubscribeRequests.containsKey(msg.request)) {
-                onReply = mSubscribeRequests.get(msg.request).onReply;
-                mSubscribeRequests.remove(msg.request);
-            } else if (msg.requestType == Register.MESSAGE_TYPE
-                    && mRegisterRequest.containsKey(msg.request)) {
-                onReply = mRegisterRequest.get(msg.request).onReply;
-                mRegisterRequest.remove(msg.request);
+        } else if (msg.requestType == Publish.MESSAGE_TYPE) {
+            PublishRequest request = mPublishRequests.remove(msg.request);
+            onReply = request == null ? null : request.onReply;
+        } else if (msg.requestType == Subscribe.MESSAGE_TYPE) {
+            List<Subscription> restored = mResubscribeRequests.remove(msg.request);
+            if (restored != null) {
+                LOGGER.w(String.format("Failed to restore subscription to %s: %s",
+                        restored.get(0).topic, msg.error));
+                for (Subscription subscription: restored) {
+                    mRestoredSubscriptionIDs.remove(subscription.subscription);
+                    subscription.setInactive();
+                }
+                return;
             }
-            if (onReply != null) {
-                onReply.completeExceptionally(new ApplicationError(
-                        msg.error, msg.args, msg.kwargs));
-            } else {
-                throw new ProtocolError(String.format(
-                        "ERROR received for non-pending request_type: %s and request ID %s",
-                        msg.requestType, msg.request));
+            SubscribeRequest request = mSubscribeRequests.remove(msg.request);
+            onReply = request == null ? null : request.onReply;
+        } else if (msg.requestType == Register.MESSAGE_TYPE) {
+            Registration restored = mReregisterRequests.remove(msg.request);
+            if (restored != null) {
+                LOGGER.w(String.format("Failed to restore registration of %s: %s",
+                        restored.procedure, msg.error));
+                mRestoredRegistrationIDs.remove(restored.registration);
+                restored.setInactive();
+                return;
             }
+            RegisterRequest request = mRegisterRequest.remove(msg.request);
+            onReply = request == null ? null : request.onReply;
+        }
+        if (onReply != null) {
+            onReply.completeExceptionally(new ApplicationError(
+                    msg.error, msg.args, msg.kwargs));
         } else {
-            throw new ProtocolError(String.format("Unexpected message %s",
-                    message.getClass().getName()));
+            throw new ProtocolError(String.format(
+                    "ERROR received for non-pending request_type: %s and request ID %s",
+                    msg.requestType, msg.request));
         }
     }
 
@@ -601,19 +842,181 @@ public class Session implements ISession, ITransportHandler {
     public void onDisconnect(boolean wasClean) {
         LOGGER.d("onDisconnect(), wasClean=" + wasClean);
 
+        CompletableFuture<Void> disconnectFuture = new CompletableFuture<>();
+        mDisconnectFuture = disconnectFuture;
         List<CompletableFuture<?>> futures = new ArrayList<>();
         for (OnDisconnectListener listener: mOnDisconnectListeners) {
             futures.add(runAsync(() -> listener.onDisconnect(this, wasClean), mExecutor));
         }
         CompletableFuture d = combineFutures(futures);
-        d.thenRunAsync(() -> {
+        mCallTimer.stop();
+        // Nobody is left to send the results to.
+        for (InvocationRequest invocation: mInvocations.values()) {
+            invocation.cancel();
+        }
+        mInvocations.clear();
+        mEventLanes.clear();
+        settlePendingRequests(wasClean);
+        if (mGoodbyeSent) {
+            // Left for good, the router has forgotten them.
+            deactivateAll();
+        } else {
+            // Kept to be restored by the next join, with those of an
+            // interrupted restore.
+            mPendingRestoreSubscriptions.addAll(mResubscribeRequests.values());
+            mPendingRestoreRegistrations.addAll(mReregisterRequests.values());
+            mResubscribeRequests.clear();
+            mReregisterRequests.clear();
+        }
+        // Even if a listener failed, or the session could never connect again.
+        d.whenCompleteAsync((result, throwable) -> {
             LOGGER.d("Notified all Session.onDisconnect listeners.");
             mTransport = null;
             mSerializer = null;
+            mSessionID = 0;
             mState = STATE_DISCONNECTED;
+            disconnectFuture.complete(null);
         }, mExecutor);
     }
 
+    /**
+     * @return a future that completes once the session is ready to be
+     *     connected again after the last disconnect
+     */
+    CompletableFuture<Void> getDisconnectFuture() {
+        return mDisconnectFuture;
+    }
+
+    /**
+     * @return whether the application left, rather than the router or the
+     *     transport ending the session
+     */
+    boolean isGoodbyeSent() {
+        return mGoodbyeSent;
+    }
+
+    // Requests still waiting for an answer from the router, for tests.
+    int getPendingRequestCount() {
+        return mCallRequests.size() + mPublishRequests.size() + mSubscribeRequests.size()
+                + mRegisterRequest.size() + mUnsubscribeRequests.size()
+                + mUnregisterRequests.size();
+    }
+
+    // Subscribes and registers again whatever the session held when its
+    // transport was lost. The requests are sent back to back without
+    // waiting for the replies, so restoring takes a single round trip
+    // however many there are.
+    private void restore() {
+        List<List<Subscription>> subscriptions = mSubscriptions.values();
+        subscriptions.addAll(mPendingRestoreSubscriptions);
+        List<Registration> registrations = mRegistrations.values();
+        registrations.addAll(mPendingRestoreRegistrations);
+        if (subscriptions.isEmpty() && registrations.isEmpty()) {
+            return;
+        }
+        mSubscriptions.clear();
+        mRegistrations.clear();
+        mPendingRestoreSubscriptions.clear();
+        mPendingRestoreRegistrations.clear();
+        for (List<Subscription> sameID: subscriptions) {
+            if (sameID.isEmpty()) {
+                continue;
+            }
+            Subscription subscription = sameID.get(0);
+            long requestID = mIDGenerator.next();
+            mResubscribeRequests.put(requestID, sameID);
+            send(new Subscribe(requestID, subscription.options, subscription.topic));
+        }
+        for (Registration registration: registrations) {
+            RegisterOptions options = registration.options;
+            long requestID = mIDGenerator.next();
+            mReregisterRequests.put(requestID, registration);
+            send(new Register(requestID, registration.procedure,
+                    options == null ? null : options.match,
+                    options == null ? null : options.invoke));
+        }
+        LOGGER.d(String.format("Restoring %d subscriptions and %d registrations",
+                mResubscribeRequests.size(), mReregisterRequests.size()));
+    }
+
+    private static void setRestoredID(ConcurrentLongMap<Long> restoredIDs, long id,
+                                      long restoredID) {
+        if (id == restoredID) {
+            restoredIDs.remove(id);
+        } else {
+            restoredIDs.put(id, restoredID);
+        }
+    }
+
+    // No answer will come for what is in flight once the transport is gone.
+    private void settlePendingRequests(boolean wasClean) {
+        ApplicationError error = new ApplicationError(
+                wasClean ? CloseDetails.REASON_DEFAULT : CloseDetails.REASON_TRANSPORT_LOST);
+        for (CallRequest request: mCallRequests.values()) {
+            if (mCallRequests.remove(request.request) != null) {
+                request.cancelTimeout();
+                request.onReply.completeExceptionally(error);
+            }
+        }
+        for (PublishRequest request: mPublishRequests.values()) {
+            if (mPublishRequests.remove(request.request) != null) {
+                request.onReply.completeExceptionally(error);
+            }
+        }
+        for (SubscribeRequest request: mSubscribeRequests.values()) {
+            if (mSubscribeRequests.remove(request.request) != null) {
+                request.onReply.completeExceptionally(error);
+            }
+        }
+        for (RegisterRequest request: mRegisterRequest.values()) {
+            if (mRegisterRequest.remove(request.request) != null) {
+                request.onReply.completeExceptionally(error);
+            }
+        }
+        // The router has forgotten those anyway.
+        for (UnsubscribeRequest request: mUnsubscribeRequests.values()) {
+            if (mUnsubscribeRequests.remove(request.request) != null) {
+                List<Subscription> subscriptions = mSubscriptions.get(request.subscriptionID);
+                request.onReply.complete(subscriptions == null ? 0 : subscriptions.size());
+            }
+        }
+        for (UnregisterRequest request: mUnregisterRequests.values()) {
+            if (mUnregisterRequests.remove(request.request) != null) {
+                mRegistrations.remove(request.registrationID);
+                request.onReply.complete(0);
+            }
+        }
+    }
+
+    private void deactivateAll() {
+        List<List<Subscription>> subscriptions = mSubscriptions.values();
+        subscriptions.addAll(mResubscribeRequests.values());
+        subscriptions.addAll(mPendingRestoreSubscriptions);
+        for (List<Subscription> sameID: subscriptions) {
+            for (Subscription subscription: sameID) {
+                if (subscription.isActive()) {
+                    subscription.setInactive();
+                }
+            }
+        }
+        List<Registration> registrations = mRegistrations.values();
+        registrations.addAll(mReregisterRequests.values());
+        registrations.addAll(mPendingRestoreRegistrations);
+        for (Registration registration: registrations) {
+            if (registration.isActive()) {
+                registration.setInactive();
+            }
+        }
+        mSubscriptions.clear();
+        mRegistrations.clear();
+        mResubscribeRequests.clear();
+        mReregisterRequests.clear();
+        mPendingRestoreSubscriptions.clear();
+        mPendingRestoreRegistrations.clear();
+        mRestoredSubscriptionIDs.clear();
+        mRestoredRegistrationIDs.clear();
+    }
+
     @Override
     public boolean isConnected() {
         return mTransport != null;
@@ -633,7 +1036,7 @@ public class Session implements ISession, ITransportHandler {
         CompletableFuture<Subscription> future = new CompletableFuture<>();
         long requestID = mIDGenerator.next();
         mSubscribeRequests.put(requestID, new SubscribeRequest(requestID, topic, future,
-                resultTypeRef, resultTypeClass, handler));
+                resultTypeRef, resultTypeClass, handler, options));
         send(new Subscribe(requestID, options, topic));
         return future;
     }
@@ -881,8 +1284,15 @@ public class Session implements ISession, ITransportHandler {
         if (!subscription.isActive()) {
             throw new IllegalStateException("Subscription is already inactive");
         }
-        List<Subscription> subscriptions = getOrDefault(mSubscriptions, subscription.subscription,
-                null);
+        long subscriptionID = subscription.subscription;
+        List<Subscription> subscriptions = mSubscriptions.get(subscriptionID);
+        if (subscriptions == null || !subscriptions.contains(subscription)) {
+            Long restoredID = mRestoredSubscriptionIDs.get(subscription.subscription);
+            if (restoredID != null) {
+                subscriptionID = restoredID;
+                subscriptions = mSubscriptions.get(subscriptionID);
+            }
+        }
 
         if (subscriptions == null || !subscriptions.contains(subscription)) {
             throw new IllegalStateException("Subscription is already inactive");
@@ -890,13 +1300,20 @@ public class Session implements ISession, ITransportHandler {
 
         subscriptions.remove(subscription);
         subscription.setInactive();
+        boolean sameID = false;
+        for (Subscription other: subscriptions) {
+            sameID |= other.subscription == subscription.subscription;
+        }
+        if (!sameID) {
+            mRestoredSubscriptionIDs.remove(subscription.subscription);
+        }
         int remainingCount = subscriptions.size();
         CompletableFuture<Integer> unsubFuture = new CompletableFuture<>();
         if (remainingCount == 0) {
             long requestID = mIDGenerator.next();
             mUnsubscribeRequests.put(requestID, new UnsubscribeRequest(requestID, unsubFuture,
-                    subscription.subscription));
-            send(new Unsubscribe(requestID, subscription.subscription));
+                    subscriptionID));
+            send(new Unsubscribe(requestID, subscriptionID));
         } else {
             unsubFuture.complete(remainingCount);
         }
@@ -907,14 +1324,38 @@ public class Session implements ISession, ITransportHandler {
                                                          Map<String, Object> kwargs,
                                                          PublishOptions options) {
         throwIfNotConnected();
-        CompletableFuture<Publication> future = new CompletableFuture<>();
         long requestID = mIDGenerator.next();
+        if (options == null || !options.acknowledge) {
+            // Fire-and-forget, the router won't answer so there is nothing to wait for.
+            Publish publish;
+            if (options == null) {
+                publish = new Publish(requestID, topic, args, kwargs, false, true, false);
+            } else {
+                publish = new Publish(requestID, topic, args, kwargs, false, options.excludeMe,
+                        options.retain);
+            }
+            if (mCompleteOnWrite) {
+                return sendAsync(publish).thenApply(written -> null);
+            }
+            CompletableFuture<Publication> future = new CompletableFuture<>();
+            try {
+                send(publish);
+                future.complete(null);
+            } catch (RuntimeException e) {
+                // e.g. SendBufferFullError under SEND_BUFFER_FAIL.
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+        CompletableFuture<Publication> future = new CompletableFuture<>();
         mPublishRequests.put(requestID, new PublishRequest(requestID, future));
-        if (options != null) {
-            send(new Publish(requestID, topic, args, kwargs, options.acknowledge, options.excludeMe,
+        try {
+            send(new Publish(requestID, topic, args, kwargs, true, options.excludeMe,
                     options.retain));
-        } else {
-            send(new Publish(requestID, topic, args, kwargs, true, true, false));
+        } catch (RuntimeException e) {
+            // Never sent, so nothing will answer it.
+            mPublishRequests.remove(requestID);
+            future.completeExceptionally(e);
         }
         return future;
     }
@@ -969,7 +1410,7 @@ public class Session implements ISession, ITransportHandler {
         CompletableFuture<Registration> future = new CompletableFuture<>();
         long requestID = mIDGenerator.next();
         mRegisterRequest.put(requestID,
-                new RegisterRequest(requestID, future, procedure, endpoint));
+                new RegisterRequest(requestID, future, procedure, endpoint, options));
         if (options != null) {
             send(new Register(requestID, procedure, options.match, options.invoke));
         } else {
@@ -1054,15 +1495,23 @@ public class Session implements ISession, ITransportHandler {
         if (!registration.isActive()) {
             throw new IllegalStateException("Registration is already inactive");
         }
-        if (!mRegistrations.containsKey(registration.registration)) {
+        long registrationID = registration.registration;
+        if (mRegistrations.get(registrationID) != registration) {
+            Long restoredID = mRestoredRegistrationIDs.get(registration.registration);
+            if (restoredID != null) {
+                registrationID = restoredID;
+            }
+        }
+        if (mRegistrations.get(registrationID) != registration) {
             throw new IllegalStateException("Not registered");
         }
+        mRestoredRegistrationIDs.remove(registration.registration);
 
         CompletableFuture<Integer> unregFuture = new CompletableFuture<>();
         long requestID = mIDGenerator.next();
         mUnregisterRequests.put(requestID, new UnregisterRequest(requestID, unregFuture,
-                registration.registration));
-        send(new Unregister(requestID, registration.registration));
+                registrationID));
+        send(new Unregister(requestID, registrationID));
         return unregFuture;
     }
 
@@ -1078,17 +1527,49 @@ public class Session implements ISession, ITransportHandler {
 
         long requestID = mIDGenerator.next();
 
-        mCallRequests.put(requestID, new CallRequest(requestID, procedure, future, options,
-                resultTypeReference, resultTypeClass));
+        CallRequest request = new CallRequest(requestID, procedure, future, options,
+                resultTypeReference, resultTypeClass);
+        mCallRequests.put(requestID, request);
+        if (options != null && options.timeout > 0) {
+            request.setTimeout(mCallTimer.newTimeout(
+                    () -> onCallTimeout(requestID), options.timeout, TimeUnit.MILLISECONDS));
+        }
 
-        if (options == null) {
-            send(new Call(requestID, procedure, args, kwargs, 0));
-        } else {
-            send(new Call(requestID, procedure, args, kwargs, options.timeout));
+        try {
+            if (options == null) {
+                send(new Call(requestID, procedure, args, kwargs, 0));
+            } else {
+                send(new Call(requestID, procedure, args, kwargs, options.timeout,
+                        request.receivesProgress()));
+            }
+        } catch (RuntimeException e) {
+            // Never sent, so nothing will answer it.
+            mCallRequests.remove(requestID);
+            request.cancelTimeout();
+            future.completeExceptionally(e);
         }
         return future;
     }
 
+    private void onCallTimeout(long requestID) {
+        CallRequest request = mCallRequests.remove(requestID);
+        if (request == null) {
+            // Already answered.
+            return;
+        }
+        LOGGER.d(String.format("Call %s to %s timed out", requestID, request.procedure));
+        request.onReply.completeExceptionally(new ApplicationError(ERROR_TIMEOUT));
+        if (isConnected()) {
+            try {
+                // Ask the router to interrupt the callee, a late ERROR
+                // for the request is then dropped as non-pending.
+                send(new Cancel(requestID, CANCEL_MODE_KILL));
+            } catch (Exception e) {
+                LOGGER.v(e.getMessage(), e);
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<CallResult> call(String procedure) {
         return reallyCall(procedure, null, null, null, null, null);
@@ -1282,6 +1763,11 @@ public class Session implements ISession, ITransportHandler {
         mRealm = realm;
         mAuthenticators = authenticators;
         mGoodbyeSent = false;
+        // Before HELLO goes out, the WELCOME may be received on another
+        // thread right away.
+        CompletableFuture<SessionDetails> joinFuture = new CompletableFuture<>();
+        mJoinFuture = joinFuture;
+        mState = STATE_HELLO_SENT;
         Map<String, Map> roles = new HashMap<>();
         roles.put("publisher", new HashMap<>());
         roles.put("subscriber", new HashMap<>());
@@ -1314,9 +1800,7 @@ public class Session implements ISession, ITransportHandler {
             }
             send(new Hello(realm, roles, authMethods, authID, authrole, authextra));
         }
-        mJoinFuture = new CompletableFuture<>();
-        mState = STATE_HELLO_SENT;
-        return mJoinFuture;
+        return joinFuture;
     }
 
     @Override
@@ -1344,6 +1828,8 @@ public class Session implements ISession, ITransportHandler {
     @Override
     public void leave(String reason, String message) {
         LOGGER.d(String.format("reason=%s message=%s", reason, message));
+        // Before the router can answer.
+        mGoodbyeSent = true;
         send(new Goodbye(reason, message));
         mState = STATE_GOODBYE_SENT;
     }
@@ -1401,18 +1887,35 @@ public class Session implements ISession, ITransportHandler {
         removeListener(mOnUserErrorListeners, listener);
     }
 
-    private <T> T addListener(ArrayList<T> listeners, T listener) {
+    /**
+     * Adds a listener for changes of {@link #isWritable()}. It's called
+     * on the thread that filled or drained the send buffer, often an I/O
+     * thread, and must not block.
+     */
+    public OnWritabilityChangedListener addOnWritabilityChangedListener(
+            OnWritabilityChangedListener listener) {
+        return addListener(mOnWritabilityChangedListeners, listener);
+    }
+
+    public void removeOnWritabilityChangedListener(OnWritabilityChangedListener listener) {
+        removeListener(mOnWritabilityChangedListeners, listener);
+    }
+
+    private <T> T addListener(List<T> listeners, T listener) {
         listeners.add(listener);
         return listener;
     }
 
-    private <T> void removeListener(ArrayList<T> listeners, T listener) {
-        if (listeners.contains(listener)) {
-            listeners.remove(listener);
-        }
+    private <T> void removeListener(List<T> listeners, T listener) {
+        listeners.remove(listener);
     }
 
     public ReflectionServices getReflectionServices() {
         return mReflectionServices;
     }
+
+    @FunctionalInterface
+    private interface MessageHandler {
+        void handle(IMessage message) throws Exception;
+    }
 }
@@ -0,0 +1,112 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+
+/**
+ * The transports of a {@link Client}, typically one per router of a
+ * cluster, and which one to connect next: in turn or the one that
+ * connected fastest, skipping those that failed until their cool-down
+ * is over.
+ * <p>
+ * Each client starts at a random transport, so that clients started or
+ * disconnected together spread over the cluster.
+ */
+class TransportPool {
+
+    private final List<ITransport> mTransports;
+    // Smoothed time to connect in nanoseconds, 0 until known.
+    private final long[] mConnectTimes;
+    // Whether a transport failed, and until when it is skipped.
+    private final boolean[] mFailed;
+    private final long[] mRetryAt;
+    private int mNext;
+
+    TransportPool(List<ITransport> transports) {
+        if (transports == null || transports.isEmpty()) {
+            throw new IllegalArgumentException("At least one transport is required");
+        }
+        mTransports = transports;
+        mConnectTimes = new long[transports.size()];
+        mFailed = new boolean[transports.size()];
+        mRetryAt = new long[transports.size()];
+        mNext = ThreadLocalRandom.current().nextInt(transports.size());
+    }
+
+    int size() {
+        return mTransports.size();
+    }
+
+    /**
+     * @param lowestRTT true to pick the transport with the lowest connect
+     *     time, trying those that never connected first
+     * @return the next transport to connect, the one whose cool-down ends
+     *     first if all of them failed lately
+     */
+    synchronized ITransport next(boolean lowestRTT) {
+        long now = System.nanoTime();
+        int size = mTransports.size();
+        int next = -1;
+        int retryFirst = mNext;
+        for (int i = 0; i < size; i++) {
+            int index = (mNext + i) % size;
+            if (mFailed[index] && mRetryAt[index] - now > 0) {
+                if (mRetryAt[index] - mRetryAt[retryFirst] < 0) {
+                    retryFirst = index;
+                }
+                continue;
+            }
+            if (next == -1 || lowestRTT && mConnectTimes[index] < mConnectTimes[next]) {
+                next = index;
+                if (!lowestRTT) {
+                    break;
+                }
+            }
+        }
+        if (next == -1) {
+            next = retryFirst;
+        }
+        mNext = (next + 1) % size;
+        return mTransports.get(next);
+    }
+
+    synchronized void onConnected(ITransport transport, long connectTime) {
+        int index = indexOf(transport);
+        mFailed[index] = false;
+        if (mConnectTimes[index] == 0) {
+            mConnectTimes[index] = Math.max(connectTime, 1);
+        } else {
+            // Like the smoothed RTT of TCP.
+            mConnectTimes[index] += (connectTime - mConnectTimes[index]) / 8;
+        }
+    }
+
+    synchronized void onFailed(ITransport transport, long coolDown, TimeUnit unit) {
+        int index = indexOf(transport);
+        mFailed[index] = true;
+        mRetryAt[index] = System.nanoTime() + unit.toNanos(coolDown);
+    }
+
+    private int indexOf(ITransport transport) {
+        for (int i = 0; i < mTransports.size(); i++) {
+            if (mTransports.get(i) == transport) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transport");
+    }
+}
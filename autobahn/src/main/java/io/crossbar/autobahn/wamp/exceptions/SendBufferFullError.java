@@ -0,0 +1,23 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.exceptions;
+
+/**
+ * Raised when a message doesn't fit the send buffer of the transport, see
+ * {@link io.crossbar.autobahn.wamp.types.TransportOptions#setSendBufferPolicy(int)}.
+ */
+public class SendBufferFullError extends Error {
+
+    public SendBufferFullError(String message) {
+        super(message);
+    }
+}
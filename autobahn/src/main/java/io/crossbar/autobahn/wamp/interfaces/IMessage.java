@@ -11,9 +11,23 @@
 
 package io.crossbar.autobahn.wamp.interfaces;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.List;
 
 
 public interface IMessage {
     List<Object> marshal();
+
+    /**
+     * Writes the message to the generator as one array, the same as
+     * writing marshal() but without building the list first. Messages
+     * on the send hot path override this.
+     *
+     * @param generator generator of the negotiated serializer
+     */
+    default void write(JsonGenerator generator) throws IOException {
+        generator.writeObject(marshal());
+    }
 }
@@ -12,28 +12,44 @@
 package io.crossbar.autobahn.wamp.interfaces;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.crossbar.autobahn.utils.ABLogger;
 import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.serializers.LazyList;
+import io.crossbar.autobahn.wamp.serializers.LazyMap;
 
 
 public abstract class ISerializer {
 
     private static final IABLogger LOGGER = ABLogger.getLogger(ISerializer.class.getName());
 
+    // Jackson modules found on the classpath. Looking them up goes through
+    // ServiceLoader, so it's only done once per process.
+    private static volatile List<Module> sModules;
+
     public final ObjectMapper mapper;
 
+    // Readers for the POJO types args are decoded into, resolved once per type.
+    private final ConcurrentHashMap<Type, ObjectReader> mReaders = new ConcurrentHashMap<>();
+
     public ISerializer(JsonFactory factor) {
         mapper = new ObjectMapper(factor);
-        mapper.findAndRegisterModules();
+        mapper.registerModules(findModules());
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         mapper.configure(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE, false);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -43,6 +59,15 @@ public abstract class ISerializer {
         mapper = objectMapper;
     }
 
+    private static List<Module> findModules() {
+        List<Module> modules = sModules;
+        if (modules == null) {
+            modules = ObjectMapper.findModules();
+            sModules = modules;
+        }
+        return modules;
+    }
+
     public byte[] serialize(List<Object> message) {
         try {
             return mapper.writeValueAsBytes(message);
@@ -52,6 +77,38 @@ public abstract class ISerializer {
         }
     }
 
+    /**
+     * Serializes a message by letting it write itself to a generator, see
+     * {@link IMessage#write}. Output goes to a recycled buffer, no
+     * intermediate list or map is built.
+     */
+    public byte[] serialize(IMessage message) {
+        try (ByteArrayBuilder output = new ByteArrayBuilder(
+                mapper.getFactory()._getBufferRecycler())) {
+            try (JsonGenerator generator = mapper.createGenerator(output)) {
+                message.write(generator);
+            }
+            byte[] result = output.toByteArray();
+            output.release();
+            return result;
+        } catch (IOException e) {
+            LOGGER.v(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Like {@link #serialize(IMessage)}, but writes to a stream, e.g. one
+     * over a transport buffer, instead of returning a new array. The
+     * stream is not closed.
+     */
+    public void serialize(IMessage message, OutputStream output) throws IOException {
+        try (JsonGenerator generator = mapper.createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            message.write(generator);
+        }
+    }
+
     public List<Object> unserialize(byte[] payload, boolean isBinary) {
         try {
             return mapper.readValue(payload, new TypeReference<List<Object>>() {});
@@ -61,6 +118,50 @@ public abstract class ISerializer {
         }
     }
 
+    /**
+     * Like {@link #unserialize(byte[], boolean)}, except that the args and kwargs of EVENT,
+     * RESULT and INVOCATION are returned as {@link LazyList} and
+     * {@link LazyMap}, which only decode the payload when it's first used.
+     * <p>
+     * Serializers that can't locate the payload in the raw bytes decode
+     * everything right away.
+     */
+    public List<Object> unserializeLazily(byte[] payload, boolean isBinary) {
+        return unserialize(payload, isBinary);
+    }
+
+    /**
+     * Converts the item at index of a list of received args. For a
+     * {@link LazyList} the item is decoded straight into the target type.
+     */
+    public <T> T convertArg(List<Object> args, int index, TypeReference<T> toValueTypeRef) {
+        if (args instanceof LazyList) {
+            return ((LazyList) args).readItem(index, getReader(toValueTypeRef.getType()));
+        }
+        return convertValue(args.get(index), toValueTypeRef);
+    }
+
+    public <T> T convertArg(List<Object> args, int index, Class<T> toValueTypeClass) {
+        if (args instanceof LazyList) {
+            return ((LazyList) args).readItem(index, getReader(toValueTypeClass));
+        }
+        Object arg = args.get(index);
+        if (toValueTypeClass.isInstance(arg)) {
+            // Nothing to convert, e.g. a PassthruPayload.
+            return toValueTypeClass.cast(arg);
+        }
+        return convertValue(arg, toValueTypeClass);
+    }
+
+    private ObjectReader getReader(Type type) {
+        ObjectReader reader = mReaders.get(type);
+        if (reader == null) {
+            reader = mReaders.computeIfAbsent(
+                    type, t -> mapper.readerFor(mapper.getTypeFactory().constructType(t)));
+        }
+        return reader;
+    }
+
     public <T> T convertValue(Object fromValue, TypeReference<T> toValueTypeRef) {
         // https://github.com/FasterXML/jackson-databind#tutorial-fancier-stuff-conversions
         // ResultType result = mapper.convertValue(sourceObject, ResultType.class);
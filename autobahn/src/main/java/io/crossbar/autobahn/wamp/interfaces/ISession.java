@@ -380,7 +380,8 @@ public interface ISession {
      * @param kwargs keyword arguments for the topic
      * @param options options for the publication
      * @return a CompletableFuture that resolves to an instance of
-     * {@link io.crossbar.autobahn.wamp.types.Publication}
+     * {@link io.crossbar.autobahn.wamp.types.Publication} if the publication is
+     * acknowledged, otherwise an already completed future with null
      */
     CompletableFuture<Publication> publish(
             String topic,
@@ -394,7 +395,8 @@ public interface ISession {
      * @param arg Positional argument for the topic
      * @param options options for the publication
      * @return a CompletableFuture that resolves to an instance of
-     * {@link io.crossbar.autobahn.wamp.types.Publication}
+     * {@link io.crossbar.autobahn.wamp.types.Publication} if the publication is
+     * acknowledged, otherwise an already completed future with null
      */
     CompletableFuture<Publication> publish(String topic, Object arg, PublishOptions options);
 
@@ -404,7 +406,8 @@ public interface ISession {
      * @param options options for the publication
      * @param args positional arguments for the topic
      * @return a CompletableFuture that resolves to an instance of
-     * {@link io.crossbar.autobahn.wamp.types.Publication}
+     * {@link io.crossbar.autobahn.wamp.types.Publication} if the publication is
+     * acknowledged, otherwise an already completed future with null
      */
     CompletableFuture<Publication> publish(
             String topic,
@@ -416,7 +419,8 @@ public interface ISession {
      * @param topic URI of the topic
      * @param args positional arguments for the topic
      * @return a CompletableFuture that resolves to an instance of
-     * {@link io.crossbar.autobahn.wamp.types.Publication}
+     * {@link io.crossbar.autobahn.wamp.types.Publication} if the publication is
+     * acknowledged, otherwise an already completed future with null
      */
     CompletableFuture<Publication> publish(String topic, Object... args);
 
@@ -425,7 +429,8 @@ public interface ISession {
      * @param topic URI of the topic
      * @param options options for the publication
      * @return a CompletableFuture that resolves to an instance of
-     * {@link io.crossbar.autobahn.wamp.types.Publication}
+     * {@link io.crossbar.autobahn.wamp.types.Publication} if the publication is
+     * acknowledged, otherwise an already completed future with null
      */
     CompletableFuture<Publication> publish(String topic, PublishOptions options);
 
@@ -433,7 +438,8 @@ public interface ISession {
      * Publishes to a WAMP topic
      * @param topic URI of the topic
      * @return a CompletableFuture that resolves to an instance of
-     * {@link io.crossbar.autobahn.wamp.types.Publication}
+     * {@link io.crossbar.autobahn.wamp.types.Publication} if the publication is
+     * acknowledged, otherwise an already completed future with null
      */
     CompletableFuture<Publication> publish(String topic);
 
@@ -789,4 +795,8 @@ public interface ISession {
     interface OnUserErrorListener {
         void onUserError(Session session, String message);
     }
+
+    interface OnWritabilityChangedListener {
+        void onWritabilityChanged(Session session, boolean writable);
+    }
 }
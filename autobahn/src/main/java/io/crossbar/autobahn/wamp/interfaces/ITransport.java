@@ -11,12 +11,49 @@
 
 package io.crossbar.autobahn.wamp.interfaces;
 
+import java.util.concurrent.CompletableFuture;
+
 import io.crossbar.autobahn.wamp.types.TransportOptions;
 
 public interface ITransport {
 
     void send(byte[] payload, boolean isBinary);
 
+    /**
+     * Sends a message, serialized with the given serializer. Transports
+     * with buffers of their own serialize straight into them. By default,
+     * the message is serialized to an array and passed to
+     * {@link #send(byte[], boolean)}.
+     */
+    default void send(IMessage message, ISerializer serializer) {
+        send(serializer.serialize(message), serializer.isBinary());
+    }
+
+    /**
+     * Sends a message like {@link #send(IMessage, ISerializer)} and
+     * returns a future that completes once it was written to the socket,
+     * or fails if it wasn't, e.g. because the send buffer was full. By
+     * default, the future is complete as soon as send returns.
+     */
+    default CompletableFuture<Void> sendAsync(IMessage message, ISerializer serializer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            send(message, serializer);
+            future.complete(null);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * @return false while the send buffer of the transport is full, see
+     *     {@link TransportOptions#setSendBufferSize(int)}
+     */
+    default boolean isWritable() {
+        return isOpen();
+    }
+
     void connect(ITransportHandler transportHandler) throws Exception;
 
     void connect(ITransportHandler transportHandler, TransportOptions options) throws Exception;
@@ -20,6 +20,15 @@ public interface ITransportHandler {
 
     void onMessage(byte[] payload, boolean isBinary) throws Exception;
 
+    /**
+     * Called when the send buffer of the transport fills up or drains,
+     * usually on the thread that sent or wrote the message that changed
+     * it. Calls don't overlap, and are made without locks of the transport
+     * held. Must not block.
+     */
+    default void onWritabilityChanged(boolean writable) {
+    }
+
     void onLeave(CloseDetails details);
 
     void onDisconnect(boolean wasClean);
@@ -11,14 +11,17 @@
 
 package io.crossbar.autobahn.wamp.messages;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
 import static io.crossbar.autobahn.wamp.utils.Shortcuts.getOrDefault;
@@ -34,8 +37,14 @@ public class Call implements IMessage {
     public final List<Object> args;
     public final Map<String, Object> kwargs;
     public final int timeout;
+    public final boolean receiveProgress;
 
     public Call(long request, String procedure, List<Object> args, Map<String, Object> kwargs, int timeout) {
+        this(request, procedure, args, kwargs, timeout, false);
+    }
+
+    public Call(long request, String procedure, List<Object> args, Map<String, Object> kwargs, int timeout,
+                boolean receiveProgress) {
         this.request = request;
         this.procedure = procedure;
         this.args = args;
@@ -45,6 +54,7 @@ public class Call implements IMessage {
         } else {
             this.timeout = timeout;
         }
+        this.receiveProgress = receiveProgress;
     }
 
     public static Call parse(List<Object> wmsg) {
@@ -56,10 +66,7 @@ public class Call implements IMessage {
 
         List<Object> args = null;
         if (wmsg.size() > 4) {
-            if (wmsg.get(4) instanceof byte[]) {
-                throw new ProtocolError("Binary payload not supported");
-            }
-            args = (List<Object>) wmsg.get(4);
+            args = MessageUtil.parseArgs(wmsg.get(4), options);
         }
 
         Map<String, Object> kwargs = null;
@@ -68,12 +75,14 @@ public class Call implements IMessage {
         }
 
         int timeout = getOrDefault(options, "timeout", TIMEOUT_DEFAULT);
+        boolean receiveProgress = getOrDefault(options, "receive_progress", false);
 
-        return new Call(request, procedure, args, kwargs, timeout);
+        return new Call(request, procedure, args, kwargs, timeout, receiveProgress);
     }
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(request);
@@ -81,9 +90,15 @@ public class Call implements IMessage {
         if (timeout > TIMEOUT_DEFAULT) {
             options.put("timeout", timeout);
         }
+        if (receiveProgress) {
+            options.put("receive_progress", true);
+        }
+        MessageUtil.putPassthruOptions(options, payload);
         marshaled.add(options);
         marshaled.add(procedure);
-        if (kwargs != null) {
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -96,4 +111,26 @@ public class Call implements IMessage {
         }
         return marshaled;
     }
+
+    @Override
+    public void write(JsonGenerator generator) throws IOException {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
+        generator.writeStartArray(null, 4 + MessageUtil.getPayloadLength(args, kwargs));
+        generator.writeNumber(MESSAGE_TYPE);
+        generator.writeNumber(request);
+        int optionsSize = (timeout > TIMEOUT_DEFAULT ? 1 : 0) + (receiveProgress ? 1 : 0)
+                + MessageUtil.getPassthruOptionsCount(payload);
+        generator.writeStartObject(null, optionsSize);
+        if (timeout > TIMEOUT_DEFAULT) {
+            generator.writeNumberField("timeout", timeout);
+        }
+        if (receiveProgress) {
+            generator.writeBooleanField("receive_progress", true);
+        }
+        MessageUtil.writePassthruOptions(generator, payload);
+        generator.writeEndObject();
+        generator.writeString(procedure);
+        MessageUtil.writePayload(generator, args, kwargs);
+        generator.writeEndArray();
+    }
 }
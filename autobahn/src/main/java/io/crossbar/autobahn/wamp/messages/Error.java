@@ -11,14 +11,17 @@
 
 package io.crossbar.autobahn.wamp.messages;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
 public class Error implements IMessage {
@@ -49,13 +52,9 @@ public class Error implements IMessage {
         Map<String, Object> details = (Map<String, Object>) wmsg.get(3);
         String error = (String) wmsg.get(4);
 
-        if (wmsg.size() == 6 && wmsg.get(5) instanceof byte[]) {
-            throw new ProtocolError("Binary payload not supported");
-        }
-
         List<Object> args = null;
         if (wmsg.size() > 5) {
-            args = (List<Object>) wmsg.get(5);
+            args = MessageUtil.parseArgs(wmsg.get(5), details);
         }
 
         Map<String, Object> kwargs = null;
@@ -68,13 +67,18 @@ public class Error implements IMessage {
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(requestType);
         marshaled.add(request);
-        marshaled.add(new HashMap<String, Object>());
+        Map<String, Object> details = new HashMap<>();
+        MessageUtil.putPassthruOptions(details, payload);
+        marshaled.add(details);
         marshaled.add(error);
-        if (kwargs != null) {
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -87,4 +91,19 @@ public class Error implements IMessage {
         }
         return marshaled;
     }
+
+    @Override
+    public void write(JsonGenerator generator) throws IOException {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
+        generator.writeStartArray(null, 5 + MessageUtil.getPayloadLength(args, kwargs));
+        generator.writeNumber(MESSAGE_TYPE);
+        generator.writeNumber(requestType);
+        generator.writeNumber(request);
+        generator.writeStartObject(null, MessageUtil.getPassthruOptionsCount(payload));
+        MessageUtil.writePassthruOptions(generator, payload);
+        generator.writeEndObject();
+        generator.writeString(error);
+        MessageUtil.writePayload(generator, args, kwargs);
+        generator.writeEndArray();
+    }
 }
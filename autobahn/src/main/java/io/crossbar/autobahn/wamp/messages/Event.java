@@ -17,8 +17,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
 import static io.crossbar.autobahn.wamp.utils.Shortcuts.getOrDefault;
@@ -54,10 +54,7 @@ public class Event implements IMessage {
 
         List<Object> args = null;
         if (wmsg.size() > 4) {
-            if (wmsg.get(4) instanceof byte[]) {
-                throw new ProtocolError("Binary payload not supported");
-            }
-            args = (List<Object>) wmsg.get(4);
+            args = MessageUtil.parseArgs(wmsg.get(4), details);
         }
         Map<String, Object> kwargs = null;
         if (wmsg.size() > 5) {
@@ -69,6 +66,7 @@ public class Event implements IMessage {
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(subscription);
@@ -80,8 +78,11 @@ public class Event implements IMessage {
         if (retained) {
             details.put("retained", retained);
         }
+        MessageUtil.putPassthruOptions(details, payload);
         marshaled.add(details);
-        if (kwargs != null) {
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -30,6 +30,7 @@ public class Interrupt implements IMessage {
 
     private static final String ABORT = "abort";
     private static final String KILL = "kill";
+    public static final String KILL_NO_WAIT = "killnowait";
 
     public final long request;
     public final String mode;
@@ -46,7 +47,7 @@ public class Interrupt implements IMessage {
         Map<String, Object> options = (Map<String, Object>) wmsg.get(2);
         String mode = getOrDefault(options, "mode", null);
         if (mode != null) {
-            if (!mode.equals(ABORT) && !mode.equals(KILL)) {
+            if (!mode.equals(ABORT) && !mode.equals(KILL) && !mode.equals(KILL_NO_WAIT)) {
                 throw new ProtocolError(String.format("invalid value %s for 'mode' option in INTERRUPT", mode));
             }
         }
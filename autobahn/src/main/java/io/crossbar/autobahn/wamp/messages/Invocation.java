@@ -13,11 +13,12 @@ package io.crossbar.autobahn.wamp.messages;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
 public class Invocation implements IMessage {
@@ -48,10 +49,7 @@ public class Invocation implements IMessage {
 
         List<Object> args = null;
         if (wmsg.size() > 4) {
-            if (wmsg.get(4) instanceof byte[]) {
-                throw new ProtocolError("Binary payload not supported");
-            }
-            args = (List<Object>) wmsg.get(4);
+            args = MessageUtil.parseArgs(wmsg.get(4), details);
         }
         Map<String, Object> kwargs = null;
         if (wmsg.size() > 5) {
@@ -62,17 +60,27 @@ public class Invocation implements IMessage {
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(request);
         marshaled.add(registration);
-        if (details == null) {
+        if (payload != null) {
+            Map<String, Object> details = new HashMap<>();
+            if (this.details != null) {
+                details.putAll(this.details);
+            }
+            MessageUtil.putPassthruOptions(details, payload);
+            marshaled.add(details);
+        } else if (details == null) {
             // Empty details.
             marshaled.add(Collections.emptyMap());
         } else {
             marshaled.add(details);
         }
-        if (kwargs != null) {
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -12,13 +12,30 @@
 package io.crossbar.autobahn.wamp.messages;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
 
 public class MessageMap {
+
+    /**
+     * Highest WAMP message type code known to the dispatch tables.
+     */
+    public static final int MAX_MESSAGE_TYPE = 70;
+
     public static final Map<Integer, Class<? extends IMessage>> MESSAGE_TYPE_MAP = new HashMap();
 
+    // Parsers indexed directly by message type code, so decoding a message
+    // is an array load and a static call - no reflection involved.
+    private static final Parser[] PARSERS = new Parser[MAX_MESSAGE_TYPE + 1];
+
+    @FunctionalInterface
+    public interface Parser {
+        IMessage parse(List<Object> wmsg);
+    }
+
     static {
         MESSAGE_TYPE_MAP.put(Hello.MESSAGE_TYPE, Hello.class);
         MESSAGE_TYPE_MAP.put(Challenge.MESSAGE_TYPE, Challenge.class);
@@ -42,5 +59,60 @@ public class MessageMap {
         MESSAGE_TYPE_MAP.put(Invocation.MESSAGE_TYPE, Invocation.class);
         MESSAGE_TYPE_MAP.put(Yield.MESSAGE_TYPE, Yield.class);
         MESSAGE_TYPE_MAP.put(Interrupt.MESSAGE_TYPE, Interrupt.class);
+
+        PARSERS[Hello.MESSAGE_TYPE] = Hello::parse;
+        PARSERS[Challenge.MESSAGE_TYPE] = Challenge::parse;
+        PARSERS[Welcome.MESSAGE_TYPE] = Welcome::parse;
+        PARSERS[Abort.MESSAGE_TYPE] = Abort::parse;
+        PARSERS[Goodbye.MESSAGE_TYPE] = Goodbye::parse;
+        PARSERS[Error.MESSAGE_TYPE] = Error::parse;
+        PARSERS[Publish.MESSAGE_TYPE] = Publish::parse;
+        PARSERS[Published.MESSAGE_TYPE] = Published::parse;
+        PARSERS[Subscribe.MESSAGE_TYPE] = Subscribe::parse;
+        PARSERS[Subscribed.MESSAGE_TYPE] = Subscribed::parse;
+        PARSERS[Unsubscribe.MESSAGE_TYPE] = Unsubscribe::parse;
+        PARSERS[Unsubscribed.MESSAGE_TYPE] = Unsubscribed::parse;
+        PARSERS[Event.MESSAGE_TYPE] = Event::parse;
+        PARSERS[Call.MESSAGE_TYPE] = Call::parse;
+        PARSERS[Result.MESSAGE_TYPE] = Result::parse;
+        PARSERS[Register.MESSAGE_TYPE] = Register::parse;
+        PARSERS[Registered.MESSAGE_TYPE] = Registered::parse;
+        PARSERS[Unregister.MESSAGE_TYPE] = Unregister::parse;
+        PARSERS[Unregistered.MESSAGE_TYPE] = Unregistered::parse;
+        PARSERS[Invocation.MESSAGE_TYPE] = Invocation::parse;
+        PARSERS[Yield.MESSAGE_TYPE] = Yield::parse;
+        PARSERS[Interrupt.MESSAGE_TYPE] = Interrupt::parse;
+    }
+
+    /**
+     * Returns the parser for the given message type code.
+     *
+     * @param messageType WAMP message type code
+     * @return the parser, or null if the type is unknown
+     */
+    public static Parser getParser(int messageType) {
+        if (messageType < 0 || messageType > MAX_MESSAGE_TYPE) {
+            return null;
+        }
+        return PARSERS[messageType];
+    }
+
+    /**
+     * Transforms a raw, unserialized WAMP message to its typed message.
+     *
+     * @param wmsg the raw message as produced by the serializer
+     * @return the typed message
+     * @throws ProtocolError if the message type is missing or unknown
+     */
+    public static IMessage parse(List<Object> wmsg) {
+        if (wmsg == null || wmsg.isEmpty() || !(wmsg.get(0) instanceof Integer)) {
+            throw new ProtocolError("Invalid message.");
+        }
+        int messageType = (int) wmsg.get(0);
+        Parser parser = getParser(messageType);
+        if (parser == null) {
+            throw new ProtocolError(String.format("Unknown message type %s", messageType));
+        }
+        return parser.parse(wmsg);
     }
 }
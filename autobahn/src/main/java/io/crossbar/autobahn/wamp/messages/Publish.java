@@ -11,14 +11,17 @@
 
 package io.crossbar.autobahn.wamp.messages;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
 import static io.crossbar.autobahn.wamp.utils.Shortcuts.getOrDefault;
@@ -56,10 +59,7 @@ public class Publish implements IMessage {
 
         List<Object> args = null;
         if (wmsg.size() > 4) {
-            if (wmsg.get(4) instanceof byte[]) {
-                throw new ProtocolError("Binary payload not supported");
-            }
-            args = (List<Object>) wmsg.get(4);
+            args = MessageUtil.parseArgs(wmsg.get(4), options);
         }
 
         Map<String, Object> kwargs = null;
@@ -76,6 +76,7 @@ public class Publish implements IMessage {
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(request);
@@ -89,9 +90,12 @@ public class Publish implements IMessage {
         if (retain) {
             options.put("retain", retain);
         }
+        MessageUtil.putPassthruOptions(options, payload);
         marshaled.add(options);
         marshaled.add(topic);
-        if (kwargs != null) {
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -104,4 +108,29 @@ public class Publish implements IMessage {
         }
         return marshaled;
     }
+
+    @Override
+    public void write(JsonGenerator generator) throws IOException {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
+        generator.writeStartArray(null, 4 + MessageUtil.getPayloadLength(args, kwargs));
+        generator.writeNumber(MESSAGE_TYPE);
+        generator.writeNumber(request);
+        int optionsSize = (acknowledge ? 1 : 0) + (!excludeMe ? 1 : 0) + (retain ? 1 : 0)
+                + MessageUtil.getPassthruOptionsCount(payload);
+        generator.writeStartObject(null, optionsSize);
+        if (acknowledge) {
+            generator.writeBooleanField("acknowledge", true);
+        }
+        if (!excludeMe) {
+            generator.writeBooleanField("exclude_me", false);
+        }
+        if (retain) {
+            generator.writeBooleanField("retain", true);
+        }
+        MessageUtil.writePassthruOptions(generator, payload);
+        generator.writeEndObject();
+        generator.writeString(topic);
+        MessageUtil.writePayload(generator, args, kwargs);
+        generator.writeEndArray();
+    }
 }
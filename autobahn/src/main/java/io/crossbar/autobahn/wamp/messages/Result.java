@@ -13,51 +13,67 @@ package io.crossbar.autobahn.wamp.messages;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
+import static io.crossbar.autobahn.wamp.utils.Shortcuts.getOrDefault;
+
 public class Result implements IMessage {
     public static final int MESSAGE_TYPE = 50;
 
     public final long request;
     public final List<Object> args;
     public final Map<String, Object> kwargs;
+    public final boolean progress;
 
     public Result(long request, List<Object> args, Map<String, Object> kwargs) {
+        this(request, args, kwargs, false);
+    }
+
+    public Result(long request, List<Object> args, Map<String, Object> kwargs, boolean progress) {
         this.request = request;
         this.args = args;
         this.kwargs = kwargs;
+        this.progress = progress;
     }
 
     public static Result parse(List<Object> wmsg) {
         MessageUtil.validateMessage(wmsg, MESSAGE_TYPE, "RESULT", 3, 5);
 
         long request = MessageUtil.parseLong(wmsg.get(1));
+        Map<String, Object> details = (Map<String, Object>) wmsg.get(2);
+        boolean progress = getOrDefault(details, "progress", false);
         List<Object> args = null;
         if (wmsg.size() > 3) {
-            if (wmsg.get(3) instanceof byte[]) {
-                throw new ProtocolError("Binary payload not supported");
-            }
-            args = (List<Object>) wmsg.get(3);
+            args = MessageUtil.parseArgs(wmsg.get(3), details);
         }
         Map<String, Object> kwargs = null;
         if (wmsg.size() > 4) {
             kwargs = (Map<String, Object>) wmsg.get(4);
         }
-        return new Result(request, args, kwargs);
+        return new Result(request, args, kwargs, progress);
     }
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(request);
-        marshaled.add(Collections.emptyMap());
-        if (kwargs != null) {
+        Map<String, Object> details = new HashMap<>();
+        if (progress) {
+            details.put("progress", true);
+        }
+        MessageUtil.putPassthruOptions(details, payload);
+        marshaled.add(details);
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -11,16 +11,21 @@
 
 package io.crossbar.autobahn.wamp.messages;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
 import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 import io.crossbar.autobahn.wamp.utils.MessageUtil;
 
+import static io.crossbar.autobahn.wamp.utils.Shortcuts.getOrDefault;
+
 public class Yield implements IMessage {
 
     public static final int MESSAGE_TYPE = 70;
@@ -28,39 +33,50 @@ public class Yield implements IMessage {
     public final long request;
     public final List<Object> args;
     public final Map<String, Object> kwargs;
+    public final boolean progress;
 
     public Yield(long request, List<Object> args, Map<String, Object> kwargs) {
+        this(request, args, kwargs, false);
+    }
+
+    public Yield(long request, List<Object> args, Map<String, Object> kwargs, boolean progress) {
         this.request = request;
         this.args = args;
         this.kwargs = kwargs;
+        this.progress = progress;
     }
 
     public static Yield parse(List<Object> wmsg) {
         MessageUtil.validateMessage(wmsg, MESSAGE_TYPE, "YIELD", 3, 6);
 
         Map<String, Object> options = (Map<String, Object>) wmsg.get(2);
+        boolean progress = getOrDefault(options, "progress", false);
         List<Object> args = null;
         if (wmsg.size() > 3) {
-            if (wmsg.get(3) instanceof byte[]) {
-                throw new ProtocolError("Binary payload not supported");
-            }
-            args = (List<Object>) wmsg.get(4);
+            args = MessageUtil.parseArgs(wmsg.get(3), options);
         }
         Map<String, Object> kwargs = null;
         if (wmsg.size() > 4) {
             kwargs = (Map<String, Object>) wmsg.get(4);
         }
-        return new Yield(MessageUtil.parseLong(wmsg.get(1)), args, kwargs);
+        return new Yield(MessageUtil.parseLong(wmsg.get(1)), args, kwargs, progress);
     }
 
     @Override
     public List<Object> marshal() {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
         List<Object> marshaled = new ArrayList<>();
         marshaled.add(MESSAGE_TYPE);
         marshaled.add(request);
-        // Empty options.
-        marshaled.add(Collections.emptyMap());
-        if (kwargs != null) {
+        Map<String, Object> options = new HashMap<>();
+        if (progress) {
+            options.put("progress", true);
+        }
+        MessageUtil.putPassthruOptions(options, payload);
+        marshaled.add(options);
+        if (payload != null) {
+            marshaled.add(payload.getBytes());
+        } else if (kwargs != null) {
             if (args == null) {
                 // Empty args.
                 marshaled.add(Collections.emptyList());
@@ -73,4 +89,21 @@ public class Yield implements IMessage {
         }
         return marshaled;
     }
+
+    @Override
+    public void write(JsonGenerator generator) throws IOException {
+        PassthruPayload payload = MessageUtil.getPassthruPayload(args, kwargs);
+        generator.writeStartArray(null, 3 + MessageUtil.getPayloadLength(args, kwargs));
+        generator.writeNumber(MESSAGE_TYPE);
+        generator.writeNumber(request);
+        generator.writeStartObject(null,
+                (progress ? 1 : 0) + MessageUtil.getPassthruOptionsCount(payload));
+        if (progress) {
+            generator.writeBooleanField("progress", true);
+        }
+        MessageUtil.writePassthruOptions(generator, payload);
+        generator.writeEndObject();
+        MessageUtil.writePayload(generator, args, kwargs);
+        generator.writeEndArray();
+    }
 }
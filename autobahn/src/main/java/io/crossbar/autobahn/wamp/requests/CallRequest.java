@@ -14,8 +14,10 @@ package io.crossbar.autobahn.wamp.requests;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import io.crossbar.autobahn.wamp.types.CallOptions;
+import io.crossbar.autobahn.wamp.utils.HashedWheelTimer;
 
 
 public class CallRequest extends Request {
@@ -25,6 +27,13 @@ public class CallRequest extends Request {
     public final TypeReference resultTypeRef;
     public final Class resultTypeClass;
 
+    // Client-side deadline of the call, if it has one.
+    private volatile HashedWheelTimer.Timeout mTimeout;
+
+    // Tail of the progressive results handed to options.onProgress, only
+    // touched by the thread that receives messages.
+    private CompletableFuture<Void> mProgress;
+
     public CallRequest(long request, String procedure, CompletableFuture onReply,
                        CallOptions options, TypeReference resultTypeRef, Class resultTypeClass) {
         super(request);
@@ -38,4 +47,29 @@ public class CallRequest extends Request {
         this.resultTypeRef = resultTypeRef;
         this.resultTypeClass = resultTypeClass;
     }
+
+    public void setTimeout(HashedWheelTimer.Timeout timeout) {
+        mTimeout = timeout;
+    }
+
+    public boolean receivesProgress() {
+        return options != null && options.onProgress != null;
+    }
+
+    // Runs the task on the executor after all progressive results before it
+    // have been consumed.
+    public void afterProgress(Runnable task, Executor executor) {
+        if (mProgress == null) {
+            mProgress = CompletableFuture.runAsync(task, executor);
+        } else {
+            mProgress = mProgress.thenRunAsync(task, executor);
+        }
+    }
+
+    public void cancelTimeout() {
+        HashedWheelTimer.Timeout timeout = mTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
 }
@@ -0,0 +1,46 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.requests;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.crossbar.autobahn.wamp.types.InvocationDetails;
+
+
+// An INVOCATION the router sent us that has not been answered yet.
+public class InvocationRequest extends Request {
+    public final InvocationDetails details;
+
+    // The future the endpoint returned, if it returned one.
+    private volatile CompletableFuture<?> mResult;
+
+    public InvocationRequest(long request, InvocationDetails details) {
+        super(request);
+        this.details = details;
+    }
+
+    public void setResult(CompletableFuture<?> result) {
+        mResult = result;
+        // An INTERRUPT may have come in while the endpoint was still running.
+        if (details.isCancelled()) {
+            result.cancel(true);
+        }
+    }
+
+    public void cancel() {
+        details.setCancelled();
+        CompletableFuture<?> result = mResult;
+        if (result != null) {
+            result.cancel(true);
+        }
+    }
+}
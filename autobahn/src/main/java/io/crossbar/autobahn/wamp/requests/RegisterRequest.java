@@ -13,6 +13,7 @@ package io.crossbar.autobahn.wamp.requests;
 
 import java.util.concurrent.CompletableFuture;
 
+import io.crossbar.autobahn.wamp.types.RegisterOptions;
 import io.crossbar.autobahn.wamp.types.Registration;
 
 
@@ -20,12 +21,19 @@ public class RegisterRequest extends Request {
     public final CompletableFuture<Registration> onReply;
     public final String procedure;
     public final Object endpoint;
+    public final RegisterOptions options;
 
     public RegisterRequest(long request, CompletableFuture<Registration> onReply, String procedure,
                            Object endpoint) {
+        this(request, onReply, procedure, endpoint, null);
+    }
+
+    public RegisterRequest(long request, CompletableFuture<Registration> onReply, String procedure,
+                           Object endpoint, RegisterOptions options) {
         super(request);
         this.onReply = onReply;
         this.procedure = procedure;
         this.endpoint = endpoint;
+        this.options = options;
     }
 }
@@ -15,6 +15,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.util.concurrent.CompletableFuture;
 
+import io.crossbar.autobahn.wamp.types.SubscribeOptions;
 import io.crossbar.autobahn.wamp.types.Subscription;
 
 
@@ -24,9 +25,16 @@ public class SubscribeRequest extends Request {
     public final TypeReference resultTypeRef;
     public final Class resultTypeClass;
     public final Object handler;
+    public final SubscribeOptions options;
 
     public SubscribeRequest(long request, String topic, CompletableFuture<Subscription> onReply,
                             TypeReference resultTypeRef, Class resultTypeClass, Object handler) {
+        this(request, topic, onReply, resultTypeRef, resultTypeClass, handler, null);
+    }
+
+    public SubscribeRequest(long request, String topic, CompletableFuture<Subscription> onReply,
+                            TypeReference resultTypeRef, Class resultTypeClass, Object handler,
+                            SubscribeOptions options) {
         super(request);
         this.topic = topic;
         this.onReply = onReply;
@@ -37,5 +45,6 @@ public class SubscribeRequest extends Request {
         this.resultTypeRef = resultTypeRef;
         this.resultTypeClass = resultTypeClass;
         this.handler = handler;
+        this.options = options;
     }
 }
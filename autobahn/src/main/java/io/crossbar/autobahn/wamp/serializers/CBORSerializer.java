@@ -13,15 +13,37 @@ package io.crossbar.autobahn.wamp.serializers;
 
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
-import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import java.util.List;
 
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 
+/**
+ * The WAMP CBOR serializer. Optionally, primitive numeric arrays are sent
+ * as RFC 8746 typed arrays, see {@link CBORTypedArrays}.
+ */
 public class CBORSerializer extends ISerializer {
 
     public static final String NAME = "wamp.2.cbor";
     public static final int RAWSOCKET_SERIALIZER_ID = 3;
 
     public CBORSerializer() {
+        this(false);
+    }
+
+    /**
+     * @param typedArrays True to send and receive primitive numeric arrays
+     *                    as RFC 8746 typed arrays. Only for peers that
+     *                    understand them, others get plain CBOR arrays.
+     */
+    public CBORSerializer(boolean typedArrays) {
         super(new CBORFactory());
+        if (typedArrays) {
+            mapper.registerModule(CBORTypedArrays.MODULE);
+        }
+    }
+
+    @Override
+    public List<Object> unserializeLazily(byte[] payload, boolean isBinary) {
+        return LazyMessages.unserialize(mapper, payload);
     }
 }
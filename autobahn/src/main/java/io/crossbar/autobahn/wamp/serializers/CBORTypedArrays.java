@@ -0,0 +1,343 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.serializers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.PrimitiveArrayDeserializers;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.deser.std.UntypedObjectDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORParser;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * RFC 8746 typed arrays for the CBOR based serializers, when enabled with
+ * {@link CBORSerializer#CBORSerializer(boolean)} or
+ * {@link io.crossbar.autobahn.wamp.types.TransportOptions#setCBORTypedArrays}.
+ * <p>
+ * int[], long[], float[] and double[] (and Int/Long/Float/DoubleBuffer)
+ * are written as one tagged byte string holding the big-endian elements,
+ * instead of an array with a header per boxed element. Received typed
+ * arrays, big or little-endian, are decoded to the primitive array when
+ * the target type is Object (i.e. in untyped args and kwargs), to the
+ * primitive array when that is the target type, and to a Buffer view over
+ * the received bytes when the target is the matching Buffer type.
+ * Plain CBOR arrays still decode to the primitive arrays and Buffers.
+ */
+final class CBORTypedArrays {
+
+    private static final Kind[] KINDS = {
+            new Kind(int[].class, IntBuffer.class, 74, 78, 4) {
+                @Override
+                Buffer view(ByteBuffer bytes) {
+                    return bytes.asIntBuffer();
+                }
+
+                @Override
+                Object toArray(Buffer view) {
+                    int[] array = new int[view.remaining()];
+                    ((IntBuffer) view).get(array);
+                    return array;
+                }
+
+                @Override
+                Buffer wrap(Object array) {
+                    return IntBuffer.wrap((int[]) array);
+                }
+
+                @Override
+                Buffer duplicate(Buffer values) {
+                    return ((IntBuffer) values).duplicate();
+                }
+
+                @Override
+                void put(ByteBuffer bytes, Buffer values) {
+                    bytes.asIntBuffer().put((IntBuffer) values);
+                }
+
+                @Override
+                void writeArray(JsonGenerator generator, Object array) throws IOException {
+                    generator.writeArray((int[]) array, 0, ((int[]) array).length);
+                }
+            },
+            new Kind(long[].class, LongBuffer.class, 75, 79, 8) {
+                @Override
+                Buffer view(ByteBuffer bytes) {
+                    return bytes.asLongBuffer();
+                }
+
+                @Override
+                Object toArray(Buffer view) {
+                    long[] array = new long[view.remaining()];
+                    ((LongBuffer) view).get(array);
+                    return array;
+                }
+
+                @Override
+                Buffer wrap(Object array) {
+                    return LongBuffer.wrap((long[]) array);
+                }
+
+                @Override
+                Buffer duplicate(Buffer values) {
+                    return ((LongBuffer) values).duplicate();
+                }
+
+                @Override
+                void put(ByteBuffer bytes, Buffer values) {
+                    bytes.asLongBuffer().put((LongBuffer) values);
+                }
+
+                @Override
+                void writeArray(JsonGenerator generator, Object array) throws IOException {
+                    generator.writeArray((long[]) array, 0, ((long[]) array).length);
+                }
+            },
+            new Kind(float[].class, FloatBuffer.class, 81, 85, 4) {
+                @Override
+                Buffer view(ByteBuffer bytes) {
+                    return bytes.asFloatBuffer();
+                }
+
+                @Override
+                Object toArray(Buffer view) {
+                    float[] array = new float[view.remaining()];
+                    ((FloatBuffer) view).get(array);
+                    return array;
+                }
+
+                @Override
+                Buffer wrap(Object array) {
+                    return FloatBuffer.wrap((float[]) array);
+                }
+
+                @Override
+                Buffer duplicate(Buffer values) {
+                    return ((FloatBuffer) values).duplicate();
+                }
+
+                @Override
+                void put(ByteBuffer bytes, Buffer values) {
+                    bytes.asFloatBuffer().put((FloatBuffer) values);
+                }
+
+                @Override
+                void writeArray(JsonGenerator generator, Object array) throws IOException {
+                    float[] values = (float[]) array;
+                    generator.writeStartArray(values, values.length);
+                    for (float value: values) {
+                        generator.writeNumber(value);
+                    }
+                    generator.writeEndArray();
+                }
+            },
+            new Kind(double[].class, DoubleBuffer.class, 82, 86, 8) {
+                @Override
+                Buffer view(ByteBuffer bytes) {
+                    return bytes.asDoubleBuffer();
+                }
+
+                @Override
+                Object toArray(Buffer view) {
+                    double[] array = new double[view.remaining()];
+                    ((DoubleBuffer) view).get(array);
+                    return array;
+                }
+
+                @Override
+                Buffer wrap(Object array) {
+                    return DoubleBuffer.wrap((double[]) array);
+                }
+
+                @Override
+                Buffer duplicate(Buffer values) {
+                    return ((DoubleBuffer) values).duplicate();
+                }
+
+                @Override
+                void put(ByteBuffer bytes, Buffer values) {
+                    bytes.asDoubleBuffer().put((DoubleBuffer) values);
+                }
+
+                @Override
+                void writeArray(JsonGenerator generator, Object array) throws IOException {
+                    generator.writeArray((double[]) array, 0, ((double[]) array).length);
+                }
+            }
+    };
+
+    static final Module MODULE = createModule();
+
+    private CBORTypedArrays() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Module createModule() {
+        SimpleModule module = new SimpleModule("CBORTypedArrays");
+        for (Kind kind: KINDS) {
+            module.addSerializer(kind.mArrayType, new TypedArraySerializer(kind, false));
+            module.addSerializer(kind.mBufferType, new TypedArraySerializer(kind, true));
+            module.addDeserializer((Class<Object>) kind.mArrayType,
+                    new TypedArrayDeserializer(kind, false));
+            module.addDeserializer((Class<Object>) kind.mBufferType,
+                    new TypedArrayDeserializer(kind, true));
+        }
+        module.addDeserializer(Object.class, new UntypedDeserializer());
+        return module;
+    }
+
+    // The kind of typed array the current token is, null if it isn't one.
+    private static Kind getKind(JsonParser parser) {
+        if (!parser.hasToken(JsonToken.VALUE_EMBEDDED_OBJECT)
+                || !(parser instanceof CBORParser)) {
+            return null;
+        }
+        int tag = ((CBORParser) parser).getCurrentTag();
+        for (Kind kind: KINDS) {
+            if (tag == kind.mBigEndianTag || tag == kind.mLittleEndianTag) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    // Buffer view over the typed array at the current token.
+    private static Buffer readView(JsonParser parser, DeserializationContext context, Kind kind)
+            throws IOException {
+        ByteOrder order = ((CBORParser) parser).getCurrentTag() == kind.mBigEndianTag
+                ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        byte[] bytes = parser.getBinaryValue();
+        if (bytes.length % kind.mElementSize != 0) {
+            return (Buffer) context.handleUnexpectedToken(kind.mArrayType, parser);
+        }
+        return kind.view(ByteBuffer.wrap(bytes).order(order));
+    }
+
+    private abstract static class Kind {
+
+        final Class<?> mArrayType;
+        final Class<?> mBufferType;
+        final int mBigEndianTag;
+        final int mLittleEndianTag;
+        final int mElementSize;
+
+        Kind(Class<?> arrayType, Class<?> bufferType, int bigEndianTag, int littleEndianTag,
+             int elementSize) {
+            mArrayType = arrayType;
+            mBufferType = bufferType;
+            mBigEndianTag = bigEndianTag;
+            mLittleEndianTag = littleEndianTag;
+            mElementSize = elementSize;
+        }
+
+        abstract Buffer view(ByteBuffer bytes);
+
+        abstract Object toArray(Buffer view);
+
+        abstract Buffer wrap(Object array);
+
+        // Buffer.duplicate() only exists since Java 9.
+        abstract Buffer duplicate(Buffer values);
+
+        // Puts the remaining values at the position of bytes, big-endian.
+        abstract void put(ByteBuffer bytes, Buffer values);
+
+        abstract void writeArray(JsonGenerator generator, Object array) throws IOException;
+    }
+
+    private static final class TypedArraySerializer extends StdSerializer<Object> {
+
+        private final Kind mKind;
+        private final boolean mBuffer;
+
+        TypedArraySerializer(Kind kind, boolean buffer) {
+            super(Object.class);
+            mKind = kind;
+            mBuffer = buffer;
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            Buffer values = mBuffer ? mKind.duplicate((Buffer) value) : mKind.wrap(value);
+            if (generator instanceof CBORGenerator) {
+                ByteBuffer bytes = ByteBuffer.allocate(values.remaining() * mKind.mElementSize);
+                mKind.put(bytes, values);
+                ((CBORGenerator) generator).writeTag(mKind.mBigEndianTag);
+                generator.writeBinary(bytes.array());
+            } else {
+                // e.g. the TokenBuffer of ObjectMapper.convertValue().
+                mKind.writeArray(generator, mBuffer ? mKind.toArray(values) : value);
+            }
+        }
+    }
+
+    private static final class TypedArrayDeserializer extends StdDeserializer<Object> {
+
+        private final Kind mKind;
+        private final boolean mBuffer;
+        private final JsonDeserializer<?> mArrayDeserializer;
+
+        TypedArrayDeserializer(Kind kind, boolean buffer) {
+            super(buffer ? kind.mBufferType : kind.mArrayType);
+            mKind = kind;
+            mBuffer = buffer;
+            mArrayDeserializer = PrimitiveArrayDeserializers.forType(
+                    kind.mArrayType.getComponentType());
+        }
+
+        @Override
+        public Object deserialize(JsonParser parser, DeserializationContext context)
+                throws IOException {
+            if (getKind(parser) == mKind) {
+                Buffer view = readView(parser, context, mKind);
+                return mBuffer ? view : mKind.toArray(view);
+            }
+            Object array = mArrayDeserializer.deserialize(parser, context);
+            return mBuffer ? mKind.wrap(array) : array;
+        }
+    }
+
+    private static final class UntypedDeserializer extends UntypedObjectDeserializer {
+
+        UntypedDeserializer() {
+            super(null, null);
+        }
+
+        // Also called for the items of lists and maps.
+        @Override
+        public Object deserialize(JsonParser parser, DeserializationContext context)
+                throws IOException {
+            Kind kind = getKind(parser);
+            if (kind != null) {
+                return kind.toArray(readView(parser, context, kind));
+            }
+            return super.deserialize(parser, context);
+        }
+    }
+}
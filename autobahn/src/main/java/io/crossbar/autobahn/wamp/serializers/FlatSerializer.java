@@ -0,0 +1,297 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.serializers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Error;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.messages.Result;
+import io.crossbar.autobahn.wamp.messages.Yield;
+import io.crossbar.autobahn.wamp.utils.MessageUtil;
+
+/**
+ * A binary serializer with a fixed, schema-based layout for the hot
+ * messages (PUBLISH, EVENT, CALL, RESULT, INVOCATION, YIELD and ERROR),
+ * so that their fields are read in place from the received frame.
+ * <p>
+ * Such a frame starts with a 4 byte header (message type, number of
+ * fields, two reserved bytes), followed by one 8 byte slot per field, in
+ * the order of the WAMP message. IDs and integers are stored in their
+ * slot as big-endian u64. Strings and all other values (options, details,
+ * args, kwargs) are stored in a data section after the slots, and their
+ * slot holds a u32 offset and a u32 length. Strings are UTF-8; other
+ * values are CBOR, so that args and kwargs are only decoded once they
+ * are used, straight from the frame. A length of -1 stands for null.
+ * Primitive numeric arrays are CBOR typed arrays, as with
+ * {@link CBORSerializer}.
+ * <p>
+ * All other messages are sent as a plain CBOR array. Its first byte
+ * (0x80 and up) can't be mistaken for a message type.
+ * <p>
+ * This is not a WAMP standard serializer. It's offered under its own
+ * subprotocol name, which routers that don't implement it ignore.
+ */
+public class FlatSerializer extends ISerializer {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(FlatSerializer.class.getName());
+
+    public static final String NAME = "wamp.2.x_autobahn_flat";
+
+    private static final int HEADER_SIZE = 4;
+    private static final int SLOT_SIZE = 8;
+    private static final int NULL_LENGTH = -1;
+
+    // Field kinds of the schemas.
+    private static final byte ID = 1;
+    private static final byte INT = 2;
+    private static final byte STRING = 3;
+    private static final byte CBOR = 4;
+
+    // Field kinds of the fixed-layout messages, indexed by message type,
+    // excluding the type itself.
+    private static final byte[][] SCHEMAS = new byte[MessageMap.MAX_MESSAGE_TYPE + 1][];
+
+    static {
+        SCHEMAS[Error.MESSAGE_TYPE] = new byte[] {INT, ID, CBOR, STRING, CBOR, CBOR};
+        SCHEMAS[Publish.MESSAGE_TYPE] = new byte[] {ID, CBOR, STRING, CBOR, CBOR};
+        SCHEMAS[Event.MESSAGE_TYPE] = new byte[] {ID, ID, CBOR, CBOR, CBOR};
+        SCHEMAS[Call.MESSAGE_TYPE] = new byte[] {ID, CBOR, STRING, CBOR, CBOR};
+        SCHEMAS[Result.MESSAGE_TYPE] = new byte[] {ID, CBOR, CBOR, CBOR};
+        SCHEMAS[Invocation.MESSAGE_TYPE] = new byte[] {ID, ID, CBOR, CBOR, CBOR};
+        SCHEMAS[Yield.MESSAGE_TYPE] = new byte[] {ID, CBOR, CBOR, CBOR};
+    }
+
+    public FlatSerializer() {
+        this(false);
+    }
+
+    /**
+     * @param typedArrays True to encode primitive numeric arrays in the
+     *                    CBOR fields as RFC 8746 typed arrays.
+     * @see CBORSerializer#CBORSerializer(boolean)
+     */
+    public FlatSerializer(boolean typedArrays) {
+        super(new CBORFactory());
+        if (typedArrays) {
+            mapper.registerModule(CBORTypedArrays.MODULE);
+        }
+    }
+
+    @Override
+    public byte[] serialize(List<Object> message) {
+        byte[] schema = getSchema(message.get(0));
+        if (schema == null || message.size() - 1 > schema.length) {
+            return super.serialize(message);
+        }
+        int fields = message.size() - 1;
+        int dataStart = HEADER_SIZE + SLOT_SIZE * fields;
+        byte[] slots = new byte[dataStart];
+        slots[0] = (byte) (int) message.get(0);
+        slots[1] = (byte) fields;
+
+        try (ByteArrayBuilder data = new ByteArrayBuilder(
+                mapper.getFactory()._getBufferRecycler())) {
+            // Room for the header and slots, they are filled in at the end.
+            data.write(slots);
+            try (JsonGenerator generator = mapper.createGenerator(data)) {
+                for (int i = 0; i < fields; i++) {
+                    int slot = HEADER_SIZE + SLOT_SIZE * i;
+                    Object value = message.get(i + 1);
+                    if (schema[i] == ID || schema[i] == INT) {
+                        putLong(slots, slot, ((Number) value).longValue());
+                        continue;
+                    }
+                    if (value == null) {
+                        putInt(slots, slot + 4, NULL_LENGTH);
+                        continue;
+                    }
+                    generator.flush();
+                    int offset = data.size();
+                    if (schema[i] == STRING) {
+                        data.write(((String) value).getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        MessageUtil.writeValue(generator, value);
+                        generator.flush();
+                    }
+                    putInt(slots, slot, offset);
+                    putInt(slots, slot + 4, data.size() - offset);
+                }
+            }
+            byte[] result = data.toByteArray();
+            System.arraycopy(slots, 0, result, 0, dataStart);
+            data.release();
+            return result;
+        } catch (IOException e) {
+            LOGGER.v(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] serialize(IMessage message) {
+        return serialize(message.marshal());
+    }
+
+    /**
+     * The slots are only known once the data section is written, so the
+     * frame is built in an array first.
+     */
+    @Override
+    public void serialize(IMessage message, OutputStream output) throws IOException {
+        output.write(serialize(message));
+    }
+
+    @Override
+    public List<Object> unserialize(byte[] payload, boolean isBinary) {
+        if (isCBOR(payload)) {
+            return super.unserialize(payload, isBinary);
+        }
+        List<Object> message = new ArrayList<>(new FlatMessage(payload));
+        for (int i = 0; i < message.size(); i++) {
+            Object item = message.get(i);
+            if (item instanceof LazyList) {
+                message.set(i, new ArrayList<>((LazyList) item));
+            } else if (item instanceof LazyMap) {
+                message.set(i, new HashMap<>((LazyMap) item));
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Returns a view of the frame that reads each field from the frame when
+     * it is accessed. Args and kwargs are returned as {@link LazyList} and
+     * {@link LazyMap} over their bytes in the frame.
+     */
+    @Override
+    public List<Object> unserializeLazily(byte[] payload, boolean isBinary) {
+        if (isCBOR(payload)) {
+            return super.unserializeLazily(payload, isBinary);
+        }
+        return new FlatMessage(payload);
+    }
+
+    private static boolean isCBOR(byte[] payload) {
+        return payload.length > 0 && (payload[0] & 0xff) >= 0x80;
+    }
+
+    private static byte[] getSchema(Object messageType) {
+        if (!(messageType instanceof Integer)) {
+            return null;
+        }
+        int type = (int) messageType;
+        return type >= 0 && type < SCHEMAS.length ? SCHEMAS[type] : null;
+    }
+
+    private static void putInt(byte[] buffer, int index, int value) {
+        buffer[index] = (byte) (value >>> 24);
+        buffer[index + 1] = (byte) (value >>> 16);
+        buffer[index + 2] = (byte) (value >>> 8);
+        buffer[index + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] buffer, int index, long value) {
+        putInt(buffer, index, (int) (value >>> 32));
+        putInt(buffer, index + 4, (int) value);
+    }
+
+    private static int getInt(byte[] buffer, int index) {
+        return (buffer[index] & 0xff) << 24 | (buffer[index + 1] & 0xff) << 16
+                | (buffer[index + 2] & 0xff) << 8 | buffer[index + 3] & 0xff;
+    }
+
+    private static long getLong(byte[] buffer, int index) {
+        return (long) getInt(buffer, index) << 32 | getInt(buffer, index + 4) & 0xffffffffL;
+    }
+
+    private final class FlatMessage extends AbstractList<Object> implements RandomAccess {
+
+        private final byte[] mBuffer;
+        private final byte[] mSchema;
+        private final int mSize;
+
+        FlatMessage(byte[] buffer) {
+            mBuffer = buffer;
+            mSchema = buffer.length >= HEADER_SIZE ? getSchema((int) buffer[0]) : null;
+            mSize = (buffer.length >= HEADER_SIZE ? buffer[1] & 0xff : 0) + 1;
+            if (mSchema == null || mSize - 1 > mSchema.length
+                    || buffer.length < HEADER_SIZE + SLOT_SIZE * (mSize - 1)) {
+                throw new ProtocolError("Invalid message.");
+            }
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index == 0) {
+                return (int) mBuffer[0];
+            }
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+            }
+            int slot = HEADER_SIZE + SLOT_SIZE * (index - 1);
+            byte kind = mSchema[index - 1];
+            if (kind == ID) {
+                return getLong(mBuffer, slot);
+            } else if (kind == INT) {
+                return (int) getLong(mBuffer, slot);
+            }
+            int offset = getInt(mBuffer, slot);
+            int length = getInt(mBuffer, slot + 4);
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            if (offset < 0 || length < 0 || offset > mBuffer.length - length) {
+                throw new ProtocolError("Invalid message.");
+            }
+            if (kind == STRING) {
+                return new String(mBuffer, offset, length, StandardCharsets.UTF_8);
+            }
+            int majorType = length > 0 ? (mBuffer[offset] & 0xe0) : -1;
+            if (majorType == 0x80) {
+                return new LazyList(mapper, mBuffer, offset, length);
+            } else if (majorType == 0xa0) {
+                return new LazyMap(mapper, mBuffer, offset, length);
+            }
+            try {
+                return mapper.readValue(mBuffer, offset, length, Object.class);
+            } catch (IOException e) {
+                throw new ProtocolError(e.getMessage());
+            }
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+}
@@ -14,6 +14,9 @@ package io.crossbar.autobahn.wamp.serializers;
 import com.fasterxml.jackson.core.JsonFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+
 import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 
 
@@ -33,4 +36,9 @@ public class JSONSerializer extends ISerializer {
     public boolean isBinary() {
         return false;
     }
+
+    @Override
+    public List<Object> unserializeLazily(byte[] payload, boolean isBinary) {
+        return LazyMessages.unserialize(mapper, payload);
+    }
 }
@@ -0,0 +1,246 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+package io.crossbar.autobahn.wamp.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * The positional arguments of a received message, kept as the raw
+ * serialized bytes until they are first looked at.
+ * <p>
+ * Behaves like an ArrayList, mutators included. The first access decodes
+ * the whole list into one and delegates to it, except {@link #readItem}
+ * which decodes one item straight into a target type without building the
+ * generic List/Map tree first.
+ */
+public final class LazyList extends AbstractList<Object> implements RandomAccess {
+
+    private final ObjectMapper mMapper;
+    private final byte[] mBuffer;
+    private final int mOffset;
+    private final int mLength;
+
+    private volatile ArrayList<Object> mDecoded;
+
+    public LazyList(ObjectMapper mapper, byte[] buffer, int offset, int length) {
+        mMapper = mapper;
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    @Override
+    public Object get(int index) {
+        return decoded().get(index);
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        return decoded().set(index, element);
+    }
+
+    @Override
+    public boolean add(Object element) {
+        return decoded().add(element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        decoded().add(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+        return decoded().remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return decoded().remove(o);
+    }
+
+    @Override
+    public boolean addAll(Collection<?> c) {
+        return decoded().addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<?> c) {
+        return decoded().addAll(index, c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return decoded().removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return decoded().retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Object> filter) {
+        return decoded().removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Object> operator) {
+        decoded().replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super Object> c) {
+        decoded().sort(c);
+    }
+
+    @Override
+    public void clear() {
+        decoded().clear();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return decoded().contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return decoded().indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return decoded().lastIndexOf(o);
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return decoded().iterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator() {
+        return decoded().listIterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator(int index) {
+        return decoded().listIterator(index);
+    }
+
+    @Override
+    public List<Object> subList(int fromIndex, int toIndex) {
+        return decoded().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Object> action) {
+        decoded().forEach(action);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return decoded().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return decoded().toArray(a);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || decoded().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return decoded().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return decoded().toString();
+    }
+
+    public boolean isDecoded() {
+        return mDecoded != null;
+    }
+
+    /**
+     * Decodes the item at index directly into the type of the reader.
+     */
+    public <T> T readItem(int index, ObjectReader reader) {
+        ArrayList<Object> decoded = mDecoded;
+        if (decoded != null) {
+            return mMapper.convertValue(decoded.get(index), reader.getValueType());
+        }
+        try (JsonParser parser = mMapper.getFactory().createParser(mBuffer, mOffset, mLength)) {
+            parser.nextToken();
+            for (int i = 0; i < index; i++) {
+                if (parser.nextToken() == JsonToken.END_ARRAY) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                parser.skipChildren();
+            }
+            if (parser.nextToken() == JsonToken.END_ARRAY) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return reader.readValue(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ArrayList<Object> decoded() {
+        ArrayList<Object> decoded = mDecoded;
+        if (decoded == null) {
+            // Decoded once, so changes made through one reference are seen
+            // by every other.
+            synchronized (this) {
+                decoded = mDecoded;
+                if (decoded == null) {
+                    try {
+                        decoded = mMapper.readValue(mBuffer, mOffset, mLength, mMapper
+                                .getTypeFactory().constructCollectionType(ArrayList.class, Object.class));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    mDecoded = decoded;
+                }
+            }
+        }
+        return decoded;
+    }
+}
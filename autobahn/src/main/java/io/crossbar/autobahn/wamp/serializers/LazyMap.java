@@ -0,0 +1,209 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+package io.crossbar.autobahn.wamp.serializers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The keyword arguments of a received message, kept as the raw
+ * serialized bytes until they are first looked at.
+ * <p>
+ * Behaves like a LinkedHashMap, mutators included. The first access
+ * decodes the whole map into one and delegates to it.
+ *
+ * @see LazyList
+ */
+public final class LazyMap extends AbstractMap<String, Object> {
+
+    private final ObjectMapper mMapper;
+    private final byte[] mBuffer;
+    private final int mOffset;
+    private final int mLength;
+
+    private volatile LinkedHashMap<String, Object> mDecoded;
+
+    public LazyMap(ObjectMapper mapper, byte[] buffer, int offset, int length) {
+        mMapper = mapper;
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return decoded().get(key);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        return decoded().getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return decoded().containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return decoded().containsValue(value);
+    }
+
+    @Override
+    public int size() {
+        return decoded().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return decoded().isEmpty();
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return decoded().put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        decoded().putAll(m);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        return decoded().putIfAbsent(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return decoded().remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return decoded().remove(key, value);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        return decoded().replace(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        return decoded().replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+        decoded().replaceAll(function);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key,
+                                  Function<? super String, ?> mappingFunction) {
+        return decoded().computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key,
+                                   BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        return decoded().computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key,
+                          BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        return decoded().compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key, Object value,
+                        BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        return decoded().merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void clear() {
+        decoded().clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return decoded().keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return decoded().values();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return decoded().entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        decoded().forEach(action);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || decoded().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return decoded().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return decoded().toString();
+    }
+
+    public boolean isDecoded() {
+        return mDecoded != null;
+    }
+
+    private LinkedHashMap<String, Object> decoded() {
+        LinkedHashMap<String, Object> decoded = mDecoded;
+        if (decoded == null) {
+            // See LazyList.decoded().
+            synchronized (this) {
+                decoded = mDecoded;
+                if (decoded == null) {
+                    try {
+                        decoded = mMapper.readValue(mBuffer, mOffset, mLength, mMapper
+                                .getTypeFactory().constructMapType(
+                                        LinkedHashMap.class, String.class, Object.class));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    mDecoded = decoded;
+                }
+            }
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,87 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+package io.crossbar.autobahn.wamp.serializers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.Result;
+
+/**
+ * Implementation of {@link io.crossbar.autobahn.wamp.interfaces.ISerializer#unserializeLazily}
+ * for formats whose parser reports byte offsets, so that the payload can be
+ * sliced out of the buffer into a {@link LazyList} or {@link LazyMap}.
+ */
+final class LazyMessages {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(LazyMessages.class.getName());
+
+    private LazyMessages() {
+    }
+
+    static List<Object> unserialize(ObjectMapper mapper, byte[] payload) {
+        try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return null;
+            }
+            List<Object> message = new ArrayList<>(7);
+            int argsIndex = -1;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                int index = message.size();
+                if (index == 1) {
+                    argsIndex = getArgsIndex(message.get(0));
+                }
+                if (argsIndex > 0 && (index == argsIndex || index == argsIndex + 1)
+                        && (token == JsonToken.START_ARRAY || token == JsonToken.START_OBJECT)) {
+                    int start = (int) parser.getTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    int length = (int) parser.getCurrentLocation().getByteOffset() - start;
+                    if (token == JsonToken.START_ARRAY) {
+                        message.add(new LazyList(mapper, payload, start, length));
+                    } else {
+                        message.add(new LazyMap(mapper, payload, start, length));
+                    }
+                } else {
+                    message.add(mapper.readValue(parser, Object.class));
+                }
+            }
+            return message;
+        } catch (IOException e) {
+            LOGGER.v(e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static int getArgsIndex(Object messageType) {
+        if (!(messageType instanceof Integer)) {
+            return -1;
+        }
+        switch ((int) messageType) {
+            case Event.MESSAGE_TYPE:
+            case Invocation.MESSAGE_TYPE:
+                return 4;
+            case Result.MESSAGE_TYPE:
+                return 3;
+            default:
+                return -1;
+        }
+    }
+}
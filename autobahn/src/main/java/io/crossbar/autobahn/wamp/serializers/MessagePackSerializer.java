@@ -13,6 +13,8 @@ package io.crossbar.autobahn.wamp.serializers;
 
 import org.msgpack.jackson.dataformat.MessagePackFactory;
 
+import java.util.List;
+
 import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 
 
@@ -24,4 +26,9 @@ public class MessagePackSerializer extends ISerializer {
     public MessagePackSerializer() {
         super(new MessagePackFactory());
     }
+
+    @Override
+    public List<Object> unserializeLazily(byte[] payload, boolean isBinary) {
+        return LazyMessages.unserialize(mapper, payload);
+    }
 }
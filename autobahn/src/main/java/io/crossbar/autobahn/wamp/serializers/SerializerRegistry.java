@@ -0,0 +1,162 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.serializers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Error;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.messages.Result;
+import io.crossbar.autobahn.wamp.messages.Yield;
+
+/**
+ * Process-wide serializer instances, one per WAMP serializer name.
+ * <p>
+ * A serializer is thread-safe once constructed, but constructing one
+ * builds and configures a new ObjectMapper, which is expensive and keeps
+ * its own serializer caches. Transports take their serializer from here,
+ * so that all connections using a format share one mapper.
+ * <p>
+ * The shared mappers must not be reconfigured. Applications that need a
+ * customized mapper pass their own, see
+ * {@link io.crossbar.autobahn.wamp.types.TransportOptions#setObjectMapper}.
+ */
+public final class SerializerRegistry {
+
+    private static final ConcurrentHashMap<String, ISerializer> SERIALIZERS =
+            new ConcurrentHashMap<>();
+    // The CBOR based serializers with RFC 8746 typed arrays.
+    private static final ConcurrentHashMap<String, ISerializer> TYPED_ARRAY_SERIALIZERS =
+            new ConcurrentHashMap<>();
+
+    private SerializerRegistry() {
+    }
+
+    /**
+     * Returns the shared serializer for a WAMP serializer name,
+     * e.g. {@link CBORSerializer#NAME}.
+     *
+     * @throws IllegalArgumentException if the serializer is not supported
+     */
+    public static ISerializer get(String name) {
+        ISerializer serializer = SERIALIZERS.get(name);
+        if (serializer == null) {
+            serializer = SERIALIZERS.computeIfAbsent(name, SerializerRegistry::create);
+        }
+        return serializer;
+    }
+
+    /**
+     * Like {@link #get(String)}, but the CBOR based serializers send
+     * primitive numeric arrays as RFC 8746 typed arrays if cborTypedArrays
+     * is set, see {@link CBORSerializer#CBORSerializer(boolean)}.
+     *
+     * @throws IllegalArgumentException if the serializer is not supported
+     */
+    public static ISerializer get(String name, boolean cborTypedArrays) {
+        if (!cborTypedArrays
+                || !(CBORSerializer.NAME.equals(name) || FlatSerializer.NAME.equals(name))) {
+            return get(name);
+        }
+        return TYPED_ARRAY_SERIALIZERS.computeIfAbsent(name, key -> key.equals(CBORSerializer.NAME)
+                ? new CBORSerializer(true) : new FlatSerializer(true));
+    }
+
+    /**
+     * Returns the shared serializer for a RawSocket serializer ID,
+     * e.g. {@link CBORSerializer#RAWSOCKET_SERIALIZER_ID}.
+     *
+     * @throws IllegalArgumentException if the serializer is not supported
+     */
+    public static ISerializer get(int rawSocketSerializerID) {
+        switch (rawSocketSerializerID) {
+            case JSONSerializer.RAWSOCKET_SERIALIZER_ID:
+                return get(JSONSerializer.NAME);
+            case MessagePackSerializer.RAWSOCKET_SERIALIZER_ID:
+                return get(MessagePackSerializer.NAME);
+            case CBORSerializer.RAWSOCKET_SERIALIZER_ID:
+                return get(CBORSerializer.NAME);
+            default:
+                throw new IllegalArgumentException("Unsupported serializer.");
+        }
+    }
+
+    /**
+     * Creates the shared serializers for the given names and runs the
+     * common message types through them once, so that the first session
+     * doesn't pay for class loading and Jackson's serializer lookups.
+     * With no names, all supported serializers are warmed up.
+     */
+    public static void warmUp(String... names) {
+        if (names.length == 0) {
+            names = new String[] {
+                    JSONSerializer.NAME, CBORSerializer.NAME, MessagePackSerializer.NAME,
+                    FlatSerializer.NAME};
+        }
+        for (String name: names) {
+            warmUp(get(name));
+        }
+    }
+
+    private static ISerializer create(String name) {
+        switch (name) {
+            case CBORSerializer.NAME:
+                return new CBORSerializer();
+            case JSONSerializer.NAME:
+                return new JSONSerializer();
+            case MessagePackSerializer.NAME:
+                return new MessagePackSerializer();
+            case FlatSerializer.NAME:
+                return new FlatSerializer();
+            default:
+                throw new IllegalArgumentException("Unsupported serializer.");
+        }
+    }
+
+    private static void warmUp(ISerializer serializer) {
+        List<Object> args = Arrays.asList("warmup", 1, 1L << 40, 1.5, true, null);
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("args", args);
+        kwargs.put("details", Collections.singletonMap("key", "value"));
+
+        List<IMessage> outgoing = Arrays.asList(
+                new Call(1, "warmup", args, kwargs, 1000),
+                new Publish(1, "warmup", args, kwargs, true, false, false),
+                new Yield(1, args, kwargs),
+                new Error(Invocation.MESSAGE_TYPE, 1, "warmup", args, kwargs));
+        for (IMessage message: outgoing) {
+            serializer.serialize(message);
+        }
+
+        List<IMessage> incoming = Arrays.asList(
+                new Event(1, 1, null, false, args, kwargs),
+                new Result(1, args, kwargs),
+                new Invocation(1, 1, Collections.emptyMap(), args, kwargs));
+        for (IMessage message: incoming) {
+            byte[] payload = serializer.serialize(message.marshal());
+            MessageMap.parse(serializer.unserialize(payload, serializer.isBinary()));
+            // hashCode() decodes the lazy args and kwargs.
+            serializer.unserializeLazily(payload, serializer.isBinary()).hashCode();
+        }
+    }
+}
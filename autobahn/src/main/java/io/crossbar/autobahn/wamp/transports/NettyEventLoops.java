@@ -0,0 +1,154 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import java.util.concurrent.ThreadFactory;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Event loops of the Netty transports.
+ * <p>
+ * Unless {@link NettyTransportOptions} say otherwise, connections are
+ * registered with one process wide group of daemon threads, so many
+ * sessions share a few I/O threads. On Linux that group uses io_uring or
+ * epoll when netty-incubator-transport-native-io_uring or
+ * netty-transport-native-epoll is on the classpath and the kernel
+ * supports it, and falls back to NIO. The native transports are looked
+ * up by name, none of them is needed to compile or run.
+ * <p>
+ * Set the system property "autobahn.netty.native" to false to always
+ * use NIO.
+ */
+public final class NettyEventLoops {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(
+            NettyEventLoops.class.getName());
+
+    // Availability check, event loop group and socket channel of the
+    // native transports, in order of preference.
+    private static final String[][] NATIVE_TRANSPORTS = {
+            {"io.netty.incubator.channel.uring.IOUring",
+                    "io.netty.incubator.channel.uring.IOUringEventLoopGroup",
+                    "io.netty.incubator.channel.uring.IOUringSocketChannel"},
+            {"io.netty.channel.epoll.Epoll",
+                    "io.netty.channel.epoll.EpollEventLoopGroup",
+                    "io.netty.channel.epoll.EpollSocketChannel"},
+    };
+
+    private static EventLoopGroup sDefaultGroup;
+
+    private NettyEventLoops() {
+    }
+
+    /**
+     * @return the group shared by all connections that don't bring their
+     *     own, created on first use and never shut down
+     */
+    public static synchronized EventLoopGroup getDefaultGroup() {
+        if (sDefaultGroup == null) {
+            sDefaultGroup = newGroup(NettyRuntime.availableProcessors());
+        }
+        return sDefaultGroup;
+    }
+
+    /**
+     * Creates an event loop group of the best transport available.
+     *
+     * @param threads number of event loops
+     * @return io_uring, epoll or NIO event loop group
+     */
+    public static EventLoopGroup newGroup(int threads) {
+        ThreadFactory threadFactory = new DefaultThreadFactory("autobahn-netty", true);
+        if (Boolean.parseBoolean(System.getProperty("autobahn.netty.native", "true"))) {
+            for (String[] transport: NATIVE_TRANSPORTS) {
+                try {
+                    if ((Boolean) Class.forName(transport[0]).getMethod("isAvailable")
+                            .invoke(null)) {
+                        LOGGER.d("Using " + transport[1]);
+                        return (EventLoopGroup) Class.forName(transport[1])
+                                .getConstructor(int.class, ThreadFactory.class)
+                                .newInstance(threads, threadFactory);
+                    }
+                } catch (ClassNotFoundException | LinkageError ignore) {
+                    // Not on the classpath.
+                } catch (ReflectiveOperationException e) {
+                    LOGGER.w("Failed to create " + transport[1], e);
+                }
+            }
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * @param group event loop group
+     * @return the socket channel type that goes with the group
+     */
+    @SuppressWarnings("unchecked")
+    public static Class<? extends Channel> getChannelClass(EventLoopGroup group) {
+        String name = group.getClass().getName();
+        for (String[] transport: NATIVE_TRANSPORTS) {
+            if (transport[1].equals(name)) {
+                try {
+                    return (Class<? extends Channel>) Class.forName(
+                            transport[2], true, group.getClass().getClassLoader());
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return NioSocketChannel.class;
+    }
+
+    /**
+     * Creates the bootstrap of a connection: a clone of the bootstrap of
+     * the options, if any, registering with its own event loop group, the
+     * group of the options, the group of the transport or the default
+     * group, and the channel type that goes with the group unless the
+     * bootstrap has one.
+     *
+     * @param options options of the transport
+     * @param group event loop group of the transport, may be null
+     * @return bootstrap without handler
+     */
+    static Bootstrap newBootstrap(TransportOptions options, EventLoopGroup group) {
+        Bootstrap bootstrap = null;
+        if (options instanceof NettyTransportOptions) {
+            NettyTransportOptions nettyOptions = (NettyTransportOptions) options;
+            if (nettyOptions.getEventLoopGroup() != null) {
+                group = nettyOptions.getEventLoopGroup();
+            }
+            if (nettyOptions.getBootstrap() != null) {
+                bootstrap = nettyOptions.getBootstrap().clone();
+            }
+        }
+        if (bootstrap == null) {
+            bootstrap = new Bootstrap();
+        }
+        if (bootstrap.config().group() == null) {
+            bootstrap.group(group == null ? getDefaultGroup() : group);
+        }
+        if (bootstrap.config().channelFactory() == null) {
+            bootstrap.channel(getChannelClass(bootstrap.config().group()));
+        }
+        return bootstrap;
+    }
+}
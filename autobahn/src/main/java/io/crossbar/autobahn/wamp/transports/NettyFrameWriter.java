@@ -0,0 +1,99 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Writes the frames of {@link NettyRawSocket} and {@link NettyWebSocket}.
+ * <p>
+ * Frames are written without flushing, and one flush per batch is
+ * scheduled on the event loop.
+ */
+final class NettyFrameWriter {
+
+    // Kept on the channel, so that a flush still pending for a closed
+    // connection doesn't hold up the next one. Only touched on the event loop.
+    private static final AttributeKey<Boolean> FLUSH_PENDING =
+            AttributeKey.valueOf(NettyFrameWriter.class, "flushPending");
+
+    private NettyFrameWriter() {
+    }
+
+    /**
+     * Takes size bytes of the send buffer for the frame and writes it on
+     * the event loop of the channel. The frame is released if it's dropped
+     * or the send buffer throws.
+     *
+     * @param future completed once the frame is written, may be null
+     */
+    static void send(Channel channel, Object frame, int size, SendBuffer sendBuffer,
+                     boolean mayDrop, int maxFlushDelay, CompletableFuture<Void> future) {
+        EventLoop eventLoop = channel.eventLoop();
+        boolean accepted;
+        try {
+            accepted = sendBuffer.acquire(size, !eventLoop.inEventLoop(), mayDrop);
+        } catch (RuntimeException e) {
+            ReferenceCountUtil.release(frame);
+            throw e;
+        }
+        if (!accepted) {
+            ReferenceCountUtil.release(frame);
+            SendBuffer.dropped(future);
+            return;
+        }
+        if (eventLoop.inEventLoop()) {
+            write(channel, frame, size, sendBuffer, maxFlushDelay, future);
+        } else {
+            eventLoop.execute(() ->
+                    write(channel, frame, size, sendBuffer, maxFlushDelay, future));
+        }
+    }
+
+    // Runs on the event loop, so the flush is queued behind every
+    // write that is already queued and reaches all of them.
+    private static void write(Channel channel, Object frame, int size, SendBuffer sendBuffer,
+                              int maxFlushDelay, CompletableFuture<Void> future) {
+        channel.write(frame).addListener(written -> {
+            sendBuffer.release(size);
+            if (future == null) {
+                return;
+            }
+            if (written.isSuccess()) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(written.cause());
+            }
+        });
+        Attribute<Boolean> flushPending = channel.attr(FLUSH_PENDING);
+        if (flushPending.get() == Boolean.TRUE) {
+            return;
+        }
+        flushPending.set(Boolean.TRUE);
+        Runnable flush = () -> {
+            flushPending.set(Boolean.FALSE);
+            channel.flush();
+        };
+        if (maxFlushDelay > 0) {
+            channel.eventLoop().schedule(flush, maxFlushDelay, TimeUnit.MILLISECONDS);
+        } else {
+            channel.eventLoop().execute(flush);
+        }
+    }
+}
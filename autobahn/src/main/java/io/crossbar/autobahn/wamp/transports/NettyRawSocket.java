@@ -0,0 +1,283 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.timeout.IdleStateHandler;
+
+/**
+ * WAMP over RawSocket on Netty, for URIs like "rs://host:port" or
+ * "tcp://host:port".
+ * <p>
+ * The pipeline is just the handshake handler, which is replaced by a
+ * length field frame decoder once the router accepted the handshake,
+ * and the {@link NettyRawSocketClientHandler}. Outgoing frames are
+ * written to pooled buffers and flushed once per batch, like
+ * {@link NettyWebSocket} does.
+ * <p>
+ * Serializers are proposed in turn, moving on to the next one when the
+ * router doesn't support it. Connections run on the event loops of
+ * {@link NettyEventLoops}, unless an EventLoopGroup is passed here or in
+ * {@link NettyTransportOptions}; none of them is shut down by
+ * {@link #close()}.
+ */
+public class NettyRawSocket implements ITransport {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(
+            NettyRawSocket.class.getName());
+
+    private final String mUri;
+    private final String[] mSerializers;
+    private final EventLoopGroup mGroup;
+
+    private volatile Channel mChannel;
+    private volatile NettyRawSocketClientHandler mHandler;
+    private volatile int mMaxSendLength;
+    private volatile SendBuffer mSendBuffer;
+    private TransportOptions mOptions;
+    // See NettyFrameWriter.
+    private volatile int mMaxFlushDelay;
+
+    public NettyRawSocket(String uri) {
+        this(uri, null, null);
+    }
+
+    public NettyRawSocket(String uri, List<String> serializers) {
+        this(uri, serializers, null);
+    }
+
+    public NettyRawSocket(String uri, List<String> serializers, EventLoopGroup group) {
+        mUri = uri;
+        if (serializers == null) {
+            mSerializers = RawSocket.SERIALIZERS_DEFAULT;
+        } else {
+            mSerializers = serializers.toArray(new String[0]);
+        }
+        for (String serializer: mSerializers) {
+            RawSocket.getSerializerID(serializer);
+        }
+        mGroup = group;
+    }
+
+    private InetSocketAddress getAddress(URI uri) {
+        String scheme = uri.getScheme();
+        if (!"rs".equalsIgnoreCase(scheme) && !"tcp".equalsIgnoreCase(scheme)) {
+            throw new IllegalArgumentException("Only RS and TCP are supported.");
+        }
+        if (uri.getHost() == null || uri.getPort() == -1) {
+            throw new IllegalArgumentException("Host and port are required.");
+        }
+        return InetSocketAddress.createUnresolved(uri.getHost(), uri.getPort());
+    }
+
+    @Override
+    public void connect(ITransportHandler transportHandler) throws Exception {
+        connect(transportHandler, new TransportOptions());
+    }
+
+    @Override
+    public void connect(ITransportHandler transportHandler, TransportOptions options)
+            throws Exception {
+        if (options == null) {
+            options = mOptions == null ? new TransportOptions() : mOptions;
+        }
+        mOptions = options;
+        mMaxFlushDelay = options.getMaxFlushDelay();
+        InetSocketAddress address = getAddress(new URI(mUri));
+        mSendBuffer = new SendBuffer(transportHandler, options);
+        connect(transportHandler, options, address, 0);
+    }
+
+    private void connect(ITransportHandler transportHandler, TransportOptions options,
+                         InetSocketAddress address, int serializerIndex) {
+        String serializer = mSerializers[serializerIndex];
+        NettyRawSocketClientHandler handler = new NettyRawSocketClientHandler(
+                this, transportHandler, serializer, serializerIndex + 1 < mSerializers.length);
+        mHandler = handler;
+        mMaxSendLength = 0;
+
+        Bootstrap bootstrap = NettyEventLoops.newBootstrap(options, mGroup);
+        bootstrap.option(ChannelOption.TCP_NODELAY, true);
+        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) throws Exception {
+                ChannelPipeline channelPipeline = ch.pipeline();
+                channelPipeline.addLast(new NettyRawSocketHandshakeHandler(
+                        RawSocket.getSerializerID(serializer),
+                        options.getMaxFramePayloadSize()));
+                if (options.getAutoPingInterval() > 0) {
+                    channelPipeline.addLast(new IdleStateHandler(
+                            options.getAutoPingInterval() + options.getAutoPingTimeout(),
+                            options.getAutoPingInterval(), 0, TimeUnit.SECONDS));
+                }
+                channelPipeline.addLast(handler);
+            }
+        });
+        bootstrap.connect(address).addListener((ChannelFutureListener) connectFuture -> {
+            if (connectFuture.cause() != null) {
+                LOGGER.v(connectFuture.cause().getMessage(), connectFuture.cause());
+                mSendBuffer.close();
+                transportHandler.onDisconnect(false);
+                return;
+            }
+            mChannel = connectFuture.channel();
+            mChannel.closeFuture().addListener(closeFuture -> {
+                if (handler.isRetrying()) {
+                    connect(transportHandler, options, address, serializerIndex + 1);
+                } else {
+                    mSendBuffer.close();
+                }
+            });
+        });
+    }
+
+    // Called on the handshake, the connect listener may not have run yet.
+    void setConnected(Channel channel, int maxSendLength) {
+        mChannel = channel;
+        mMaxSendLength = maxSendLength;
+    }
+
+    @Override
+    public void send(byte[] payload, boolean isBinary) {
+        Channel channel = mChannel;
+        if (channel == null || !channel.isActive()) {
+            LOGGER.w("Dropping message, transport is not open");
+            return;
+        }
+        checkLength(payload.length);
+        ByteBuf frame = channel.alloc().ioBuffer(RawSocket.HEADER_SIZE + payload.length);
+        frame.writeInt(RawSocket.FRAME_MESSAGE << 24 | payload.length);
+        frame.writeBytes(payload);
+        NettyFrameWriter.send(channel, frame, frame.readableBytes(), mSendBuffer, true,
+                mMaxFlushDelay, null);
+    }
+
+    /**
+     * Serializes the message straight into a pooled buffer of the
+     * channel, behind room for the header, without an intermediate array.
+     */
+    @Override
+    public void send(IMessage message, ISerializer serializer) {
+        send(message, serializer, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(IMessage message, ISerializer serializer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            send(message, serializer, future);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void send(IMessage message, ISerializer serializer, CompletableFuture<Void> future) {
+        Channel channel = mChannel;
+        if (channel == null || !channel.isActive()) {
+            LOGGER.w("Dropping message, transport is not open");
+            SendBuffer.dropped(future);
+            return;
+        }
+        ByteBuf frame = channel.alloc().ioBuffer();
+        try {
+            frame.writerIndex(RawSocket.HEADER_SIZE);
+            serializer.serialize(message, new ByteBufOutputStream(frame));
+            int length = frame.readableBytes() - RawSocket.HEADER_SIZE;
+            checkLength(length);
+            frame.setInt(0, RawSocket.FRAME_MESSAGE << 24 | length);
+        } catch (IOException e) {
+            frame.release();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            frame.release();
+            throw e;
+        }
+        NettyFrameWriter.send(channel, frame, frame.readableBytes(), mSendBuffer,
+                SendBuffer.mayDrop(message), mMaxFlushDelay, future);
+    }
+
+    private void checkLength(int length) {
+        if (length > mMaxSendLength) {
+            throw new IllegalArgumentException(String.format(
+                    "Message of %d bytes exceeds the %d bytes accepted by the router",
+                    length, mMaxSendLength));
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mChannel != null && mChannel.isActive() && mMaxSendLength > 0;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return isOpen() && mSendBuffer.isWritable();
+    }
+
+    @Override
+    public void close() throws Exception {
+        LOGGER.v("close()");
+        Channel channel = mChannel;
+        if (mHandler != null && channel != null && channel.isOpen()) {
+            // Behind the frames that are still queued.
+            channel.eventLoop().execute(() -> {
+                channel.flush();
+                mHandler.close(channel, true, new CloseDetails(CloseDetails.REASON_DEFAULT, null));
+            });
+            if (!channel.eventLoop().inEventLoop()) {
+                channel.closeFuture().await(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void abort() throws Exception {
+        LOGGER.v("abort()");
+        close();
+    }
+
+    @Override
+    public void setOptions(TransportOptions options) {
+        mOptions = options;
+    }
+
+    @Override
+    public TransportOptions getOptions() {
+        return mOptions;
+    }
+}
@@ -0,0 +1,174 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.Globals;
+import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.SerializerRegistry;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+
+/**
+ * Handles the frames of a {@link NettyRawSocket} connection, behind the
+ * {@link NettyRawSocketHandshakeHandler}.
+ */
+public class NettyRawSocketClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
+    private static final IABLogger LOGGER = ABLogger.getLogger(
+            NettyRawSocketClientHandler.class.getName());
+
+    private final NettyRawSocket mTransport;
+    private final ITransportHandler mTransportHandler;
+    private final String mSerializerName;
+    private final boolean mHasNextSerializer;
+
+    private ISerializer mSerializer;
+    private boolean mConnected;
+    private boolean mRetrying;
+    private boolean mWasCleanClose;
+    private CloseDetails mCloseDetails;
+
+    NettyRawSocketClientHandler(NettyRawSocket transport, ITransportHandler transportHandler,
+                                String serializerName, boolean hasNextSerializer) {
+        mTransport = transport;
+        mTransportHandler = transportHandler;
+        mSerializerName = serializerName;
+        mHasNextSerializer = hasNextSerializer;
+    }
+
+    /**
+     * @return true if the router refused the serializer and the transport
+     *     moves on to the next one
+     */
+    boolean isRetrying() {
+        return mRetrying;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (mRetrying) {
+            return;
+        }
+        LOGGER.i("RawSocket Client disconnected!");
+        if (mCloseDetails == null) {
+            // The router closed the connection.
+            mCloseDetails = new CloseDetails(CloseDetails.REASON_DEFAULT, null);
+            mWasCleanClose = mConnected;
+        }
+        if (mConnected) {
+            mTransportHandler.onLeave(mCloseDetails);
+        }
+        mTransportHandler.onDisconnect(mWasCleanClose);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        ctx.flush();
+    }
+
+    @Override
+    public void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) throws Exception {
+        int frameType = frame.readUnsignedByte();
+        frame.skipBytes(RawSocket.HEADER_SIZE - 1);
+        if (frameType == RawSocket.FRAME_MESSAGE) {
+            byte[] payload = new byte[frame.readableBytes()];
+            frame.readBytes(payload);
+            mTransportHandler.onMessage(payload, mSerializer.isBinary());
+
+        } else if (frameType == RawSocket.FRAME_PING) {
+            ByteBuf pong = ctx.alloc().ioBuffer(RawSocket.HEADER_SIZE + frame.readableBytes());
+            pong.writeInt(RawSocket.FRAME_PONG << 24 | frame.readableBytes());
+            pong.writeBytes(frame);
+            ctx.write(pong);
+
+        } else if (frameType == RawSocket.FRAME_PONG) {
+            LOGGER.v("RawSocket Client received pong.");
+
+        } else {
+            LOGGER.w("Invalid RawSocket frame type " + frameType);
+            close(ctx.channel(), false,
+                    new CloseDetails(CloseDetails.REASON_TRANSPORT_LOST, null));
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof NettyRawSocketHandshakeHandler.Result) {
+            onHandshake(ctx, (NettyRawSocketHandshakeHandler.Result) evt);
+        } else if (evt instanceof IdleStateEvent) {
+            IdleStateEvent event = (IdleStateEvent) evt;
+            if (event.state() == IdleState.READER_IDLE) {
+                close(ctx.channel(), false,
+                        new CloseDetails(CloseDetails.REASON_TRANSPORT_LOST, null));
+            } else if (event.state() == IdleState.WRITER_IDLE && mConnected) {
+                ByteBuf ping = ctx.alloc().ioBuffer(RawSocket.HEADER_SIZE);
+                ping.writeInt(RawSocket.FRAME_PING << 24);
+                ctx.writeAndFlush(ping);
+            }
+        }
+    }
+
+    private void onHandshake(ChannelHandlerContext ctx, NettyRawSocketHandshakeHandler.Result result)
+            throws Exception {
+        if (result.serializerID == 0) {
+            if (result.maxLengthOrError == RawSocket.ERROR_SERIALIZER_UNSUPPORTED
+                    && mHasNextSerializer) {
+                LOGGER.d(String.format("Router doesn't support %s", mSerializerName));
+                mRetrying = true;
+            } else {
+                LOGGER.w("RawSocket handshake failed, error " + result.maxLengthOrError);
+            }
+            close(ctx.channel(), false,
+                    new CloseDetails(CloseDetails.REASON_TRANSPORT_LOST, null));
+            return;
+        }
+        LOGGER.d(String.format("Negotiated serializer=%s, max message length=%d",
+                mSerializerName, result.maxLengthOrError));
+        mSerializer = initializeSerializer(mSerializerName);
+        mTransport.setConnected(ctx.channel(), result.maxLengthOrError);
+        mConnected = true;
+        mTransportHandler.onConnect(mTransport, mSerializer);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (Globals.DEBUG) {
+            LOGGER.v(cause.getMessage(), cause);
+        }
+        close(ctx.channel(), false, new CloseDetails(CloseDetails.REASON_TRANSPORT_LOST, null));
+    }
+
+    void close(Channel channel, boolean wasClean, CloseDetails details) {
+        mWasCleanClose = wasClean;
+        mCloseDetails = details;
+        channel.close();
+    }
+
+    private ISerializer initializeSerializer(String serializerName) {
+        ObjectMapper objectMapper = mTransport.getOptions().getObjectMapper();
+        if (objectMapper != null && JSONSerializer.NAME.equals(serializerName)) {
+            return new JSONSerializer(objectMapper);
+        }
+        return SerializerRegistry.get(serializerName,
+                mTransport.getOptions().getCBORTypedArrays());
+    }
+}
@@ -0,0 +1,91 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import java.util.List;
+
+import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * Sends the 4 byte RawSocket handshake once the channel is active and
+ * reads the router's reply. On success it puts a frame decoder in its
+ * place, so the handlers behind it receive whole frames (header and
+ * payload). Either way, the outcome is passed on as a {@link Result}
+ * user event.
+ */
+class NettyRawSocketHandshakeHandler extends ByteToMessageDecoder {
+
+    static final class Result {
+
+        // The RawSocket serializer ID, 0 if the router refused.
+        final int serializerID;
+        // Longest message the router accepts, or its error code.
+        final int maxLengthOrError;
+
+        Result(int serializerID, int maxLengthOrError) {
+            this.serializerID = serializerID;
+            this.maxLengthOrError = maxLengthOrError;
+        }
+    }
+
+    private final int mSerializerID;
+    private final int mLengthExponent;
+    private final int mMaxReceiveLength;
+
+    NettyRawSocketHandshakeHandler(int serializerID, int maxReceiveLength) {
+        mSerializerID = serializerID;
+        mLengthExponent = RawSocket.getLengthExponent(maxReceiveLength);
+        mMaxReceiveLength = Math.min(1 << (9 + mLengthExponent), RawSocket.MAX_LENGTH);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ByteBuf handshake = ctx.alloc().buffer(RawSocket.HEADER_SIZE);
+        handshake.writeByte(RawSocket.MAGIC);
+        handshake.writeByte(mLengthExponent << 4 | mSerializerID);
+        handshake.writeShort(0);
+        ctx.writeAndFlush(handshake);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < RawSocket.HEADER_SIZE) {
+            return;
+        }
+        int magic = in.readUnsignedByte();
+        int reply = in.readUnsignedByte();
+        in.skipBytes(2);
+        if (magic != RawSocket.MAGIC) {
+            throw new ProtocolError("Peer is not a WAMP RawSocket router");
+        }
+        int serializerID = reply & 0x0f;
+        int lengthOrError = reply >> 4;
+        if (serializerID == 0) {
+            ctx.fireUserEventTriggered(new Result(0, lengthOrError));
+            return;
+        }
+        if (serializerID != mSerializerID) {
+            throw new ProtocolError("Router replied with a different serializer");
+        }
+        ctx.pipeline().addAfter(ctx.name(), null, new LengthFieldBasedFrameDecoder(
+                RawSocket.HEADER_SIZE + mMaxReceiveLength, 1, 3, 0, 0));
+        ctx.fireUserEventTriggered(new Result(
+                serializerID, Math.min(1 << (9 + lengthOrError), RawSocket.MAX_LENGTH)));
+        // Frames that came in with the reply are passed on to the decoder.
+        ctx.pipeline().remove(this);
+    }
+}
@@ -0,0 +1,63 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoopGroup;
+
+/**
+ * TransportOptions for the Netty transports, {@link NettyWebSocket} and
+ * {@link NettyRawSocket}.
+ * <p>
+ * By default, all Netty transports of the process share one event loop
+ * group, see {@link NettyEventLoops}. Set a group here to use the event
+ * loops of the application instead, and/or a Bootstrap to start from,
+ * e.g. with socket options. The transports never shut these down.
+ */
+public class NettyTransportOptions extends TransportOptions {
+
+    private EventLoopGroup mEventLoopGroup;
+    private Bootstrap mBootstrap;
+
+    /**
+     * Set the event loop group the connection is registered with, unless
+     * the bootstrap comes with one.
+     * <p>
+     * DEFAULT: null, the shared group of
+     * {@link NettyEventLoops#getDefaultGroup()}.
+     *
+     * @param group NIO, epoll or io_uring event loop group.
+     */
+    public void setEventLoopGroup(EventLoopGroup group) {
+        mEventLoopGroup = group;
+    }
+
+    public EventLoopGroup getEventLoopGroup() {
+        return mEventLoopGroup;
+    }
+
+    /**
+     * Set a bootstrap to clone for each connection. Its handler is
+     * replaced by the transport's; the group and the channel type are
+     * filled in if it doesn't have them.
+     *
+     * @param bootstrap Bootstrap template.
+     */
+    public void setBootstrap(Bootstrap bootstrap) {
+        mBootstrap = bootstrap;
+    }
+
+    public Bootstrap getBootstrap() {
+        return mBootstrap;
+    }
+}
@@ -11,17 +11,25 @@
 
 package io.crossbar.autobahn.wamp.transports;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLException;
 
 import io.crossbar.autobahn.utils.ABLogger;
 import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 import io.crossbar.autobahn.wamp.interfaces.ITransport;
 import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
 import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.serializers.FlatSerializer;
 import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
 import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
 import io.crossbar.autobahn.wamp.types.CloseDetails;
@@ -29,15 +37,14 @@ import io.crossbar.autobahn.wamp.types.TransportOptions;
 import io.crossbar.autobahn.wamp.types.WebSocketOptions;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpObjectAggregator;
@@ -47,6 +54,13 @@ import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
 import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -57,16 +71,21 @@ public class NettyWebSocket implements ITransport {
 
     private static final IABLogger LOGGER = ABLogger.getLogger(
             NettyWebSocket.class.getName());
+    // The flat serializer goes first, routers that don't implement it
+    // pick the next one.
     private static final String SERIALIZERS_DEFAULT = String.format(
-            "%s,%s,%s", CBORSerializer.NAME, MessagePackSerializer.NAME, JSONSerializer.NAME);
+            "%s,%s,%s,%s", FlatSerializer.NAME, CBORSerializer.NAME, MessagePackSerializer.NAME,
+            JSONSerializer.NAME);
 
-    private Channel mChannel;
+    private volatile Channel mChannel;
     private NettyWebSocketClientHandler mHandler;
-    private NioEventLoopGroup mGroup;
     private final String mUri;
 
     private WebSocketOptions mOptions;
     private String mSerializers;
+    private volatile SendBuffer mSendBuffer;
+    // See NettyFrameWriter.
+    private volatile int mMaxFlushDelay;
 
     public NettyWebSocket(String uri) {
         this(uri, (WebSocketOptions) null);
@@ -140,8 +159,21 @@ public class NettyWebSocket implements ITransport {
                 options.setAutoPingInterval(mOptions.getAutoPingInterval());
                 options.setAutoPingTimeout(mOptions.getAutoPingTimeout());
                 options.setMaxFramePayloadSize(mOptions.getMaxFramePayloadSize());
+                options.setMaxFlushDelay(mOptions.getMaxFlushDelay());
+                options.setPerMessageDeflate(mOptions.getPerMessageDeflate());
+                options.setDeflateThreshold(mOptions.getDeflateThreshold());
+                options.setDeflateClientNoContextTakeover(
+                        mOptions.getDeflateClientNoContextTakeover());
+                options.setDeflateServerNoContextTakeover(
+                        mOptions.getDeflateServerNoContextTakeover());
+                options.setDeflateServerMaxWindowBits(mOptions.getDeflateServerMaxWindowBits());
+                options.setSendBufferSize(mOptions.getSendBufferSize());
+                options.setSendBufferPolicy(mOptions.getSendBufferPolicy());
             }
         }
+        mMaxFlushDelay = options.getMaxFlushDelay();
+        SendBuffer sendBuffer = new SendBuffer(transportHandler, options);
+        mSendBuffer = sendBuffer;
 
         URI uri;
         uri = new URI(mUri);
@@ -156,10 +188,8 @@ public class NettyWebSocket implements ITransport {
                 new DefaultHttpHeaders(), options.getMaxFramePayloadSize());
         mHandler = new NettyWebSocketClientHandler(handshaker, this, transportHandler);
 
-        mGroup = new NioEventLoopGroup();
-        Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(mGroup);
-        bootstrap.channel(NioSocketChannel.class);
+        // Shared event loops, see NettyEventLoops and NettyTransportOptions.
+        Bootstrap bootstrap = NettyEventLoops.newBootstrap(options, null);
 
         TransportOptions opt = options;
         bootstrap.handler(new ChannelInitializer<SocketChannel>() {
@@ -171,7 +201,11 @@ public class NettyWebSocket implements ITransport {
                 }
                 channelPipeline.addLast(
                         new HttpClientCodec(),
-                        new HttpObjectAggregator(8192),
+                        new HttpObjectAggregator(8192));
+                if (opt.getPerMessageDeflate()) {
+                    channelPipeline.addLast(newCompressionHandler(opt));
+                }
+                channelPipeline.addLast(
                         new IdleStateHandler(
                                 opt.getAutoPingInterval() + opt.getAutoPingTimeout(),
                                 opt.getAutoPingInterval(), 0, TimeUnit.SECONDS),
@@ -182,22 +216,111 @@ public class NettyWebSocket implements ITransport {
         f.addListener((ChannelFutureListener) connectFuture -> {
             Throwable connectCause = connectFuture.cause();
             if (connectCause != null) {
+                sendBuffer.close();
                 transportHandler.onDisconnect(false);
             } else {
-                mChannel = f.channel();
+                setChannel(f.channel());
+                mChannel.closeFuture().addListener(closeFuture -> sendBuffer.close());
+            }
+        });
+    }
+
+    // permessage-deflate, frames below the threshold go out uncompressed.
+    private static ChannelHandler newCompressionHandler(TransportOptions options) {
+        int threshold = options.getDeflateThreshold();
+        WebSocketExtensionFilterProvider filters = new WebSocketExtensionFilterProvider() {
+            @Override
+            public WebSocketExtensionFilter encoderFilter() {
+                return frame -> frame.content().readableBytes() < threshold;
+            }
+
+            @Override
+            public WebSocketExtensionFilter decoderFilter() {
+                return WebSocketExtensionFilter.NEVER_SKIP;
+            }
+        };
+        // java.util.zip can't shrink the client window, so the server
+        // isn't allowed to ask for it.
+        PerMessageDeflateClientExtensionHandshaker deflate =
+                new PerMessageDeflateClientExtensionHandshaker(6, false,
+                        options.getDeflateServerMaxWindowBits(), true,
+                        options.getDeflateServerNoContextTakeover(), filters);
+        if (!options.getDeflateClientNoContextTakeover()) {
+            return new WebSocketClientExtensionHandler(deflate);
+        }
+        // Netty accepts client_no_context_takeover but doesn't offer it,
+        // the compressor is only reset when the server confirms it.
+        return new WebSocketClientExtensionHandler(new WebSocketClientExtensionHandshaker() {
+            @Override
+            public WebSocketExtensionData newRequestData() {
+                WebSocketExtensionData data = deflate.newRequestData();
+                Map<String, String> parameters = new HashMap<>(data.parameters());
+                parameters.put("client_no_context_takeover", null);
+                return new WebSocketExtensionData(data.name(), parameters);
+            }
+
+            @Override
+            public WebSocketClientExtension handshakeExtension(WebSocketExtensionData data) {
+                return deflate.handshakeExtension(data);
             }
         });
     }
 
     @Override
     public void send(byte[] payload, boolean isBinary) {
+        Channel channel = mChannel;
+        ByteBuf buffer = channel.alloc().ioBuffer(payload.length);
+        buffer.writeBytes(payload);
+        send(channel, buffer, isBinary, true, null);
+    }
+
+    /**
+     * Serializes the message straight into a pooled buffer of the
+     * channel, which is direct where supported, without an intermediate
+     * array.
+     */
+    @Override
+    public void send(IMessage message, ISerializer serializer) {
+        send(message, serializer, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(IMessage message, ISerializer serializer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            send(message, serializer, future);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void send(IMessage message, ISerializer serializer, CompletableFuture<Void> future) {
+        Channel channel = mChannel;
+        ByteBuf buffer = channel.alloc().ioBuffer();
+        try {
+            serializer.serialize(message, new ByteBufOutputStream(buffer));
+        } catch (IOException e) {
+            buffer.release();
+            throw new UncheckedIOException(e);
+        }
+        send(channel, buffer, serializer.isBinary(), SendBuffer.mayDrop(message), future);
+    }
+
+    private void send(Channel channel, ByteBuf buffer, boolean isBinary, boolean mayDrop,
+                      CompletableFuture<Void> future) {
+        int size = buffer.readableBytes();
         WebSocketFrame frame;
         if (isBinary) {
-            frame = new BinaryWebSocketFrame(toByteBuf(payload));
+            frame = new BinaryWebSocketFrame(buffer);
         } else {
-            frame = new TextWebSocketFrame(toByteBuf(payload));
+            frame = new TextWebSocketFrame(buffer);
         }
-        mChannel.writeAndFlush(frame);
+        NettyFrameWriter.send(channel, frame, size, mSendBuffer, mayDrop, mMaxFlushDelay, future);
+    }
+
+    void setChannel(Channel channel) {
+        mChannel = channel;
     }
 
     @Override
@@ -205,15 +328,21 @@ public class NettyWebSocket implements ITransport {
         return mChannel != null && mChannel.isOpen();
     }
 
+    @Override
+    public boolean isWritable() {
+        return isOpen() && mSendBuffer.isWritable();
+    }
+
     @Override
     public void close() throws Exception {
         LOGGER.v("close()");
-        if (mHandler != null && mChannel != null) {
-            mHandler.close(mChannel, true, new CloseDetails(CloseDetails.REASON_DEFAULT, null));
-        }
-        if (mGroup != null) {
-            mGroup.shutdownGracefully().sync();
-            mGroup = null;
+        Channel channel = mChannel;
+        if (mHandler != null && channel != null) {
+            mHandler.close(channel, true, new CloseDetails(CloseDetails.REASON_DEFAULT, null));
+            // The event loops outlive the connection, wait for it alone.
+            if (!channel.eventLoop().inEventLoop()) {
+                channel.closeFuture().await(5, TimeUnit.SECONDS);
+            }
         }
     }
 
@@ -233,8 +362,4 @@ public class NettyWebSocket implements ITransport {
     public TransportOptions getOptions() {
         return mOptions;
     }
-
-    private ByteBuf toByteBuf(byte[] bytes) {
-        return Unpooled.copiedBuffer(bytes);
-    }
 }
@@ -16,11 +16,9 @@ import io.crossbar.autobahn.utils.ABLogger;
 import io.crossbar.autobahn.utils.Globals;
 import io.crossbar.autobahn.utils.IABLogger;
 import io.crossbar.autobahn.wamp.interfaces.ISerializer;
-import io.crossbar.autobahn.wamp.interfaces.ITransport;
 import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
-import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
 import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
-import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.serializers.SerializerRegistry;
 import io.crossbar.autobahn.wamp.types.CloseDetails;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -44,14 +42,14 @@ public class NettyWebSocketClientHandler extends SimpleChannelInboundHandler<Obj
             NettyWebSocketClientHandler.class.getName());
 
     private final WebSocketClientHandshaker mHandshaker;
-    private final ITransport mTransport;
+    private final NettyWebSocket mTransport;
     private ChannelPromise mHandshakeFuture;
     private ITransportHandler mTransportHandler;
     private boolean mWasCleanClose;
 
     private CloseDetails mCloseDetails;
 
-    NettyWebSocketClientHandler(WebSocketClientHandshaker handshaker, ITransport transport,
+    NettyWebSocketClientHandler(WebSocketClientHandshaker handshaker, NettyWebSocket transport,
                                 ITransportHandler transportHandler) {
         mHandshaker = handshaker;
         mTransport = transport;
@@ -97,6 +95,8 @@ public class NettyWebSocketClientHandler extends SimpleChannelInboundHandler<Obj
             ISerializer serializer = initializeSerializer(negotiatedSerializer);
             mHandshaker.finishHandshake(ch, response);
             mHandshakeFuture.setSuccess();
+            // The connect listener may not have run yet.
+            mTransport.setChannel(ch);
             mTransportHandler.onConnect(mTransport, serializer);
 
         } else if (msg instanceof FullHttpResponse) {
@@ -173,16 +173,11 @@ public class NettyWebSocketClientHandler extends SimpleChannelInboundHandler<Obj
     }
 
     private ISerializer initializeSerializer(String negotiatedSerializer) throws Exception {
-        switch (negotiatedSerializer) {
-            case CBORSerializer.NAME:
-                return new CBORSerializer();
-            case JSONSerializer.NAME:
-                ObjectMapper objectMapper = mTransport.getOptions().getObjectMapper();
-                return objectMapper == null ? new JSONSerializer() : new JSONSerializer(objectMapper);
-            case MessagePackSerializer.NAME:
-                return new MessagePackSerializer();
-            default:
-                throw new IllegalArgumentException("Unsupported serializer.");
+        ObjectMapper objectMapper = mTransport.getOptions().getObjectMapper();
+        if (objectMapper != null && JSONSerializer.NAME.equals(negotiatedSerializer)) {
+            return new JSONSerializer(objectMapper);
         }
+        return SerializerRegistry.get(negotiatedSerializer,
+                mTransport.getOptions().getCBORTypedArrays());
     }
 }
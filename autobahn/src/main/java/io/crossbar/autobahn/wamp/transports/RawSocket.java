@@ -1,50 +1,194 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
 package io.crossbar.autobahn.wamp.transports;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 import java.net.URI;
-
-import javax.net.SocketFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.crossbar.autobahn.utils.ABLogger;
 import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
 import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 import io.crossbar.autobahn.wamp.interfaces.ITransport;
 import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
 import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.serializers.SerializerRegistry;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
 import io.crossbar.autobahn.wamp.types.TransportOptions;
 
-
-// FIXME: NOT READY, IS WORK-IN-PROGRESS
+/**
+ * WAMP over RawSocket, for URIs like "rs://host:port" or "tcp://host:port".
+ * See UnixRawSocket for Unix domain sockets.
+ * <p>
+ * Each connection is served by one thread with a non-blocking
+ * SocketChannel and a Selector. Messages are framed with a 4 byte header
+ * (frame type and a 24 bit length). The handshake proposes one serializer
+ * at a time, in the order given, and moves on to the next one when the
+ * router doesn't support it. It also announces the longest message we
+ * accept (TransportOptions#getMaxFramePayloadSize, rounded up to a power
+ * of two) and learns the longest message the router accepts.
+ * <p>
+ * All messages queued while the thread is busy go out in one gathering
+ * write. With an auto ping interval, a PING is sent after that long
+ * without writing, and the connection is dropped when nothing was
+ * received for the interval plus the auto ping timeout.
+ */
 public class RawSocket implements ITransport {
 
     public static final IABLogger LOGGER = ABLogger.getLogger(RawSocket.class.getName());
 
-    private static final int ZERO = 0x00;
+    static final String[] SERIALIZERS_DEFAULT = new String[] {
+            CBORSerializer.NAME, MessagePackSerializer.NAME, JSONSerializer.NAME};
+
+    static final int MAGIC = 0x7f;
+    static final int HEADER_SIZE = 4;
+    static final int MAX_LENGTH = 0xffffff;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Frame types, the low 3 bits of the first header byte.
+    static final int FRAME_MESSAGE = 0;
+    static final int FRAME_PING = 1;
+    static final int FRAME_PONG = 2;
+
+    // Handshake errors, the upper 4 bits of the second byte of the reply.
+    static final int ERROR_SERIALIZER_UNSUPPORTED = 1;
+
+    private static final int STATE_CONNECTING = 0;
+    private static final int STATE_HANDSHAKE = 1;
+    private static final int STATE_OPEN = 2;
+    private static final int STATE_CLOSED = 3;
+
+    private final String mUri;
 
-    private Socket mSocket;
-    private String mUri;
-    private OutputStream mOStream;
-    private InputStream mIStream;
-    private ISerializer mSerializer;
+    private List<String> mSerializers;
+    private TransportOptions mOptions;
+    private volatile Connection mConnection;
 
     public RawSocket(String uri) {
         mUri = uri;
-        throw new IllegalStateException("NOT IMPLEMENTED YET");
+    }
+
+    public RawSocket(String uri, List<String> serializers) {
+        this(uri);
+        mSerializers = serializers;
+    }
+
+    private String[] getSerializers() {
+        if (mSerializers != null) {
+            return mSerializers.toArray(new String[0]);
+        }
+        return SERIALIZERS_DEFAULT;
+    }
+
+    static int getSerializerID(String serializer) {
+        switch (serializer) {
+            case JSONSerializer.NAME:
+                return JSONSerializer.RAWSOCKET_SERIALIZER_ID;
+            case MessagePackSerializer.NAME:
+                return MessagePackSerializer.RAWSOCKET_SERIALIZER_ID;
+            case CBORSerializer.NAME:
+                return CBORSerializer.RAWSOCKET_SERIALIZER_ID;
+            default:
+                throw new IllegalArgumentException(
+                        "Serializer not supported over RawSocket: " + serializer);
+        }
+    }
+
+    /**
+     * Returns the address to connect to for the URI of this transport.
+     */
+    protected SocketAddress getAddress(URI uri) {
+        String scheme = uri.getScheme();
+        if (!"rs".equalsIgnoreCase(scheme) && !"tcp".equalsIgnoreCase(scheme)) {
+            throw new IllegalArgumentException("Only RS and TCP are supported.");
+        }
+        if (uri.getHost() == null || uri.getPort() == -1) {
+            throw new IllegalArgumentException("Host and port are required.");
+        }
+        return new InetSocketAddress(uri.getHost(), uri.getPort());
+    }
+
+    /**
+     * Opens an unconnected channel for an address returned by
+     * {@link #getAddress}. It's put in non-blocking mode by the caller.
+     */
+    protected SocketChannel openChannel(SocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return channel;
+    }
+
+    // The exponent of the length announced in the handshake, the length is
+    // 2^(9 + exponent).
+    static int getLengthExponent(int maxLength) {
+        int exponent = 0;
+        while (exponent < 15 && 1 << (9 + exponent) < maxLength) {
+            exponent++;
+        }
+        return exponent;
     }
 
     @Override
     public void send(byte[] payload, boolean isBinary) {
+        send(payload, true, null);
+    }
+
+    @Override
+    public void send(IMessage message, ISerializer serializer) {
+        send(serializer.serialize(message), SendBuffer.mayDrop(message), null);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(IMessage message, ISerializer serializer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
         try {
-            mOStream.write(new byte[] {ZERO, ZERO, ZERO, (byte) payload.length});
-            mOStream.write(payload);
-            mOStream.flush();
-        } catch (IOException e) {
-            LOGGER.v(e.getMessage(), e);
+            send(serializer.serialize(message), SendBuffer.mayDrop(message), future);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
         }
+        return future;
+    }
+
+    private void send(byte[] payload, boolean mayDrop, CompletableFuture<Void> future) {
+        Connection connection = mConnection;
+        if (connection == null || connection.mState != STATE_OPEN) {
+            LOGGER.w("Dropping message, transport is not open");
+            SendBuffer.dropped(future);
+            return;
+        }
+        if (payload.length > connection.mMaxSendLength) {
+            throw new IllegalArgumentException(String.format(
+                    "Message of %d bytes exceeds the %d bytes accepted by the router",
+                    payload.length, connection.mMaxSendLength));
+        }
+        connection.send(payload, mayDrop, future);
     }
 
     @Override
@@ -53,67 +197,443 @@ public class RawSocket implements ITransport {
     }
 
     @Override
-    public void connect(ITransportHandler transportHandler, TransportOptions options) throws Exception {
-        mSocket = SocketFactory.getDefault().createSocket();
-        URI uri = URI.create(mUri);
-        mSocket.connect(new InetSocketAddress(uri.getHost(), uri.getPort()));
-        mOStream = mSocket.getOutputStream();
-        mIStream = mSocket.getInputStream();
-
-        int serializerID = JSONSerializer.RAWSOCKET_SERIALIZER_ID;
-        int request_max_len_exp = 24;
-        long maxSize = (long) Math.pow(2, 9 + request_max_len_exp);
-
-        mOStream.write(0x7f);
-        mOStream.write((request_max_len_exp - 9) << 4 | JSONSerializer.RAWSOCKET_SERIALIZER_ID);
-        mOStream.write(ZERO);
-        mOStream.write(ZERO);
-        mOStream.flush();
-
-        byte[] bytes = new byte[4];
-        while (true) {
-            mIStream.read(bytes);
-            byte b = bytes[1];
-
-            int serializer = b & 0x0F;
-            int max_length = b >> 4 & 0x0F;
-
-            if (max_length + 9 == request_max_len_exp && serializer == serializerID) {
-                System.out.println("MAX " +  maxSize);
-                System.out.println("Handshake complete, lets roll");
-                mSerializer = new JSONSerializer();
-                transportHandler.onConnect(this, mSerializer);
-                break;
-            }
+    public void connect(ITransportHandler transportHandler, TransportOptions options)
+            throws Exception {
+        if (options == null) {
+            options = mOptions == null ? new TransportOptions() : mOptions;
         }
+        mOptions = options;
+        SocketAddress address = getAddress(new URI(mUri));
+        String[] serializers = getSerializers();
+        for (String serializer: serializers) {
+            getSerializerID(serializer);
+        }
+
+        Connection connection = new Connection(transportHandler, options, address, serializers);
+        mConnection = connection;
+        Thread thread = new Thread(connection, "RawSocket");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @Override
     public boolean isOpen() {
-        return mSocket != null && !mSocket.isClosed() && mSocket.isConnected();
+        Connection connection = mConnection;
+        return connection != null && connection.mState == STATE_OPEN;
+    }
+
+    @Override
+    public boolean isWritable() {
+        Connection connection = mConnection;
+        return connection != null && connection.mState == STATE_OPEN
+                && connection.mSendBuffer.isWritable();
     }
 
     @Override
     public void close() throws Exception {
-        if (mSocket != null && !mSocket.isClosed()) {
-            mSocket.close();
+        Connection connection = mConnection;
+        if (connection != null) {
+            connection.close(false);
         }
     }
 
     @Override
     public void abort() throws Exception {
-        if (mSocket != null && !mSocket.isClosed()) {
-            mSocket.close();
+        Connection connection = mConnection;
+        if (connection != null) {
+            connection.close(true);
         }
     }
 
     @Override
     public void setOptions(TransportOptions options) {
-
+        mOptions = options;
     }
 
     @Override
     public TransportOptions getOptions() {
-        throw new UnsupportedOperationException("Not available");
+        return mOptions;
+    }
+
+    // A message frame and the future to complete once it is written.
+    private static final class Frame {
+        final ByteBuffer mHeader;
+        final ByteBuffer mPayload;
+        final CompletableFuture<Void> mFuture;
+
+        Frame(ByteBuffer header, ByteBuffer payload, CompletableFuture<Void> future) {
+            mHeader = header;
+            mPayload = payload;
+            mFuture = future;
+        }
+
+        boolean isWritten() {
+            return !mHeader.hasRemaining() && !mPayload.hasRemaining();
+        }
+    }
+
+    private final class Connection implements Runnable {
+
+        private final ITransportHandler mTransportHandler;
+        private final SendBuffer mSendBuffer;
+        private final SocketAddress mAddress;
+        private final String[] mSerializers;
+        private final int mLengthExponent;
+        private final int mMaxReceiveLength;
+        private final long mPingInterval;
+        private final long mPingTimeout;
+        private final boolean mCBORTypedArrays;
+
+        // Message frames queued by send().
+        private final Queue<Frame> mQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean mWakeupPending = new AtomicBoolean();
+        // Buffers of the frames taken from the queue, and of control
+        // frames, not yet completely written.
+        private final ArrayDeque<ByteBuffer> mPending = new ArrayDeque<>();
+        // Message frames with buffers in mPending, in order.
+        private final ArrayDeque<Frame> mWriting = new ArrayDeque<>();
+        private final ByteBuffer mReadBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        private volatile int mState = STATE_CONNECTING;
+        private volatile int mMaxSendLength;
+        private volatile boolean mCloseRequested;
+        private volatile boolean mAbortRequested;
+
+        private volatile Selector mSelector;
+        private volatile Thread mThread;
+        private SocketChannel mChannel;
+        private SelectionKey mKey;
+        private int mSerializerIndex;
+        private ISerializer mSerializer;
+        // Payload of a frame that didn't fit the read buffer.
+        private ByteBuffer mPayload;
+        private int mPayloadType;
+        private long mLastRead;
+        private long mLastWrite;
+
+        Connection(ITransportHandler transportHandler, TransportOptions options,
+                   SocketAddress address, String[] serializers) {
+            mTransportHandler = transportHandler;
+            mSendBuffer = new SendBuffer(transportHandler, options);
+            mAddress = address;
+            mSerializers = serializers;
+            mLengthExponent = getLengthExponent(options.getMaxFramePayloadSize());
+            mMaxReceiveLength = Math.min(1 << (9 + mLengthExponent), MAX_LENGTH);
+            mPingInterval = TimeUnit.SECONDS.toNanos(options.getAutoPingInterval());
+            mPingTimeout = TimeUnit.SECONDS.toNanos(options.getAutoPingTimeout());
+            mCBORTypedArrays = options.getCBORTypedArrays();
+        }
+
+        void send(byte[] payload, boolean mayDrop, CompletableFuture<Void> future) {
+            // Handlers called by this connection's thread mustn't block it.
+            if (!mSendBuffer.acquire(HEADER_SIZE + payload.length,
+                    Thread.currentThread() != mThread, mayDrop)) {
+                SendBuffer.dropped(future);
+                return;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(FRAME_MESSAGE << 24 | payload.length).flip();
+            mQueue.add(new Frame(header, ByteBuffer.wrap(payload), future));
+            if (mState == STATE_CLOSED) {
+                // Raced with the end of the connection.
+                failQueued();
+            } else {
+                wakeup();
+            }
+        }
+
+        void close(boolean abort) {
+            mAbortRequested |= abort;
+            mCloseRequested = true;
+            wakeup();
+        }
+
+        private void wakeup() {
+            Selector selector = mSelector;
+            if (selector != null && mWakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean wasOpen = false;
+            boolean wasClean = false;
+            String reason = CloseDetails.REASON_TRANSPORT_LOST;
+            mThread = Thread.currentThread();
+            try {
+                mSelector = Selector.open();
+                open();
+                while (true) {
+                    mWakeupPending.set(false);
+                    if (mAbortRequested) {
+                        break;
+                    }
+                    if (mState == STATE_OPEN) {
+                        wasOpen = true;
+                        drainQueue();
+                        if (mCloseRequested && mPending.isEmpty()) {
+                            wasClean = true;
+                            reason = CloseDetails.REASON_DEFAULT;
+                            break;
+                        }
+                        if (!mPending.isEmpty()) {
+                            write();
+                        }
+                        if (!checkPing()) {
+                            LOGGER.d("Auto ping timeout, closing connection");
+                            break;
+                        }
+                    } else if (mCloseRequested) {
+                        break;
+                    }
+
+                    mSelector.select(getSelectTimeout());
+                    mSelector.selectedKeys().clear();
+                    if (mKey.isValid() && mKey.isConnectable()) {
+                        mChannel.finishConnect();
+                        startHandshake();
+                    }
+                    if (mKey.isValid() && mKey.isWritable()) {
+                        write();
+                    }
+                    if (mKey.isValid() && mKey.isReadable() && !read()) {
+                        // Orderly shutdown by the router.
+                        wasClean = mState == STATE_OPEN;
+                        reason = CloseDetails.REASON_DEFAULT;
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.v(e.getMessage(), e);
+            } finally {
+                mState = STATE_CLOSED;
+                closeQuietly();
+                mSendBuffer.close();
+                while (!mWriting.isEmpty()) {
+                    onWritten(mWriting.poll(), new ClosedChannelException());
+                }
+                failQueued();
+            }
+            if (wasOpen) {
+                mTransportHandler.onLeave(new CloseDetails(reason, null));
+            }
+            LOGGER.d(String.format("Disconnected, wasClean=%s, reason=%s", wasClean, reason));
+            mTransportHandler.onDisconnect(wasClean);
+        }
+
+        // Connects with the current serializer.
+        private void open() throws IOException {
+            mState = STATE_CONNECTING;
+            mReadBuffer.clear();
+            mChannel = openChannel(mAddress);
+            mChannel.configureBlocking(false);
+            mKey = mChannel.register(mSelector, SelectionKey.OP_CONNECT);
+            if (mChannel.connect(mAddress)) {
+                startHandshake();
+            }
+        }
+
+        private void startHandshake() throws IOException {
+            mState = STATE_HANDSHAKE;
+            int serializerID = getSerializerID(mSerializers[mSerializerIndex]);
+            mPending.add(ByteBuffer.wrap(new byte[] {
+                    (byte) MAGIC, (byte) (mLengthExponent << 4 | serializerID), 0, 0}));
+            mKey.interestOps(SelectionKey.OP_READ);
+            write();
+        }
+
+        private void onHandshakeReply(byte[] reply) throws IOException {
+            if ((reply[0] & 0xff) != MAGIC) {
+                throw new ProtocolError("Peer is not a WAMP RawSocket router");
+            }
+            int serializerID = reply[1] & 0x0f;
+            int lengthOrError = (reply[1] & 0xff) >> 4;
+            if (serializerID == 0) {
+                if (lengthOrError == ERROR_SERIALIZER_UNSUPPORTED
+                        && mSerializerIndex + 1 < mSerializers.length) {
+                    LOGGER.d(String.format("Router doesn't support %s, trying %s",
+                            mSerializers[mSerializerIndex], mSerializers[mSerializerIndex + 1]));
+                    mSerializerIndex++;
+                    mChannel.close();
+                    open();
+                    return;
+                }
+                throw new ProtocolError("RawSocket handshake failed, error " + lengthOrError);
+            }
+            if (serializerID != getSerializerID(mSerializers[mSerializerIndex])) {
+                throw new ProtocolError("Router replied with a different serializer");
+            }
+            mMaxSendLength = Math.min(1 << (9 + lengthOrError), MAX_LENGTH);
+            mSerializer = SerializerRegistry.get(mSerializers[mSerializerIndex],
+                    mCBORTypedArrays);
+            LOGGER.d(String.format("Negotiated serializer=%s, max message length=%d",
+                    mSerializers[mSerializerIndex], mMaxSendLength));
+            mLastRead = mLastWrite = System.nanoTime();
+            mState = STATE_OPEN;
+            try {
+                mTransportHandler.onConnect(RawSocket.this, mSerializer);
+            } catch (Exception e) {
+                LOGGER.v(e.getMessage(), e);
+            }
+        }
+
+        private void drainQueue() {
+            Frame frame;
+            while ((frame = mQueue.poll()) != null) {
+                mPending.add(frame.mHeader);
+                mPending.add(frame.mPayload);
+                mWriting.add(frame);
+            }
+        }
+
+        private void failQueued() {
+            Frame frame;
+            while ((frame = mQueue.poll()) != null) {
+                onWritten(frame, new ClosedChannelException());
+            }
+        }
+
+        private void onWritten(Frame frame, Exception cause) {
+            mSendBuffer.release(HEADER_SIZE + frame.mPayload.capacity());
+            if (frame.mFuture == null) {
+                return;
+            }
+            if (cause == null) {
+                frame.mFuture.complete(null);
+            } else {
+                frame.mFuture.completeExceptionally(cause);
+            }
+        }
+
+        private void write() throws IOException {
+            if (mPending.isEmpty()) {
+                return;
+            }
+            mChannel.write(mPending.toArray(new ByteBuffer[0]));
+            mLastWrite = System.nanoTime();
+            while (!mPending.isEmpty() && !mPending.peek().hasRemaining()) {
+                mPending.poll();
+            }
+            while (!mWriting.isEmpty() && mWriting.peek().isWritten()) {
+                onWritten(mWriting.poll(), null);
+            }
+            int ops = SelectionKey.OP_READ;
+            if (!mPending.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            mKey.interestOps(ops);
+        }
+
+        // Returns false at the end of the stream.
+        private boolean read() throws IOException {
+            if (mPayload != null) {
+                if (mChannel.read(mPayload) < 0) {
+                    return false;
+                }
+                mLastRead = System.nanoTime();
+                if (mPayload.hasRemaining()) {
+                    return true;
+                }
+                onFrame(mPayloadType, mPayload.array());
+                mPayload = null;
+            }
+            if (mChannel.read(mReadBuffer) < 0) {
+                return false;
+            }
+            mLastRead = System.nanoTime();
+            mReadBuffer.flip();
+            while (mReadBuffer.remaining() >= HEADER_SIZE) {
+                if (mState == STATE_HANDSHAKE) {
+                    byte[] reply = new byte[HEADER_SIZE];
+                    mReadBuffer.get(reply);
+                    onHandshakeReply(reply);
+                    if (mState != STATE_OPEN) {
+                        // Reconnected with the next serializer.
+                        return true;
+                    }
+                    continue;
+                }
+                int header = mReadBuffer.getInt();
+                int frameType = header >>> 24;
+                int length = header & MAX_LENGTH;
+                if (frameType > FRAME_PONG) {
+                    throw new ProtocolError("Invalid RawSocket frame type " + frameType);
+                }
+                if (length > mMaxReceiveLength) {
+                    throw new ProtocolError(String.format(
+                            "Received message of %d bytes, more than the %d bytes accepted",
+                            length, mMaxReceiveLength));
+                }
+                byte[] payload = new byte[length];
+                if (mReadBuffer.remaining() < length) {
+                    int available = mReadBuffer.remaining();
+                    mReadBuffer.get(payload, 0, available);
+                    mPayload = ByteBuffer.wrap(payload);
+                    mPayload.position(available);
+                    mPayloadType = frameType;
+                    break;
+                }
+                mReadBuffer.get(payload);
+                onFrame(frameType, payload);
+            }
+            mReadBuffer.compact();
+            return true;
+        }
+
+        private void onFrame(int frameType, byte[] payload) {
+            if (frameType == FRAME_MESSAGE) {
+                try {
+                    mTransportHandler.onMessage(payload, mSerializer.isBinary());
+                } catch (Exception e) {
+                    LOGGER.v(e.getMessage(), e);
+                }
+            } else if (frameType == FRAME_PING) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(FRAME_PONG << 24 | payload.length).flip();
+                mPending.add(header);
+                mPending.add(ByteBuffer.wrap(payload));
+                mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        // Sends a PING when due, returns false if the router stopped responding.
+        private boolean checkPing() {
+            if (mPingInterval <= 0) {
+                return true;
+            }
+            long now = System.nanoTime();
+            if (now - mLastRead >= mPingInterval + mPingTimeout) {
+                return false;
+            }
+            if (now - mLastWrite >= mPingInterval && mPending.isEmpty()) {
+                mPending.add(ByteBuffer.allocate(HEADER_SIZE).putInt(0, FRAME_PING << 24));
+                mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+            return true;
+        }
+
+        private long getSelectTimeout() {
+            if (mPingInterval <= 0 || mState != STATE_OPEN) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            long next = Math.min(mLastWrite + mPingInterval,
+                    mLastRead + mPingInterval + mPingTimeout);
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - now) + 1);
+        }
+
+        private void closeQuietly() {
+            try {
+                if (mChannel != null) {
+                    mChannel.close();
+                }
+                if (mSelector != null) {
+                    mSelector.close();
+                }
+            } catch (IOException e) {
+                LOGGER.v(e.getMessage(), e);
+            }
+        }
     }
 }
@@ -0,0 +1,180 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.exceptions.SendBufferFullError;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.crossbar.autobahn.wamp.utils.SerialExecutor;
+
+/**
+ * Accounts for the octets a transport has queued but not yet written to
+ * its socket: whether the transport is writable, with the send buffer
+ * size as high and half of it as low water mark, and what happens to
+ * messages sent while it isn't, see
+ * {@link TransportOptions#setSendBufferPolicy(int)}.
+ * <p>
+ * Transports acquire the size of each message before queueing it and
+ * release it once it was written or failed, on any thread.
+ */
+final class SendBuffer {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(SendBuffer.class.getName());
+
+    private final ITransportHandler mHandler;
+    private final int mHighWaterMark;
+    private final int mLowWaterMark;
+    private final int mPolicy;
+
+    // Guarded by this.
+    private long mQueued;
+    private boolean mWritable = true;
+    private boolean mClosed;
+
+    // Reports writability changes one at a time, on the thread that made
+    // the change unless another one is reporting already, and without the
+    // lock held, so that the handler may call back into the transport.
+    private final Executor mNotifier = new SerialExecutor(Runnable::run);
+    // What the handler was last told, only touched by mNotifier.
+    private boolean mReportedWritable = true;
+
+    SendBuffer(ITransportHandler handler, TransportOptions options) {
+        mHandler = handler;
+        mHighWaterMark = options.getSendBufferSize();
+        mLowWaterMark = mHighWaterMark / 2;
+        mPolicy = options.getSendBufferPolicy();
+    }
+
+    /**
+     * Accounts for a message about to be queued, after applying the policy
+     * if the buffer is full.
+     *
+     * @param size octets of the message
+     * @param mayBlock false on I/O threads, which queue instead of blocking
+     * @param mayDrop false for messages that SEND_BUFFER_FAIL and
+     *     SEND_BUFFER_DROP queue anyway, see {@link #mayDrop(IMessage)}
+     * @return false if the message is to be dropped, because of the policy
+     *     or because the transport closed
+     * @throws SendBufferFullError under SEND_BUFFER_FAIL, or if interrupted
+     *     while waiting under SEND_BUFFER_BLOCK
+     */
+    boolean acquire(int size, boolean mayBlock, boolean mayDrop) {
+        synchronized (this) {
+            if (!mWritable && !mClosed) {
+                if (mPolicy == TransportOptions.SEND_BUFFER_FAIL && mayDrop) {
+                    throw new SendBufferFullError(String.format(
+                            "Send buffer full, %d octets queued", mQueued));
+                } else if (mPolicy == TransportOptions.SEND_BUFFER_DROP && mayDrop) {
+                    return false;
+                } else if (mPolicy == TransportOptions.SEND_BUFFER_BLOCK && mayBlock) {
+                    while (!mWritable && !mClosed) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SendBufferFullError(
+                                    "Interrupted while the send buffer is full");
+                        }
+                    }
+                }
+            }
+            if (mClosed) {
+                return false;
+            }
+            mQueued += size;
+            if (!mWritable || mQueued < mHighWaterMark) {
+                return true;
+            }
+            mWritable = false;
+        }
+        reportWritability();
+        return true;
+    }
+
+    void release(int size) {
+        synchronized (this) {
+            mQueued -= size;
+            if (mWritable || mQueued > mLowWaterMark) {
+                return;
+            }
+            mWritable = true;
+            notifyAll();
+        }
+        reportWritability();
+    }
+
+    synchronized boolean isWritable() {
+        return mWritable;
+    }
+
+    /**
+     * Wakes up senders waiting for room, messages sent from now on are
+     * dropped.
+     */
+    synchronized void close() {
+        mClosed = true;
+        notifyAll();
+    }
+
+    // Called after a change, without the lock held. Two threads may race
+    // to report their changes in the wrong order, so each report reads
+    // the latest state and is skipped if the handler already has it.
+    private void reportWritability() {
+        mNotifier.execute(() -> {
+            boolean writable;
+            synchronized (this) {
+                if (mClosed) {
+                    return;
+                }
+                writable = mWritable;
+            }
+            if (writable == mReportedWritable) {
+                return;
+            }
+            mReportedWritable = writable;
+            try {
+                mHandler.onWritabilityChanged(writable);
+            } catch (RuntimeException e) {
+                LOGGER.w(e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Whether the policy applies to a message: only to publications nobody
+     * waits for. Anything else is part of an exchange with the router, e.g.
+     * a CALL whose caller waits for the RESULT, or a YIELD the router waits
+     * for, and losing it would leave the other side hanging. Raw payloads
+     * sent by the application are always subject to the policy.
+     */
+    static boolean mayDrop(IMessage message) {
+        return message instanceof Publish && !((Publish) message).acknowledge;
+    }
+
+    /**
+     * Fails the future of a message that was dropped, if any.
+     */
+    static void dropped(CompletableFuture<Void> future) {
+        LOGGER.d("Dropping message, send buffer full or transport closed");
+        if (future != null) {
+            future.completeExceptionally(new SendBufferFullError(
+                    "Message dropped, send buffer full or transport closed"));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.transports;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+/**
+ * WAMP over RawSocket on a Unix domain socket, for URIs like
+ * "unix:///var/run/crossbar.sock", to talk to a router on the same host
+ * without going through the TCP/IP stack.
+ * <p>
+ * Behaves like {@link RawSocket} and takes the same TransportOptions.
+ * Needs Java 16 or later, it's not available on Android.
+ */
+public class UnixRawSocket extends RawSocket {
+
+    public UnixRawSocket(String uri) {
+        super(uri);
+    }
+
+    public UnixRawSocket(String uri, List<String> serializers) {
+        super(uri, serializers);
+    }
+
+    @Override
+    protected SocketAddress getAddress(URI uri) {
+        if (!"unix".equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("Only UNIX is supported.");
+        }
+        if (uri.getPath() == null || uri.getPath().isEmpty()) {
+            throw new IllegalArgumentException("Socket path is required.");
+        }
+        return UnixDomainSocketAddress.of(uri.getPath());
+    }
+
+    @Override
+    protected SocketChannel openChannel(SocketAddress address) throws IOException {
+        return SocketChannel.open(StandardProtocolFamily.UNIX);
+    }
+}
@@ -12,15 +12,18 @@
 package io.crossbar.autobahn.wamp.transports;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import io.crossbar.autobahn.utils.ABLogger;
 import io.crossbar.autobahn.utils.IABLogger;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
 import io.crossbar.autobahn.wamp.interfaces.ISerializer;
 import io.crossbar.autobahn.wamp.interfaces.ITransport;
 import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
 import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
 import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
 import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.serializers.SerializerRegistry;
 import io.crossbar.autobahn.wamp.types.CloseDetails;
 import io.crossbar.autobahn.wamp.types.TransportOptions;
 import io.crossbar.autobahn.websocket.WebSocketConnection;
@@ -40,6 +43,7 @@ public class WebSocket implements ITransport {
 
     private List<String> mSerializers;
     private ISerializer mSerializer;
+    private volatile SendBuffer mSendBuffer;
 
     public WebSocket(String uri) {
         mUri = uri;
@@ -60,7 +64,46 @@ public class WebSocket implements ITransport {
 
     @Override
     public void send(byte[] payload, boolean isBinary) {
-        mConnection.sendMessage(payload, isBinary);
+        send(payload, isBinary, true, null);
+    }
+
+    @Override
+    public void send(IMessage message, ISerializer serializer) {
+        send(serializer.serialize(message), serializer.isBinary(), SendBuffer.mayDrop(message),
+                null);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(IMessage message, ISerializer serializer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            send(serializer.serialize(message), serializer.isBinary(),
+                    SendBuffer.mayDrop(message), future);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void send(byte[] payload, boolean isBinary, boolean mayDrop,
+                      CompletableFuture<Void> future) {
+        SendBuffer sendBuffer = mSendBuffer;
+        if (sendBuffer == null || !sendBuffer.acquire(payload.length,
+                !mConnection.isWriterThread(), mayDrop)) {
+            SendBuffer.dropped(future);
+            return;
+        }
+        mConnection.sendMessage(payload, isBinary, e -> {
+            sendBuffer.release(payload.length);
+            if (future == null) {
+                return;
+            }
+            if (e == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(e);
+            }
+        });
     }
 
     @Override
@@ -76,6 +119,16 @@ public class WebSocket implements ITransport {
         webSocketOptions.setAutoPingInterval(options.getAutoPingInterval());
         webSocketOptions.setAutoPingTimeout(options.getAutoPingTimeout());
         webSocketOptions.setMaxFramePayloadSize(options.getMaxFramePayloadSize());
+        webSocketOptions.setMaxFlushDelay(options.getMaxFlushDelay());
+        webSocketOptions.setPerMessageDeflate(options.getPerMessageDeflate());
+        webSocketOptions.setDeflateThreshold(options.getDeflateThreshold());
+        webSocketOptions.setDeflateClientNoContextTakeover(
+                options.getDeflateClientNoContextTakeover());
+        webSocketOptions.setDeflateServerNoContextTakeover(
+                options.getDeflateServerNoContextTakeover());
+        webSocketOptions.setDeflateServerMaxWindowBits(options.getDeflateServerMaxWindowBits());
+        SendBuffer sendBuffer = new SendBuffer(transportHandler, options);
+        mSendBuffer = sendBuffer;
 
         mConnection.connect(mUri, getSerializers(), new WebSocketConnectionHandler() {
 
@@ -83,7 +136,8 @@ public class WebSocket implements ITransport {
             public void onConnect(ConnectionResponse response) {
                 LOGGER.d(String.format("Negotiated serializer=%s", response.protocol));
                 try {
-                    mSerializer = initializeSerializer(response.protocol);
+                    mSerializer = initializeSerializer(response.protocol,
+                            options.getCBORTypedArrays());
                 } catch (Exception e) {
                     LOGGER.v(e.getMessage(), e);
                 }
@@ -100,6 +154,7 @@ public class WebSocket implements ITransport {
 
             @Override
             public void onClose(int code, String reason) {
+                sendBuffer.close();
                 String closeReason;
                 if (code == IWebSocketConnectionHandler.CLOSE_CONNECTION_LOST) {
                     closeReason = CloseDetails.REASON_TRANSPORT_LOST;
@@ -137,6 +192,11 @@ public class WebSocket implements ITransport {
         return mConnection.isConnected();
     }
 
+    @Override
+    public boolean isWritable() {
+        return isOpen() && mSendBuffer.isWritable();
+    }
+
     @Override
     public void close() throws Exception {
         mConnection.sendClose();
@@ -152,6 +212,7 @@ public class WebSocket implements ITransport {
         WebSocketOptions webSocketOptions = new WebSocketOptions();
         webSocketOptions.setAutoPingTimeout(options.getAutoPingTimeout());
         webSocketOptions.setAutoPingInterval(options.getAutoPingInterval());
+        webSocketOptions.setMaxFlushDelay(options.getMaxFlushDelay());
         mConnection.setOptions(webSocketOptions);
     }
 
@@ -160,16 +221,8 @@ public class WebSocket implements ITransport {
         throw new UnsupportedOperationException("Not available");
     }
 
-    private ISerializer initializeSerializer(String negotiatedSerializer) throws Exception {
-        switch (negotiatedSerializer) {
-            case CBORSerializer.NAME:
-                return new CBORSerializer();
-            case JSONSerializer.NAME:
-                return new JSONSerializer();
-            case MessagePackSerializer.NAME:
-                return new MessagePackSerializer();
-            default:
-                throw new IllegalArgumentException("Unsupported serializer.");
-        }
+    private ISerializer initializeSerializer(String negotiatedSerializer, boolean cborTypedArrays)
+            throws Exception {
+        return SerializerRegistry.get(negotiatedSerializer, cborTypedArrays);
     }
 }
@@ -11,10 +11,26 @@
 
 package io.crossbar.autobahn.wamp.types;
 
+import java.util.function.Consumer;
+
 public class CallOptions {
+
+    // Call timeout in milliseconds, 0 for none. It is sent to the router and
+    // also enforced locally: once it passes, the call fails with
+    // wamp.error.timeout and a CANCEL is sent.
     public final int timeout;
 
+    // Receives the progressive results of the call, in order, before the
+    // call future completes with the final result. When set, the callee is
+    // asked to send progressive results (receive_progress).
+    public final Consumer<CallResult> onProgress;
+
     public CallOptions(int timeout) {
+        this(timeout, null);
+    }
+
+    public CallOptions(int timeout, Consumer<CallResult> onProgress) {
         this.timeout = timeout;
+        this.onProgress = onProgress;
     }
 }
@@ -11,6 +11,10 @@
 
 package io.crossbar.autobahn.wamp.types;
 
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
 import io.crossbar.autobahn.wamp.Session;
 
 public class InvocationDetails {
@@ -33,18 +37,52 @@ public class InvocationDetails {
     // The WAMP session on which this event is delivered.
     public final Session session;
 
-    // FIXME
-    // we need a progress() callback here to allow
-    // the user to produce progressive results.
+    // Set once the caller cancelled the call and the router sent an
+    // INTERRUPT. Long running endpoints should check it and bail out.
+    private volatile boolean cancelled;
+
+    // Whether the caller wants progressive results, see progress().
+    public final boolean receiveProgress;
+
+    private final BiConsumer<List<Object>, Map<String, Object>> progressSink;
 
     // XXXX - Tentative, the constructor parameter order may change.
     public InvocationDetails(Registration registration, String procedure, long callerSessionID,
                              String callerAuthID, String callerAuthRole, Session session) {
+        this(registration, procedure, callerSessionID, callerAuthID, callerAuthRole, session,
+                false, null);
+    }
+
+    public InvocationDetails(Registration registration, String procedure, long callerSessionID,
+                             String callerAuthID, String callerAuthRole, Session session,
+                             boolean receiveProgress,
+                             BiConsumer<List<Object>, Map<String, Object>> progressSink) {
         this.registration = registration;
         this.procedure = procedure;
         this.callerSessionID = callerSessionID;
         this.callerAuthID = callerAuthID;
         this.callerAuthRole = callerAuthRole;
         this.session = session;
+        this.receiveProgress = receiveProgress;
+        this.progressSink = progressSink;
+    }
+
+    // Sends a progressive result to the caller ahead of the final one that
+    // the endpoint returns. Only allowed if receiveProgress is set.
+    public void progress(List<Object> args, Map<String, Object> kwargs) {
+        if (!receiveProgress || progressSink == null) {
+            throw new IllegalStateException("Caller did not ask for progressive results");
+        }
+        if (!cancelled) {
+            progressSink.accept(args, kwargs);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setCancelled() {
+        cancelled = true;
     }
 }
@@ -0,0 +1,84 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.types;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An application payload in WAMP payload passthru mode: bytes that are
+ * already encoded (or encrypted) by the application, sent in place of
+ * args and kwargs and never decoded or re-encoded by the session.
+ * <p>
+ * Pass it as the only arg to publish or call, or return it from an
+ * endpoint. Received EVENT, INVOCATION, RESULT and ERROR messages in
+ * passthru mode have a single PassthruPayload as their args.
+ */
+public class PassthruPayload {
+
+    // ppt_scheme, e.g. "mqtt" or "x_my_scheme", required.
+    public final String scheme;
+    // ppt_serializer, how the application encoded the payload, may be null.
+    public final String serializer;
+    // ppt_cipher, may be null.
+    public final String cipher;
+    // ppt_keyid, may be null.
+    public final String keyID;
+
+    private final ByteBuffer mData;
+
+    public PassthruPayload(String scheme, String serializer, byte[] data) {
+        this(scheme, serializer, null, null, ByteBuffer.wrap(data));
+    }
+
+    public PassthruPayload(String scheme, String serializer, ByteBuffer data) {
+        this(scheme, serializer, null, null, data);
+    }
+
+    public PassthruPayload(String scheme, String serializer, String cipher, String keyID,
+                           ByteBuffer data) {
+        if (scheme == null) {
+            throw new IllegalArgumentException("scheme must not be null");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("data must not be null");
+        }
+        this.scheme = scheme;
+        this.serializer = serializer;
+        this.cipher = cipher;
+        this.keyID = keyID;
+        mData = data.slice();
+    }
+
+    /**
+     * @return a read-only view of the payload bytes
+     */
+    public ByteBuffer getData() {
+        return mData.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the payload bytes, without a copy if they are a whole array
+     */
+    public byte[] getBytes() {
+        if (mData.hasArray() && mData.arrayOffset() == 0
+                && mData.remaining() == mData.array().length) {
+            return mData.array();
+        }
+        byte[] bytes = new byte[mData.remaining()];
+        mData.duplicate().get(bytes);
+        return bytes;
+    }
+
+    public int length() {
+        return mData.remaining();
+    }
+}
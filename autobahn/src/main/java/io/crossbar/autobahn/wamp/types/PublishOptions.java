@@ -12,6 +12,8 @@
 package io.crossbar.autobahn.wamp.types;
 
 public class PublishOptions {
+    // Ask the router to confirm the publication with PUBLISHED. Off unless
+    // options say so, as it costs a round trip and a pending request.
     public final boolean acknowledge;
     public final boolean excludeMe;
     public final boolean retain;
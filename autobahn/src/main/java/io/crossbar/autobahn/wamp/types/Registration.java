@@ -19,14 +19,21 @@ public class Registration {
     public final long registration;
     public final String procedure;
     public final Object endpoint;
+    public final RegisterOptions options;
     public final Session session;
 
     private boolean active = true;
 
     public Registration(long registration, String procedure, Object endpoint, Session session) {
+        this(registration, procedure, endpoint, null, session);
+    }
+
+    public Registration(long registration, String procedure, Object endpoint,
+                        RegisterOptions options, Session session) {
         this.registration = registration;
         this.procedure = procedure;
         this.endpoint = endpoint;
+        this.options = options;
         this.session = session;
     }
 
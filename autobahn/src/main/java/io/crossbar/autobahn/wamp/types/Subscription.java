@@ -23,17 +23,25 @@ public class Subscription {
     public final TypeReference resultTypeRef;
     public final Class resultTypeClass;
     public final Object handler;
+    public final SubscribeOptions options;
     public final Session session;
 
     private boolean active = true;
 
     public Subscription(long subscription, String topic, TypeReference resultTypeRef,
                         Class resultTypeClass, Object handler, Session session) {
+        this(subscription, topic, resultTypeRef, resultTypeClass, handler, null, session);
+    }
+
+    public Subscription(long subscription, String topic, TypeReference resultTypeRef,
+                        Class resultTypeClass, Object handler, SubscribeOptions options,
+                        Session session) {
         this.subscription = subscription;
         this.topic = topic;
         this.resultTypeRef = resultTypeRef;
         this.resultTypeClass = resultTypeClass;
         this.handler = handler;
+        this.options = options;
         this.session = session;
     }
 
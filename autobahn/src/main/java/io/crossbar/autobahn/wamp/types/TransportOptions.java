@@ -14,15 +14,35 @@ package io.crossbar.autobahn.wamp.types;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class TransportOptions {
+
+    // What send does when the send buffer is full.
+    public static final int SEND_BUFFER_UNBOUNDED = 0;
+    public static final int SEND_BUFFER_BLOCK = 1;
+    public static final int SEND_BUFFER_FAIL = 2;
+    public static final int SEND_BUFFER_DROP = 3;
+
     private int mMaxFramePayloadSize;
     private int mAutoPingInterval;
     private int mAutoPingTimeout;
+    private int mMaxFlushDelay;
+    private boolean mPerMessageDeflate;
+    private int mDeflateThreshold;
+    private boolean mDeflateClientNoContextTakeover;
+    private boolean mDeflateServerNoContextTakeover;
+    private int mDeflateServerMaxWindowBits;
+    private int mSendBufferSize;
+    private int mSendBufferPolicy;
+    private boolean mCBORTypedArrays;
     private ObjectMapper objectMapper;
 
     public TransportOptions() {
         mMaxFramePayloadSize = 128 * 1024;
         mAutoPingInterval = 10;
         mAutoPingTimeout = 5;
+        mDeflateThreshold = 256;
+        mDeflateServerMaxWindowBits = 15;
+        mSendBufferSize = 64 * 1024;
+        mSendBufferPolicy = SEND_BUFFER_UNBOUNDED;
     }
 
     /**
@@ -70,4 +90,184 @@ public class TransportOptions {
     public int getAutoPingTimeout() {
         return mAutoPingTimeout;
     }
+
+    /**
+     * Set the maximum time outgoing messages may be held back, so that
+     * more of them can go out in the same socket write.
+     * <p>
+     * Messages sent while the transport is busy writing are always
+     * written together. With a delay, the transport also waits up to
+     * that long for further messages before flushing.
+     * <p>
+     * DEFAULT: 0, flush as soon as no more messages are queued.
+     *
+     * @param millis Maximum delay in milliseconds.
+     */
+    public void setMaxFlushDelay(int millis) {
+        if (millis >= 0) {
+            mMaxFlushDelay = millis;
+        }
+    }
+
+    public int getMaxFlushDelay() {
+        return mMaxFlushDelay;
+    }
+
+    /**
+     * Send primitive numeric arrays (int[], long[], float[], double[] and
+     * the matching Buffers) as RFC 8746 typed arrays when the CBOR or flat
+     * serializer is negotiated. They are much smaller and faster to encode
+     * than a CBOR array of numbers, but the peers must understand them.
+     * <p>
+     * DEFAULT: false, send plain CBOR arrays.
+     *
+     * @param enabled True to use typed arrays.
+     */
+    public void setCBORTypedArrays(boolean enabled) {
+        mCBORTypedArrays = enabled;
+    }
+
+    public boolean getCBORTypedArrays() {
+        return mCBORTypedArrays;
+    }
+
+    /**
+     * Offer the permessage-deflate extension (RFC 7692) in the opening
+     * handshake of the WebSocket transports, so that messages are
+     * compressed if the server agrees.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to offer compression.
+     */
+    public void setPerMessageDeflate(boolean enabled) {
+        mPerMessageDeflate = enabled;
+    }
+
+    public boolean getPerMessageDeflate() {
+        return mPerMessageDeflate;
+    }
+
+    /**
+     * Set the size below which messages are sent uncompressed, even when
+     * permessage-deflate was negotiated. Small messages hardly shrink
+     * and aren't worth the time.
+     * <p>
+     * DEFAULT: 256
+     *
+     * @param size Minimum size in octets of a message to compress.
+     */
+    public void setDeflateThreshold(int size) {
+        if (size >= 0) {
+            mDeflateThreshold = size;
+        }
+    }
+
+    public int getDeflateThreshold() {
+        return mDeflateThreshold;
+    }
+
+    /**
+     * Offer client_no_context_takeover: the client compresses every
+     * message on its own, which needs less memory on both sides but
+     * compresses similar messages less.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to reset the compressor after each message.
+     */
+    public void setDeflateClientNoContextTakeover(boolean enabled) {
+        mDeflateClientNoContextTakeover = enabled;
+    }
+
+    public boolean getDeflateClientNoContextTakeover() {
+        return mDeflateClientNoContextTakeover;
+    }
+
+    /**
+     * Request server_no_context_takeover: the server compresses every
+     * message on its own.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to request it.
+     */
+    public void setDeflateServerNoContextTakeover(boolean enabled) {
+        mDeflateServerNoContextTakeover = enabled;
+    }
+
+    public boolean getDeflateServerNoContextTakeover() {
+        return mDeflateServerNoContextTakeover;
+    }
+
+    /**
+     * Request server_max_window_bits, the size of the LZ77 window of the
+     * server's compressor, which bounds the memory it needs per
+     * connection. Not requested at 15.
+     * <p>
+     * DEFAULT: 15
+     *
+     * @param bits Base-2 logarithm of the window size, 8 to 15.
+     */
+    public void setDeflateServerMaxWindowBits(int bits) {
+        if (bits >= 8 && bits <= 15) {
+            mDeflateServerMaxWindowBits = bits;
+        }
+    }
+
+    public int getDeflateServerMaxWindowBits() {
+        return mDeflateServerMaxWindowBits;
+    }
+
+    /**
+     * Set the size of the send buffer: the transport stops being writable
+     * once messages of that many octets are queued but not yet written to
+     * the socket, and becomes writable again when half of them went out.
+     * Changes are reported to ITransportHandler.onWritabilityChanged.
+     * <p>
+     * DEFAULT: 64KB
+     *
+     * @param size Size in octets of the send buffer.
+     */
+    public void setSendBufferSize(int size) {
+        if (size > 0) {
+            mSendBufferSize = size;
+        }
+    }
+
+    public int getSendBufferSize() {
+        return mSendBufferSize;
+    }
+
+    /**
+     * Set what sending does while the transport is not writable:
+     * {@link #SEND_BUFFER_UNBOUNDED} queues the message anyway,
+     * {@link #SEND_BUFFER_BLOCK} waits until the transport is writable
+     * again, {@link #SEND_BUFFER_FAIL} fails with
+     * {@link io.crossbar.autobahn.wamp.exceptions.SendBufferFullError}
+     * (through the future returned by Session.publish())
+     * and {@link #SEND_BUFFER_DROP} discards the message.
+     * <p>
+     * SEND_BUFFER_FAIL and SEND_BUFFER_DROP only apply to unacknowledged
+     * publications and to payloads passed to
+     * {@link io.crossbar.autobahn.wamp.interfaces.ITransport#send(byte[], boolean)},
+     * other WAMP messages are queued anyway so that no request is lost
+     * half-way.
+     * <p>
+     * I/O threads are never blocked, messages sent from them are queued
+     * under SEND_BUFFER_BLOCK.
+     * <p>
+     * DEFAULT: SEND_BUFFER_UNBOUNDED
+     *
+     * @param policy One of the SEND_BUFFER_ constants.
+     */
+    public void setSendBufferPolicy(int policy) {
+        if (policy >= SEND_BUFFER_UNBOUNDED && policy <= SEND_BUFFER_DROP) {
+            mSendBufferPolicy = policy;
+        }
+    }
+
+    public int getSendBufferPolicy() {
+        return mSendBufferPolicy;
+    }
 }
@@ -0,0 +1,415 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * A thread-safe hash map keyed by primitive longs, used for the
+ * request and subscription tables of a session.
+ * <p>
+ * Keys are never boxed: entries live in open-addressing tables that are
+ * split into independently locked segments, so writers on different
+ * segments don't contend and readers normally take no lock at all.
+ * <p>
+ * WAMP IDs are drawn from [1, 2^53], so the key 0 is reserved to mark
+ * empty slots and is rejected.
+ *
+ * @param <V> type of the mapped values
+ */
+public class ConcurrentLongMap<V> {
+
+    private static final int DEFAULT_EXPECTED_ITEMS = 256;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final float LOAD_FACTOR = 0.66f;
+    private static final long EMPTY = 0L;
+
+    private final Segment<V>[] mSegments;
+    private final int mSegmentShift;
+
+    public ConcurrentLongMap() {
+        this(DEFAULT_EXPECTED_ITEMS, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a map sized for the given number of entries.
+     *
+     * @param expectedItems the number of entries the map should hold without rehashing
+     * @param concurrencyLevel the estimated number of concurrently writing threads
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap(int expectedItems, int concurrencyLevel) {
+        if (expectedItems < 0 || concurrencyLevel < 1) {
+            throw new IllegalArgumentException("expectedItems must be >= 0 and concurrencyLevel >= 1");
+        }
+        int segments = ceilingPowerOfTwo(concurrencyLevel);
+        int perSegment = ceilingPowerOfTwo(
+                (int) Math.ceil(Math.max(1, expectedItems / segments) / LOAD_FACTOR));
+        mSegments = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            mSegments[i] = new Segment<>(Math.max(perSegment, 4));
+        }
+        mSegmentShift = 64 - Integer.numberOfTrailingZeros(segments);
+    }
+
+    public V get(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).get(key, (int) hash);
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @return the previous value, or null if there was none
+     */
+    public V put(long key, V value) {
+        checkNotNull(value);
+        long hash = hash(key);
+        return segmentFor(hash).put(key, value, (int) hash, false);
+    }
+
+    /**
+     * Associates the value with the key unless a mapping already exists.
+     *
+     * @return the existing value, or null if the value was inserted
+     */
+    public V putIfAbsent(long key, V value) {
+        checkNotNull(value);
+        long hash = hash(key);
+        return segmentFor(hash).put(key, value, (int) hash, true);
+    }
+
+    /**
+     * Returns the value mapped to the key, atomically creating it with
+     * the given function if there is none.
+     */
+    public V computeIfAbsent(long key, LongFunction<V> mappingFunction) {
+        long hash = hash(key);
+        return segmentFor(hash).computeIfAbsent(key, mappingFunction, (int) hash);
+    }
+
+    /**
+     * Removes the mapping for the key.
+     *
+     * @return the removed value, or null if the key was not present
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, null, (int) hash);
+    }
+
+    /**
+     * Removes the mapping for the key only if it is currently mapped to the value.
+     *
+     * @return true if the mapping was removed
+     */
+    public boolean remove(long key, V value) {
+        checkNotNull(value);
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, value, (int) hash) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment: mSegments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Segment<V> segment: mSegments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values currently in the map.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Segment<V> segment: mSegments) {
+            segment.collectValues(values);
+        }
+        return values;
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        // The high bits pick the segment, the low bits the slot inside it.
+        return mSegments.length == 1 ? mSegments[0] : mSegments[(int) (hash >>> mSegmentShift)];
+    }
+
+    private static long hash(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("key must not be 0");
+        }
+        // MurmurHash3 finalizer, IDs are sequential so they need spreading.
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void checkNotNull(Object value) {
+        if (value == null) {
+            throw new NullPointerException("value must not be null");
+        }
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class Segment<V> extends StampedLock {
+
+        private long[] mKeys;
+        private Object[] mValues;
+        private int mSize;
+        private int mResizeThreshold;
+
+        Segment(int capacity) {
+            mKeys = new long[capacity];
+            mValues = new Object[capacity];
+            mResizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key, int hash) {
+            long stamp = tryOptimisticRead();
+            long[] keys = mKeys;
+            Object[] values = mValues;
+            Object value = null;
+            boolean consistent = keys.length == values.length;
+            if (consistent) {
+                value = find(keys, values, key, hash);
+            }
+            if (!consistent || !validate(stamp)) {
+                // A writer got in between, retry under the read lock.
+                stamp = readLock();
+                try {
+                    value = find(mKeys, mValues, key, hash);
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return (V) value;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(long key, V value, int hash, boolean onlyIfAbsent) {
+            long stamp = writeLock();
+            try {
+                int index = indexOf(key, hash);
+                if (index >= 0) {
+                    V previous = (V) mValues[index];
+                    if (!onlyIfAbsent) {
+                        mValues[index] = value;
+                    }
+                    return previous;
+                }
+                insert(key, value, hash);
+                return null;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V computeIfAbsent(long key, LongFunction<V> mappingFunction, int hash) {
+            V existing = get(key, hash);
+            if (existing != null) {
+                return existing;
+            }
+            long stamp = writeLock();
+            try {
+                int index = indexOf(key, hash);
+                if (index >= 0) {
+                    return (V) mValues[index];
+                }
+                V value = mappingFunction.apply(key);
+                if (value != null) {
+                    insert(key, value, hash);
+                }
+                return value;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V remove(long key, V expected, int hash) {
+            long stamp = writeLock();
+            try {
+                int index = indexOf(key, hash);
+                if (index < 0) {
+                    return null;
+                }
+                V previous = (V) mValues[index];
+                if (expected != null && !expected.equals(previous)) {
+                    return null;
+                }
+                deleteAt(index);
+                mSize--;
+                return previous;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = tryOptimisticRead();
+            int size = mSize;
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    size = mSize;
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return size;
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                mKeys = new long[mKeys.length];
+                mValues = new Object[mValues.length];
+                mSize = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void collectValues(List<V> out) {
+            long stamp = readLock();
+            try {
+                for (Object value: mValues) {
+                    if (value != null) {
+                        out.add((V) value);
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private static Object find(long[] keys, Object[] values, long key, int hash) {
+            int mask = keys.length - 1;
+            int index = hash & mask;
+            // Bounded so that a torn optimistic read can never spin forever.
+            for (int probes = 0; probes <= mask; probes++) {
+                long current = keys[index];
+                if (current == key) {
+                    return values[index];
+                } else if (current == EMPTY) {
+                    return null;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private int indexOf(long key, int hash) {
+            int mask = mKeys.length - 1;
+            int index = hash & mask;
+            while (true) {
+                long current = mKeys[index];
+                if (current == key) {
+                    return index;
+                } else if (current == EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private void insert(long key, Object value, int hash) {
+            if (mSize >= mResizeThreshold) {
+                rehash(mKeys.length * 2);
+            }
+            int mask = mKeys.length - 1;
+            int index = hash & mask;
+            while (mKeys[index] != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            // Publish the value before the key so an optimistic reader
+            // that sees the key also sees its value.
+            mValues[index] = value;
+            mKeys[index] = key;
+            mSize++;
+        }
+
+        private void deleteAt(int index) {
+            // Backward-shift deletion keeps probe sequences intact
+            // without tombstones.
+            int mask = mKeys.length - 1;
+            int hole = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                long key = mKeys[next];
+                if (key == EMPTY) {
+                    break;
+                }
+                int ideal = (int) hash(key) & mask;
+                boolean canMove = hole <= next
+                        ? (ideal <= hole || ideal > next)
+                        : (ideal <= hole && ideal > next);
+                if (canMove) {
+                    mKeys[hole] = key;
+                    mValues[hole] = mValues[next];
+                    hole = next;
+                }
+            }
+            mKeys[hole] = EMPTY;
+            mValues[hole] = null;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = mKeys;
+            Object[] oldValues = mValues;
+            long[] keys = new long[capacity];
+            Object[] values = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                long key = oldKeys[i];
+                if (key != EMPTY) {
+                    int index = (int) hash(key) & mask;
+                    while (keys[index] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = key;
+                    values[index] = oldValues[i];
+                }
+            }
+            mValues = values;
+            mKeys = keys;
+            mResizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+}
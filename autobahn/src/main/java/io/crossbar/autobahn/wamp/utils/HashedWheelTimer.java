@@ -0,0 +1,323 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+
+/**
+ * A coarse-grained timer for large numbers of short-lived timeouts,
+ * such as call deadlines.
+ * <p>
+ * Timeouts are kept in a ring of buckets that a single worker thread
+ * advances once per tick. Scheduling and cancelling are O(1), and the
+ * number of pending timeouts doesn't change the number of threads or
+ * wakeups. Expiry is accurate to about one tick.
+ * <p>
+ * The worker thread is started on the first {@link #newTimeout} and
+ * ends with {@link #stop()}. After a stop the timer can be used again,
+ * and a fresh worker is started.
+ */
+public class HashedWheelTimer {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(HashedWheelTimer.class.getName());
+
+    private static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long mTickNanos;
+    private final int mWheelSize;
+    private final ThreadFactory mThreadFactory;
+
+    // Guarded by this. Replaced on restart, a stopped worker only ever
+    // sees the timeouts that were handed to it.
+    private Worker mWorker;
+
+    public HashedWheelTimer(String threadName) {
+        this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param tickDuration the duration of one tick, which is the expiry precision
+     * @param unit the unit of tickDuration
+     * @param wheelSize the number of buckets, rounded up to a power of two
+     * @param threadFactory used to create the worker thread
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize,
+                            ThreadFactory threadFactory) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickDuration and wheelSize must be > 0");
+        }
+        mTickNanos = unit.toNanos(tickDuration);
+        mWheelSize = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        mThreadFactory = threadFactory;
+    }
+
+    /**
+     * Schedules the task to run once on the timer thread after the given delay.
+     * The task should be short, it delays all other timeouts while it runs.
+     *
+     * @return a handle that can cancel the timeout
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task must not be null");
+        }
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0));
+        synchronized (this) {
+            if (mWorker == null) {
+                mWorker = new Worker();
+                mThreadFactory.newThread(mWorker).start();
+            }
+            WheelTimeout timeout = new WheelTimeout(mWorker, task, deadline);
+            mWorker.mPendingTimeouts.add(timeout);
+            return timeout;
+        }
+    }
+
+    /**
+     * Stops the worker thread. Timeouts that have not expired yet are discarded.
+     */
+    public synchronized void stop() {
+        if (mWorker != null) {
+            mWorker.stop();
+            mWorker = null;
+        }
+    }
+
+    /**
+     * A handle to a scheduled task.
+     */
+    public interface Timeout {
+
+        /**
+         * Cancels the timeout.
+         *
+         * @return true if it was cancelled, false if it had already expired or been cancelled
+         */
+        boolean cancel();
+
+        boolean isExpired();
+
+        boolean isCancelled();
+    }
+
+    private static final class WheelTimeout implements Timeout {
+
+        private static final int STATE_INIT = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final Worker mWorker;
+        private final Runnable mTask;
+        private final long mDeadline;
+        private final AtomicInteger mState = new AtomicInteger(STATE_INIT);
+
+        // Only touched by the worker thread.
+        private long mRemainingRounds;
+        private Bucket mBucket;
+        private WheelTimeout mNext;
+        private WheelTimeout mPrevious;
+
+        WheelTimeout(Worker worker, Runnable task, long deadline) {
+            mWorker = worker;
+            mTask = task;
+            mDeadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!mState.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                return false;
+            }
+            // Unlink from the wheel on the worker thread, so that
+            // cancelled timeouts don't linger until their bucket comes round.
+            mWorker.mCancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return mState.get() == STATE_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mState.get() == STATE_CANCELLED;
+        }
+
+        void expire() {
+            if (!mState.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                return;
+            }
+            try {
+                mTask.run();
+            } catch (Throwable t) {
+                LOGGER.w("Timeout task failed", t);
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private WheelTimeout mHead;
+        private WheelTimeout mTail;
+
+        void add(WheelTimeout timeout) {
+            timeout.mBucket = this;
+            if (mHead == null) {
+                mHead = mTail = timeout;
+            } else {
+                mTail.mNext = timeout;
+                timeout.mPrevious = mTail;
+                mTail = timeout;
+            }
+        }
+
+        WheelTimeout remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.mNext;
+            if (timeout.mPrevious != null) {
+                timeout.mPrevious.mNext = next;
+            }
+            if (next != null) {
+                next.mPrevious = timeout.mPrevious;
+            }
+            if (timeout == mHead) {
+                mHead = next;
+            }
+            if (timeout == mTail) {
+                mTail = timeout.mPrevious;
+            }
+            timeout.mPrevious = null;
+            timeout.mNext = null;
+            timeout.mBucket = null;
+            return next;
+        }
+
+        void expireTimeouts(long now) {
+            WheelTimeout timeout = mHead;
+            while (timeout != null) {
+                if (timeout.mRemainingRounds <= 0 && timeout.mDeadline - now <= 0) {
+                    WheelTimeout next = remove(timeout);
+                    timeout.expire();
+                    timeout = next;
+                } else if (timeout.isCancelled()) {
+                    timeout = remove(timeout);
+                } else {
+                    timeout.mRemainingRounds--;
+                    timeout = timeout.mNext;
+                }
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final Queue<WheelTimeout> mPendingTimeouts = new ConcurrentLinkedQueue<>();
+        private final Queue<WheelTimeout> mCancelledTimeouts = new ConcurrentLinkedQueue<>();
+        private final Bucket[] mWheel;
+        private final int mMask;
+        private final long mStartTime;
+        private long mTick;
+        private volatile boolean mStopped;
+        private volatile Thread mThread;
+
+        Worker() {
+            mWheel = new Bucket[mWheelSize];
+            for (int i = 0; i < mWheel.length; i++) {
+                mWheel[i] = new Bucket();
+            }
+            mMask = mWheel.length - 1;
+            mStartTime = System.nanoTime();
+        }
+
+        void stop() {
+            mStopped = true;
+            Thread thread = mThread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            mThread = Thread.currentThread();
+            while (!mStopped) {
+                long now = waitForNextTick();
+                if (now == Long.MIN_VALUE) {
+                    break;
+                }
+                removeCancelled();
+                transferPending();
+                mWheel[(int) (mTick & mMask)].expireTimeouts(now);
+                mTick++;
+            }
+            // Whatever is left was discarded by stop().
+            mPendingTimeouts.clear();
+            mCancelledTimeouts.clear();
+        }
+
+        private long waitForNextTick() {
+            long target = mStartTime + mTickNanos * (mTick + 1);
+            while (true) {
+                long now = System.nanoTime();
+                long sleepNanos = target - now;
+                if (sleepNanos <= 0) {
+                    return now;
+                }
+                try {
+                    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepNanos + 999999));
+                } catch (InterruptedException e) {
+                    return Long.MIN_VALUE;
+                }
+            }
+        }
+
+        private void removeCancelled() {
+            WheelTimeout timeout;
+            while ((timeout = mCancelledTimeouts.poll()) != null) {
+                if (timeout.mBucket != null) {
+                    timeout.mBucket.remove(timeout);
+                }
+            }
+        }
+
+        private void transferPending() {
+            // Bounded so a flood of new timeouts can't stall the current tick.
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+                WheelTimeout timeout = mPendingTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+                long expiryTick = Math.max(0, (timeout.mDeadline - mStartTime) / mTickNanos);
+                timeout.mRemainingRounds = (expiryTick - mTick) / mWheel.length;
+                // Deadlines already in the past go into the current bucket.
+                long tick = Math.max(expiryTick, mTick);
+                mWheel[(int) (tick & mMask)].add(timeout);
+            }
+        }
+    }
+}
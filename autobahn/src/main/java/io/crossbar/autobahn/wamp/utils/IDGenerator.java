@@ -11,14 +11,25 @@
 
 package io.crossbar.autobahn.wamp.utils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates sequential WAMP request IDs in [1, 2^53], safe to use from
+ * any number of threads.
+ */
 public class IDGenerator {
-    private long mNext;
+
+    private static final long MAX_ID = 9007199254740992L;
+
+    private final AtomicLong mNext = new AtomicLong();
 
     public long next() {
-        mNext += 1;
-        if (mNext > 9007199254740992L) {
-            mNext = 1;
+        while (true) {
+            long current = mNext.get();
+            long next = current >= MAX_ID ? 1 : current + 1;
+            if (mNext.compareAndSet(current, next)) {
+                return next;
+            }
         }
-        return mNext;
     }
 }
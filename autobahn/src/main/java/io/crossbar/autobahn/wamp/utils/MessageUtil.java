@@ -11,12 +11,24 @@
 
 package io.crossbar.autobahn.wamp.utils;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
 
 public class MessageUtil {
 
+    // Prefix of binary values in JSON, which are sent as base64 strings.
+    private static final String JSON_BINARY_PREFIX = "\0";
+
     /**
      *
      * Validate a raw WAMP message object based on supplied criteria.
@@ -72,4 +84,215 @@ public class MessageUtil {
         }
 		return 0;
     }
+
+    /**
+     *
+     * Number of items args and kwargs take up at the end of a message.
+     *
+     * @param args positional arguments, may be null
+     * @param kwargs keyword arguments, may be null
+     * @return 0, 1 or 2
+     */
+    public static int getPayloadLength(List<Object> args, Map<String, Object> kwargs) {
+        if (kwargs != null) {
+            return 2;
+        }
+        return args != null ? 1 : 0;
+    }
+
+    /**
+     *
+     * Write args and kwargs at the end of a message, laid out the same
+     * way marshal() does it.
+     *
+     * @param generator generator positioned inside the message array
+     * @param args positional arguments, may be null
+     * @param kwargs keyword arguments, may be null
+     */
+    public static void writePayload(JsonGenerator generator, List<Object> args,
+                                    Map<String, Object> kwargs) throws IOException {
+        PassthruPayload payload = getPassthruPayload(args, kwargs);
+        if (payload != null) {
+            writePassthruPayload(generator, payload);
+        } else if (kwargs != null) {
+            if (args == null) {
+                // Empty args.
+                generator.writeStartArray(null, 0);
+                generator.writeEndArray();
+            } else {
+                writeValue(generator, args);
+            }
+            writeValue(generator, kwargs);
+        } else if (args != null) {
+            writeValue(generator, args);
+        }
+    }
+
+    /**
+     *
+     * Write a payload value. Lists, maps, strings, numbers and booleans are
+     * written directly, anything else (e.g. POJOs) goes through the
+     * generator's ObjectMapper, which costs a serializer lookup per call.
+     *
+     * @param generator generator to write to
+     * @param value the value to write, may be null
+     */
+    @SuppressWarnings("unchecked")
+    public static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Integer) {
+            generator.writeNumber((Integer) value);
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            generator.writeStartArray(list, list.size());
+            for (Object item: list) {
+                writeValue(generator, item);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Map && isStringKeyed((Map<?, ?>) value)) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            generator.writeStartObject(map, map.size());
+            for (Map.Entry<String, Object> entry: map.entrySet()) {
+                generator.writeFieldName(entry.getKey());
+                writeValue(generator, entry.getValue());
+            }
+            generator.writeEndObject();
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    private static boolean isStringKeyed(Map<?, ?> map) {
+        for (Object key: map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Returns the passthru payload if args consist of exactly one
+     * {@link PassthruPayload} and there are no kwargs, null otherwise.
+     */
+    public static PassthruPayload getPassthruPayload(List<Object> args,
+                                                     Map<String, Object> kwargs) {
+        if (kwargs == null && args != null && args.size() == 1
+                && args.get(0) instanceof PassthruPayload) {
+            return (PassthruPayload) args.get(0);
+        }
+        return null;
+    }
+
+    /**
+     *
+     * Parse the args item of a received message. A binary item is a
+     * payload in passthru mode, it's returned as the only arg without
+     * being decoded.
+     *
+     * @param item the args item of the raw message
+     * @param options the options or details of the message, which carry the ppt_* keys
+     * @return the args
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Object> parseArgs(Object item, Map<String, Object> options) {
+        byte[] data = null;
+        if (item instanceof byte[]) {
+            data = (byte[]) item;
+        } else if (item instanceof String && ((String) item).startsWith(JSON_BINARY_PREFIX)) {
+            // Binary in JSON is a base64 string behind a NUL character.
+            data = Base64.getDecoder().decode(((String) item).substring(1));
+        }
+        if (data == null) {
+            return (List<Object>) item;
+        }
+        String scheme = options == null ? null : (String) options.get("ppt_scheme");
+        if (scheme == null) {
+            throw new ProtocolError("Binary payload without ppt_scheme");
+        }
+        return Collections.singletonList(new PassthruPayload(
+                scheme,
+                (String) options.get("ppt_serializer"),
+                (String) options.get("ppt_cipher"),
+                (String) options.get("ppt_keyid"),
+                ByteBuffer.wrap(data)));
+    }
+
+    /**
+     *
+     * Add the ppt_* options of a passthru payload.
+     */
+    public static void putPassthruOptions(Map<String, Object> options, PassthruPayload payload) {
+        if (payload == null) {
+            return;
+        }
+        options.put("ppt_scheme", payload.scheme);
+        if (payload.serializer != null) {
+            options.put("ppt_serializer", payload.serializer);
+        }
+        if (payload.cipher != null) {
+            options.put("ppt_cipher", payload.cipher);
+        }
+        if (payload.keyID != null) {
+            options.put("ppt_keyid", payload.keyID);
+        }
+    }
+
+    /**
+     *
+     * Number of ppt_* options {@link #writePassthruOptions} writes.
+     */
+    public static int getPassthruOptionsCount(PassthruPayload payload) {
+        if (payload == null) {
+            return 0;
+        }
+        return 1 + (payload.serializer != null ? 1 : 0) + (payload.cipher != null ? 1 : 0)
+                + (payload.keyID != null ? 1 : 0);
+    }
+
+    /**
+     *
+     * Write the ppt_* options of a passthru payload into the options object.
+     */
+    public static void writePassthruOptions(JsonGenerator generator, PassthruPayload payload)
+            throws IOException {
+        if (payload == null) {
+            return;
+        }
+        generator.writeStringField("ppt_scheme", payload.scheme);
+        if (payload.serializer != null) {
+            generator.writeStringField("ppt_serializer", payload.serializer);
+        }
+        if (payload.cipher != null) {
+            generator.writeStringField("ppt_cipher", payload.cipher);
+        }
+        if (payload.keyID != null) {
+            generator.writeStringField("ppt_keyid", payload.keyID);
+        }
+    }
+
+    private static void writePassthruPayload(JsonGenerator generator, PassthruPayload payload)
+            throws IOException {
+        if (isJSON(generator)) {
+            generator.writeString(
+                    JSON_BINARY_PREFIX + Base64.getEncoder().encodeToString(payload.getBytes()));
+        } else {
+            generator.writeBinary(payload.getBytes());
+        }
+    }
+
+    private static boolean isJSON(JsonGenerator generator) {
+        return generator.getCodec() != null && JsonFactory.FORMAT_NAME_JSON.equals(
+                generator.getCodec().getFactory().getFormatName());
+    }
 }
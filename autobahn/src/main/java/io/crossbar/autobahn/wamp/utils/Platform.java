@@ -38,7 +38,8 @@ public class Platform {
 
     /**
      * Automatically returns a WebSocket based transport for WAMP based on the
-     * underlying platform.
+     * underlying platform, or a RawSocket transport for rs://, tcp:// and
+     * unix:// URLs.
      *
      * @param webSocketURL websocket url to use for initializing of the transport
      * @return an instance of ITransport suitable for the underlying platform.
@@ -49,7 +50,13 @@ public class Platform {
         Class<?> transportClass;
 
         try {
-            if (io.crossbar.autobahn.utils.Platform.isAndroid()) {
+            if (webSocketURL.startsWith("rs://") || webSocketURL.startsWith("tcp://")) {
+                transportClass = selectRawSocketTransport();
+            } else if (webSocketURL.startsWith("unix:")) {
+                // Not available on Android.
+                transportClass = Class.forName(
+                        "io.crossbar.autobahn.wamp.transports.UnixRawSocket");
+            } else if (io.crossbar.autobahn.utils.Platform.isAndroid()) {
                 transportClass = Class.forName("io.crossbar.autobahn.wamp.transports.WebSocket");
             } else {
                 transportClass = Class.forName("io.crossbar.autobahn.wamp.transports.NettyWebSocket");
@@ -61,6 +68,17 @@ public class Platform {
         }
     }
 
+    // The Netty based transport if it's available.
+    private static Class<?> selectRawSocketTransport() throws ClassNotFoundException {
+        if (!io.crossbar.autobahn.utils.Platform.isAndroid()) {
+            try {
+                return Class.forName("io.crossbar.autobahn.wamp.transports.NettyRawSocket");
+            } catch (ClassNotFoundException ignore) {
+            }
+        }
+        return Class.forName("io.crossbar.autobahn.wamp.transports.RawSocket");
+    }
+
     /**
      * Auto selects the Executor based on the underlying platform.
      * On Android we want autobahn to call the user facing code's
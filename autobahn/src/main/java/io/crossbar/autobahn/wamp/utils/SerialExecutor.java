@@ -0,0 +1,86 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.wamp.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.crossbar.autobahn.utils.ABLogger;
+import io.crossbar.autobahn.utils.IABLogger;
+
+/**
+ * Runs tasks one at a time, in the order they were submitted, on top of
+ * another executor.
+ * <p>
+ * Any number of these can share a thread pool: tasks of one instance never
+ * overlap or get reordered, while tasks of different instances still run in
+ * parallel. A task that throws is logged, and the tasks after it still run.
+ */
+public class SerialExecutor implements Executor {
+
+    private static final IABLogger LOGGER = ABLogger.getLogger(SerialExecutor.class.getName());
+
+    // Tasks run per turn on the underlying executor, before the thread is
+    // handed back so that a busy lane can't starve the others.
+    private static final int MAX_TASKS_PER_TURN = 64;
+
+    private final Executor mExecutor;
+    private final Queue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+    // Set while a drain is submitted to or running on mExecutor.
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private final Runnable mDrain = this::drain;
+
+    public SerialExecutor(Executor executor) {
+        mExecutor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        mTasks.add(task);
+        if (mScheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        try {
+            mExecutor.execute(mDrain);
+        } catch (RejectedExecutionException e) {
+            mScheduled.set(false);
+            throw e;
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+            Runnable task = mTasks.poll();
+            if (task == null) {
+                mScheduled.set(false);
+                // Someone may have added a task after the poll, and seen the
+                // flag still set. Take over again unless they already have.
+                if (mTasks.isEmpty() || !mScheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOGGER.w("Task failed", t);
+            }
+        }
+        schedule();
+    }
+}
@@ -28,6 +28,7 @@ public class Connection {
 
     private FrameProtocol mProtocol;
     private WebSocketOptions mOptions;
+    private volatile PerMessageDeflate mDeflate;
 
     public Connection(WebSocketOptions options) {
         mOptions = options;
@@ -48,19 +49,46 @@ public class Connection {
         if (payload.length > mOptions.getMaxMessagePayloadSize()) {
             throw new ParseFailed("message payload exceeds payload limit");
         }
+        PerMessageDeflate deflate = mDeflate;
+        if (deflate != null && deflate.shouldCompress(payload.length)) {
+            return mProtocol.sendText(deflate.compress(payload), true);
+        }
         return mProtocol.sendText(payload);
     }
 
+    private byte[] sendBinary(byte[] payload) throws ParseFailed {
+        if (payload.length > mOptions.getMaxMessagePayloadSize()) {
+            throw new ParseFailed("message payload exceeds payload limit");
+        }
+        PerMessageDeflate deflate = mDeflate;
+        if (deflate != null && deflate.shouldCompress(payload.length)) {
+            return mProtocol.sendBinary(deflate.compress(payload), true);
+        }
+        return mProtocol.sendBinary(payload);
+    }
+
+    /**
+     * Compress messages from now on, once the server agreed to
+     * permessage-deflate.
+     */
+    void setPerMessageDeflate(PerMessageDeflate deflate) {
+        mDeflate = deflate;
+    }
+
+    void close() {
+        PerMessageDeflate deflate = mDeflate;
+        if (deflate != null) {
+            deflate.end();
+        }
+    }
+
     public byte[] send(Message msg) throws ParseFailed {
         if (msg instanceof TextMessage) {
             return sendText(((TextMessage) msg).mPayload);
         } else if (msg instanceof RawTextMessage) {
             return sendText(((RawTextMessage) msg).mPayload);
         } else if (msg instanceof BinaryMessage) {
-            if (((BinaryMessage) msg).mPayload.length > mOptions.getMaxMessagePayloadSize()) {
-                throw new ParseFailed("message payload exceeds payload limit");
-            }
-            return mProtocol.sendBinary(((BinaryMessage) msg).mPayload);
+            return sendBinary(((BinaryMessage) msg).mPayload);
         } else if (msg instanceof Ping) {
             return mProtocol.ping(((Ping) msg).mPayload);
         } else if (msg instanceof Pong) {
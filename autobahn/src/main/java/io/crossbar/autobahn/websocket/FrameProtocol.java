@@ -28,14 +28,14 @@ public class FrameProtocol {
         if (payload != null && payload.length > 125) {
             throw new ParseFailed("ping payload exceeds 125 octets");
         }
-        return serializeFrame(9, payload, true, true);
+        return serializeFrame(9, payload, true, true, false);
     }
 
     public byte[] pong(byte[] payload) throws ParseFailed {
         if (payload != null && payload.length > 125) {
             throw new ParseFailed("ping payload exceeds 125 octets");
         }
-        return serializeFrame(10, payload, true, true);
+        return serializeFrame(10, payload, true, true, false);
     }
 
     public byte[] close(int code, String reason) throws ParseFailed {
@@ -56,27 +56,43 @@ public class FrameProtocol {
 
             payload[0] = (byte) ((code >> 8) & 0xff);
             payload[1] = (byte) (code & 0xff);
-            return serializeFrame(8, payload, true, true);
+            return serializeFrame(8, payload, true, true, false);
         } else {
-            return serializeFrame(8, null, true, true);
+            return serializeFrame(8, null, true, true, false);
         }
     }
 
     public byte[] sendBinary(byte[] payload) {
-        return serializeFrame(2, payload, true, true);
+        return sendBinary(payload, false);
     }
 
     public byte[] sendText(byte[] payload) {
-        return serializeFrame(1, payload, true, true);
+        return sendText(payload, false);
     }
 
-    private byte[] serializeFrame(int opcode, byte[] payload, boolean fin, boolean maskFrames) {
+    /**
+     * @param compressed true if the payload is compressed with the
+     *     negotiated permessage-deflate, which sets RSV1
+     */
+    public byte[] sendBinary(byte[] payload, boolean compressed) {
+        return serializeFrame(2, payload, true, true, compressed);
+    }
+
+    public byte[] sendText(byte[] payload, boolean compressed) {
+        return serializeFrame(1, payload, true, true, compressed);
+    }
+
+    private byte[] serializeFrame(int opcode, byte[] payload, boolean fin, boolean maskFrames,
+                                  boolean rsv1) {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         // first octet
         byte b0 = 0;
         if (fin) {
             b0 |= (byte) (1 << 7);
         }
+        if (rsv1) {
+            b0 |= (byte) (1 << 6);
+        }
         b0 |= (byte) opcode;
         buffer.write(b0);
 
@@ -72,6 +72,11 @@ public class Handshake {
             buffer.write(bytes("Sec-WebSocket-Version: 13"));
             buffer.write(bytes(CRLF));
 
+            if (message.mExtensions != null) {
+                buffer.write(bytes("Sec-WebSocket-Extensions: " + message.mExtensions));
+                buffer.write(bytes(CRLF));
+            }
+
             // Header injection
             if (message.mHeaderList != null) {
                 for (String key : message.mHeaderList.keySet()) {
@@ -0,0 +1,194 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.websocket;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.crossbar.autobahn.websocket.exceptions.WebSocketException;
+import io.crossbar.autobahn.websocket.types.WebSocketOptions;
+
+/**
+ * The permessage-deflate extension (RFC 7692): the offer of the opening
+ * handshake, the parameters the server agreed to, and the compression
+ * of messages sent and decompression of messages received.
+ * <p>
+ * java.util.zip always compresses with a 32K window, so
+ * client_max_window_bits is never offered. Any window the server picks
+ * can be decompressed.
+ * <p>
+ * The writer only compresses and the reader only decompresses, each
+ * with an instance of its own.
+ */
+class PerMessageDeflate {
+
+    static final String EXTENSION = "permessage-deflate";
+
+    // Sync flush marker, removed from the end of each compressed message.
+    private static final byte[] TAIL = {0, 0, (byte) 0xff, (byte) 0xff};
+
+    private final boolean mClientNoContextTakeover;
+    private final boolean mServerNoContextTakeover;
+    private final int mThreshold;
+
+    private Deflater mDeflater;
+    private Inflater mInflater;
+
+    PerMessageDeflate(boolean clientNoContextTakeover, boolean serverNoContextTakeover,
+                      int threshold) {
+        mClientNoContextTakeover = clientNoContextTakeover;
+        mServerNoContextTakeover = serverNoContextTakeover;
+        mThreshold = threshold;
+    }
+
+    /**
+     * @return value of the Sec-WebSocket-Extensions header of the opening
+     *     handshake
+     */
+    static String offer(WebSocketOptions options) {
+        StringBuilder offer = new StringBuilder(EXTENSION);
+        if (options.getDeflateClientNoContextTakeover()) {
+            offer.append("; client_no_context_takeover");
+        }
+        if (options.getDeflateServerNoContextTakeover()) {
+            offer.append("; server_no_context_takeover");
+        }
+        if (options.getDeflateServerMaxWindowBits() < 15) {
+            offer.append("; server_max_window_bits=").append(
+                    options.getDeflateServerMaxWindowBits());
+        }
+        return offer.toString();
+    }
+
+    /**
+     * Parses the Sec-WebSocket-Extensions header of the server.
+     *
+     * @return the negotiated extension, or null if the server declined
+     * @throws WebSocketException if the server answered with something
+     *     that wasn't offered
+     */
+    static PerMessageDeflate accept(String header, WebSocketOptions options)
+            throws WebSocketException {
+        if (header == null || header.trim().isEmpty()) {
+            return null;
+        }
+        String[] params = header.split(";");
+        if (!options.getPerMessageDeflate() || header.contains(",")
+                || !EXTENSION.equalsIgnoreCase(params[0].trim())) {
+            throw new WebSocketException("extension not offered: " + header);
+        }
+        // A compressor may always drop its context, whatever the server says.
+        boolean clientNoContextTakeover = options.getDeflateClientNoContextTakeover();
+        boolean serverNoContextTakeover = false;
+        for (int i = 1; i < params.length; i++) {
+            String[] param = params[i].split("=", 2);
+            String name = param[0].trim().toLowerCase();
+            if (name.equals("client_no_context_takeover")) {
+                clientNoContextTakeover = true;
+            } else if (name.equals("server_no_context_takeover")) {
+                serverNoContextTakeover = true;
+            } else if (name.equals("server_max_window_bits") && param.length == 2) {
+                // Nothing to do, the inflater handles any window size.
+                int bits;
+                try {
+                    bits = Integer.parseInt(param[1].trim().replace("\"", ""));
+                } catch (NumberFormatException e) {
+                    bits = 0;
+                }
+                if (bits < 8 || bits > 15) {
+                    throw new WebSocketException("invalid server_max_window_bits " + param[1]);
+                }
+            } else {
+                throw new WebSocketException("unsupported permessage-deflate parameter "
+                        + params[i].trim());
+            }
+        }
+        return new PerMessageDeflate(clientNoContextTakeover, serverNoContextTakeover,
+                options.getDeflateThreshold());
+    }
+
+    boolean shouldCompress(int length) {
+        return length >= mThreshold;
+    }
+
+    byte[] compress(byte[] payload) {
+        if (mDeflater == null) {
+            mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        mDeflater.setInput(payload);
+        byte[] output = new byte[payload.length / 2 + 64];
+        int size = 0;
+        while (true) {
+            size += mDeflater.deflate(output, size, output.length - size, Deflater.SYNC_FLUSH);
+            if (size < output.length) {
+                break;
+            }
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        if (mClientNoContextTakeover) {
+            mDeflater.reset();
+        }
+        return Arrays.copyOf(output, size - TAIL.length);
+    }
+
+    byte[] decompress(byte[] payload, int maxSize) throws WebSocketException {
+        if (mInflater == null) {
+            mInflater = new Inflater(true);
+        }
+        byte[] output = new byte[Math.min(Math.max(payload.length * 4, 64), maxSize + 1)];
+        int size = 0;
+        try {
+            for (byte[] input: new byte[][] {payload, TAIL}) {
+                mInflater.setInput(input);
+                while (!mInflater.finished()) {
+                    if (size == output.length) {
+                        if (size > maxSize) {
+                            throw new WebSocketException("message payload too large");
+                        }
+                        output = Arrays.copyOf(output, Math.min(size * 2, maxSize + 1));
+                    }
+                    int inflated = mInflater.inflate(output, size, output.length - size);
+                    size += inflated;
+                    if (inflated == 0) {
+                        if (mInflater.needsDictionary()) {
+                            throw new WebSocketException("compressed message needs a dictionary");
+                        }
+                        if (mInflater.needsInput()) {
+                            break;
+                        }
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new WebSocketException("invalid compressed message: " + e.getMessage());
+        }
+        if (size > maxSize) {
+            throw new WebSocketException("message payload too large");
+        }
+        if (mServerNoContextTakeover || mInflater.finished()) {
+            // A final block ends the context as well.
+            mInflater.reset();
+        }
+        return Arrays.copyOf(output, size);
+    }
+
+    void end() {
+        if (mDeflater != null) {
+            mDeflater.end();
+        }
+        if (mInflater != null) {
+            mInflater.end();
+        }
+    }
+}
@@ -18,12 +18,15 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocket;
@@ -61,9 +64,8 @@ public class WebSocketConnection implements IWebSocket {
     private IThreadMessenger mMessenger;
 
     private WebSocketReader mReader;
-    private ExecutorService mWriterThread;
-    private Connection mWebSocket;
-    private BufferedOutputStream mBufferedOutputStream;
+    // Replaced on every connect, see Writer.
+    private volatile Writer mWriter;
 
     private Socket mSocket;
     private URI mWsUri;
@@ -169,6 +171,9 @@ public class WebSocketConnection implements IWebSocket {
                     hs.mQuery = mWsQuery;
                     hs.mSubprotocols = mWsSubprotocols;
                     hs.mHeaderList = mWsHeaders;
+                    if (mOptions.getPerMessageDeflate()) {
+                        hs.mExtensions = PerMessageDeflate.offer(mOptions);
+                    }
                     sendMessage(hs);
                     mPrevConnected = true;
 
@@ -206,6 +211,19 @@ public class WebSocketConnection implements IWebSocket {
         }
     }
 
+    /**
+     * Sends a message like {@link #sendMessage(byte[], boolean)} and calls
+     * the listener on the writer thread once it was flushed to the socket,
+     * with null, or with the exception that kept it from being written.
+     */
+    public void sendMessage(byte[] payload, boolean isBinary, Consumer<Exception> onWritten) {
+        if (isBinary) {
+            sendMessage(new BinaryMessage(payload), onWritten);
+        } else {
+            sendMessage(new RawTextMessage(payload), onWritten);
+        }
+    }
+
     @Override
     public void sendPing() {
         sendMessage(new Ping());
@@ -229,6 +247,17 @@ public class WebSocketConnection implements IWebSocket {
         LOGGER.d("WebSocket Pong sent");
     }
 
+    /**
+     * Whether this is called on the thread that writes to the socket, e.g.
+     * from a listener notified once a message was written. Senders on that
+     * thread must not wait for the send buffer to drain, only the writer
+     * drains it.
+     */
+    public boolean isWriterThread() {
+        Writer writer = mWriter;
+        return writer != null && Thread.currentThread() == writer.mThread;
+    }
+
     @Override
     public boolean isConnected() {
         return mSocket != null && mSocket.isConnected() && !mSocket.isClosed();
@@ -264,10 +293,14 @@ public class WebSocketConnection implements IWebSocket {
     }
 
     private void closeWriterThread() {
-        if (mWriterThread != null) {
+        Writer writer = mWriter;
+        if (writer != null) {
             try {
-                mWriterThread.shutdown();
-                mWriterThread.awaitTermination(5, TimeUnit.SECONDS);
+                writer.mExecutor.shutdown();
+                if (writer.mExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    // Nothing is being compressed anymore.
+                    writer.mConnection.close();
+                }
             } catch (InterruptedException e) {
                 LOGGER.v(e.getMessage(), e);
             }
@@ -645,6 +678,17 @@ public class WebSocketConnection implements IWebSocket {
 
                     LOGGER.d("opening handshake received");
 
+                    try {
+                        // The reader already checked the answer.
+                        mWriter.mConnection.setPerMessageDeflate(PerMessageDeflate.accept(getOrDefault(
+                                serverHandshake.headers, "sec-websocket-extensions", null),
+                                mOptions));
+                    } catch (WebSocketException e) {
+                        failConnection(IWebSocketConnectionHandler.CLOSE_PROTOCOL_ERROR,
+                                e.getMessage());
+                        return;
+                    }
+
                     if (mWsHandler != null) {
                         String protocol = getOrDefault(serverHandshake.headers,
                                 "sec-websocket-protocol", null);
@@ -705,26 +749,59 @@ public class WebSocketConnection implements IWebSocket {
 
 
     /**
-     * Create WebSocket background writer.
+     * Writes messages to the socket on a thread of its own. A new one is
+     * created on every connect, so tasks of a previous connection that are
+     * still running after its executor was shut down only ever touch their
+     * own state.
      */
-    private void createWriter() throws IOException {
-        mWriterThread = Executors.newSingleThreadExecutor();
-        mBufferedOutputStream = new BufferedOutputStream(mSocket.getOutputStream(),
-                mOptions.getMaxFramePayloadSize() + 14);
-        mWebSocket = new Connection(mOptions);
-        LOGGER.d("WS writer created and started");
-    }
-
-    private void sendMessage(io.crossbar.autobahn.websocket.messages.Message message) {
-        if (mWriterThread == null || mWriterThread.isShutdown()) {
-            return;
+    private class Writer {
+        private final ScheduledExecutorService mExecutor;
+        // The thread behind mExecutor, see isWriterThread().
+        private volatile Thread mThread;
+        private final BufferedOutputStream mStream;
+        private final Connection mConnection;
+
+        // Messages submitted but not yet written. The stream is only
+        // flushed once this drops to zero, so a burst of messages goes
+        // out in a few socket writes instead of one per message.
+        private final AtomicInteger mQueuedMessages = new AtomicInteger();
+        // Only touched on the writer thread.
+        private boolean mFlushScheduled;
+        // Called once the messages written to the stream are flushed.
+        private final List<Consumer<Exception>> mWriteListeners = new ArrayList<>();
+
+        Writer() throws IOException {
+            mExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                mThread = thread;
+                return thread;
+            });
+            mStream = new BufferedOutputStream(mSocket.getOutputStream(),
+                    mOptions.getMaxFramePayloadSize() + 14);
+            mConnection = new Connection(mOptions);
         }
-        mWriterThread.submit(new Runnable() {
-            @Override
-            public void run() {
+
+        void send(io.crossbar.autobahn.websocket.messages.Message message,
+                  Consumer<Exception> onWritten) {
+            if (mExecutor.isShutdown()) {
+                if (onWritten != null) {
+                    onWritten.accept(new SocketException("WebSocket is not connected"));
+                }
+                return;
+            }
+            mQueuedMessages.incrementAndGet();
+            mExecutor.submit(() -> {
                 try {
-                    mBufferedOutputStream.write(mWebSocket.send(message));
-                    mBufferedOutputStream.flush();
+                    if (onWritten != null) {
+                        mWriteListeners.add(onWritten);
+                    }
+                    mStream.write(mConnection.send(message));
+                    if (message instanceof Close) {
+                        flush();
+                    } else if (mQueuedMessages.get() == 1) {
+                        // Nothing else is waiting behind this message.
+                        scheduleFlush();
+                    }
                     if (message instanceof Close) {
                         Close msg = (Close) message;
                         if (msg.mIsReply) {
@@ -733,13 +810,84 @@ public class WebSocketConnection implements IWebSocket {
                     }
                 } catch (SocketException e) {
                     LOGGER.d("run() : SocketException (" + e.toString() + ")");
+                    notifyWritten(e);
                     mMessenger.notify(new ConnectionLost(null));
                 } catch (ParseFailed | IOException e) {
                     LOGGER.w(e.getMessage(), e);
+                    notifyWritten(e);
                     mMessenger.notify(new Error(e));
+                } finally {
+                    mQueuedMessages.decrementAndGet();
+                }
+            });
+        }
+
+        // Called on the writer thread.
+        private void flush() throws IOException {
+            mStream.flush();
+            notifyWritten(null);
+        }
+
+        // Called on the writer thread.
+        private void notifyWritten(Exception e) {
+            for (Consumer<Exception> listener: mWriteListeners) {
+                try {
+                    listener.accept(e);
+                } catch (RuntimeException listenerError) {
+                    LOGGER.w(listenerError.getMessage(), listenerError);
                 }
             }
-        });
+            mWriteListeners.clear();
+        }
+
+        // Called on the writer thread once the queue is drained.
+        private void scheduleFlush() throws IOException {
+            int delay = mOptions.getMaxFlushDelay();
+            if (delay <= 0) {
+                flush();
+            } else if (!mFlushScheduled) {
+                // Give more messages a chance to join the write.
+                mFlushScheduled = true;
+                mExecutor.schedule(() -> {
+                    mFlushScheduled = false;
+                    try {
+                        flush();
+                    } catch (SocketException e) {
+                        LOGGER.d("flush() : SocketException (" + e.toString() + ")");
+                        notifyWritten(e);
+                        mMessenger.notify(new ConnectionLost(null));
+                    } catch (IOException e) {
+                        LOGGER.w(e.getMessage(), e);
+                        notifyWritten(e);
+                        mMessenger.notify(new Error(e));
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Create WebSocket background writer.
+     */
+    private void createWriter() throws IOException {
+        mWriter = new Writer();
+        LOGGER.d("WS writer created and started");
+    }
+
+    private void sendMessage(io.crossbar.autobahn.websocket.messages.Message message) {
+        sendMessage(message, null);
+    }
+
+    private void sendMessage(io.crossbar.autobahn.websocket.messages.Message message,
+                             Consumer<Exception> onWritten) {
+        Writer writer = mWriter;
+        if (writer == null) {
+            if (onWritten != null) {
+                onWritten.accept(new SocketException("WebSocket is not connected"));
+            }
+            return;
+        }
+        writer.send(message, onWritten);
     }
 
     /**
@@ -72,6 +72,10 @@ class WebSocketReader extends Thread {
     private boolean mInsideMessage = false;
     private int mMessageOpcode;
 
+    /// Negotiated permessage-deflate, null if none.
+    private PerMessageDeflate mDeflate;
+    private boolean mMessageCompressed;
+
     /// Frame currently being received.
     private FrameHeader mFrameHeader;
 
@@ -152,7 +156,13 @@ class WebSocketReader extends Thread {
                 // now check protocol compliance
 
                 if (rsv != 0) {
-                    throw new WebSocketException("RSV != 0 and no extension negotiated");
+                    // RSV1 marks the first frame of a compressed message.
+                    if (rsv != 4 || mDeflate == null) {
+                        throw new WebSocketException("RSV != 0 and no extension negotiated");
+                    }
+                    if (opcode == 0 || opcode > 7) {
+                        throw new WebSocketException("RSV1 set on a control or continuation frame");
+                    }
                 }
 
                 if (masked) {
@@ -359,6 +369,7 @@ class WebSocketReader extends Thread {
                         // new message started
                         mInsideMessage = true;
                         mMessageOpcode = mFrameHeader.mOpcode;
+                        mMessageCompressed = mFrameHeader.mReserved != 0;
                         if (mMessageOpcode == 1 && mOptions.getValidateIncomingUtf8()) {
                             mUtf8Validator.reset();
                         }
@@ -371,8 +382,8 @@ class WebSocketReader extends Thread {
                             throw new WebSocketException("message payload too large");
                         }
 
-                        // validate incoming UTF-8
-                        if (mMessageOpcode == 1 && mOptions.getValidateIncomingUtf8() && !mUtf8Validator.validate(framePayload)) {
+                        // validate incoming UTF-8, compressed messages once inflated
+                        if (mMessageOpcode == 1 && !mMessageCompressed && mOptions.getValidateIncomingUtf8() && !mUtf8Validator.validate(framePayload)) {
                             throw new WebSocketException("invalid UTF-8 in text message payload");
                         }
 
@@ -383,6 +394,14 @@ class WebSocketReader extends Thread {
                     // on final frame ..
                     if (mFrameHeader.mFin) {
 
+                        byte[] payload = mMessagePayload.toByteArray();
+                        if (mMessageCompressed) {
+                            payload = mDeflate.decompress(payload, mOptions.getMaxMessagePayloadSize());
+                            if (mMessageOpcode == 1 && mOptions.getValidateIncomingUtf8() && !mUtf8Validator.validate(payload)) {
+                                throw new WebSocketException("invalid UTF-8 in text message payload");
+                            }
+                        }
+
                         if (mMessageOpcode == 1) {
 
                             // verify that UTF-8 ends on codepoint
@@ -394,19 +413,19 @@ class WebSocketReader extends Thread {
                             if (mOptions.getReceiveTextMessagesRaw()) {
 
                                 // dispatch WS text message as raw (but validated) UTF-8
-                                onRawTextMessage(mMessagePayload.toByteArray());
+                                onRawTextMessage(payload);
 
                             } else {
 
                                 // dispatch WS text message as Java String (previously already validated)
-                                String s = new String(mMessagePayload.toByteArray(), "UTF-8");
+                                String s = new String(payload, "UTF-8");
                                 onTextMessage(s);
                             }
 
                         } else if (mMessageOpcode == 2) {
 
                             // dispatch WS binary message
-                            onBinaryMessage(mMessagePayload.toByteArray());
+                            onBinaryMessage(payload);
 
                         } else {
 
@@ -625,6 +644,14 @@ class WebSocketReader extends Thread {
                     // FIXME: verify websocket key
                 }
 
+                try {
+                    mDeflate = PerMessageDeflate.accept(
+                            handshakeParams.get("sec-websocket-extensions"), mOptions);
+                } catch (WebSocketException e) {
+                    emitServerError(e.getMessage());
+                    break;
+                }
+
                 System.arraycopy(mMessageData, pos + 4, mMessageData, 0, mMessageData.length - (pos + 4));
                 mPosition -= pos + 4;
 
@@ -742,6 +769,9 @@ class WebSocketReader extends Thread {
         } finally {
 
             mStopped = true;
+            if (mDeflate != null) {
+                mDeflate.end();
+            }
         }
 
         LOGGER.d("Ended");
@@ -11,6 +11,7 @@ public class ClientHandshake extends Message {
     public String mOrigin;
     public String[] mSubprotocols;
     public Map<String, String> mHeaderList;
+    public String mExtensions;
 
     public ClientHandshake(String host) {
         mHost = host;
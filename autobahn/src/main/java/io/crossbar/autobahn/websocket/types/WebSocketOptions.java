@@ -31,6 +31,12 @@ public class WebSocketOptions {
     private String[] mTlsProtocols;
     private int mAutoPingInterval;
     private int mAutoPingTimeout;
+    private int mMaxFlushDelay;
+    private boolean mPerMessageDeflate;
+    private int mDeflateThreshold;
+    private boolean mDeflateClientNoContextTakeover;
+    private boolean mDeflateServerNoContextTakeover;
+    private int mDeflateServerMaxWindowBits;
 
     /**
      * Construct default options.
@@ -49,6 +55,12 @@ public class WebSocketOptions {
         mTlsProtocols = null;
         mAutoPingInterval = 10;
         mAutoPingTimeout = 5;
+        mMaxFlushDelay = 0;
+        mPerMessageDeflate = false;
+        mDeflateThreshold = 256;
+        mDeflateClientNoContextTakeover = false;
+        mDeflateServerNoContextTakeover = false;
+        mDeflateServerMaxWindowBits = 15;
     }
 
     /**
@@ -70,6 +82,12 @@ public class WebSocketOptions {
         mTlsProtocols = other.mTlsProtocols;
         mAutoPingInterval = other.mAutoPingInterval;
         mAutoPingTimeout = other.mAutoPingTimeout;
+        mMaxFlushDelay = other.mMaxFlushDelay;
+        mPerMessageDeflate = other.mPerMessageDeflate;
+        mDeflateThreshold = other.mDeflateThreshold;
+        mDeflateClientNoContextTakeover = other.mDeflateClientNoContextTakeover;
+        mDeflateServerNoContextTakeover = other.mDeflateServerNoContextTakeover;
+        mDeflateServerMaxWindowBits = other.mDeflateServerMaxWindowBits;
     }
 
     /**
@@ -302,4 +320,118 @@ public class WebSocketOptions {
     public int getAutoPingTimeout() {
         return mAutoPingTimeout;
     }
+
+    /**
+     * Set the maximum time outgoing messages may be held back, so that
+     * more of them can go out in the same socket write.
+     * <p>
+     * Messages queued while the writer is busy are always written
+     * together. With a delay, the writer also waits up to that long for
+     * further messages before flushing.
+     * <p>
+     * DEFAULT: 0, flush as soon as no more messages are queued.
+     *
+     * @param millis Maximum delay in milliseconds.
+     */
+    public void setMaxFlushDelay(int millis) {
+        if (millis >= 0) {
+            mMaxFlushDelay = millis;
+        }
+    }
+
+    /**
+     * Get the maximum time outgoing messages may be held back.
+     *
+     * @return Maximum delay in milliseconds.
+     */
+    public int getMaxFlushDelay() {
+        return mMaxFlushDelay;
+    }
+
+    /**
+     * Offer the permessage-deflate extension (RFC 7692) in the opening
+     * handshake, so that messages are compressed if the server agrees.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to offer compression.
+     */
+    public void setPerMessageDeflate(boolean enabled) {
+        mPerMessageDeflate = enabled;
+    }
+
+    public boolean getPerMessageDeflate() {
+        return mPerMessageDeflate;
+    }
+
+    /**
+     * Set the size below which messages are sent uncompressed, even when
+     * permessage-deflate was negotiated. Small messages hardly shrink
+     * and aren't worth the time.
+     * <p>
+     * DEFAULT: 256
+     *
+     * @param size Minimum size in octets of a message to compress.
+     */
+    public void setDeflateThreshold(int size) {
+        if (size >= 0) {
+            mDeflateThreshold = size;
+        }
+    }
+
+    public int getDeflateThreshold() {
+        return mDeflateThreshold;
+    }
+
+    /**
+     * Offer client_no_context_takeover: the client compresses every
+     * message on its own, which needs less memory on both sides but
+     * compresses similar messages less.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to reset the compressor after each message.
+     */
+    public void setDeflateClientNoContextTakeover(boolean enabled) {
+        mDeflateClientNoContextTakeover = enabled;
+    }
+
+    public boolean getDeflateClientNoContextTakeover() {
+        return mDeflateClientNoContextTakeover;
+    }
+
+    /**
+     * Request server_no_context_takeover: the server compresses every
+     * message on its own.
+     * <p>
+     * DEFAULT: false
+     *
+     * @param enabled True to request it.
+     */
+    public void setDeflateServerNoContextTakeover(boolean enabled) {
+        mDeflateServerNoContextTakeover = enabled;
+    }
+
+    public boolean getDeflateServerNoContextTakeover() {
+        return mDeflateServerNoContextTakeover;
+    }
+
+    /**
+     * Request server_max_window_bits, the size of the LZ77 window of the
+     * server's compressor, which bounds the memory it needs per
+     * connection. Not requested at 15.
+     * <p>
+     * DEFAULT: 15
+     *
+     * @param bits Base-2 logarithm of the window size, 8 to 15.
+     */
+    public void setDeflateServerMaxWindowBits(int bits) {
+        if (bits >= 8 && bits <= 15) {
+            mDeflateServerMaxWindowBits = bits;
+        }
+    }
+
+    public int getDeflateServerMaxWindowBits() {
+        return mDeflateServerMaxWindowBits;
+    }
 }
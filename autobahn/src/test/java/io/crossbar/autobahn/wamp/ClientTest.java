@@ -0,0 +1,378 @@
+package io.crossbar.autobahn.wamp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.crossbar.autobahn.wamp.exceptions.ApplicationError;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Goodbye;
+import io.crossbar.autobahn.wamp.messages.Hello;
+import io.crossbar.autobahn.wamp.messages.Register;
+import io.crossbar.autobahn.wamp.messages.Subscribe;
+import io.crossbar.autobahn.wamp.messages.Unregister;
+import io.crossbar.autobahn.wamp.messages.Unsubscribe;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.ExitInfo;
+import io.crossbar.autobahn.wamp.types.Registration;
+import io.crossbar.autobahn.wamp.types.SessionDetails;
+import io.crossbar.autobahn.wamp.types.Subscription;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.crossbar.autobahn.wamp.utils.SerialExecutor;
+
+public class ClientTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    // Not the common pool, which other tests may keep busy.
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    // Joined transports, in order.
+    private final BlockingQueue<FakeTransport> mJoined = new LinkedBlockingQueue<>();
+
+    // A router in memory that welcomes every HELLO and answers GOODBYE.
+    private class FakeTransport implements ITransport {
+
+        private final boolean mReachable;
+        private final Map<String, Long> mSubscriptions = new ConcurrentHashMap<>();
+        // Delivers in order, like a socket.
+        private final Executor mReader = new SerialExecutor(mExecutor);
+        private volatile ITransportHandler mHandler;
+        private volatile boolean mOpen;
+        private volatile List<byte[]> mHeld;
+        final BlockingQueue<List<Object>> mReceived = new LinkedBlockingQueue<>();
+        volatile int mConnects;
+
+        FakeTransport(boolean reachable) {
+            mReachable = reachable;
+        }
+
+        @Override
+        public void connect(ITransportHandler transportHandler) {
+            connect(transportHandler, null);
+        }
+
+        @Override
+        public void connect(ITransportHandler transportHandler, TransportOptions options) {
+            mConnects++;
+            mHandler = transportHandler;
+            mReader.execute(() -> {
+                if (!mReachable) {
+                    transportHandler.onDisconnect(false);
+                    return;
+                }
+                mOpen = true;
+                try {
+                    transportHandler.onConnect(this, new JSONSerializer());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        @Override
+        public void send(byte[] payload, boolean isBinary) {
+            List<Object> message;
+            try {
+                message = MAPPER.readValue(payload, List.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            mReceived.add(message);
+            Object request = message.get(1);
+            switch ((Integer) message.get(0)) {
+                case Hello.MESSAGE_TYPE:
+                    mJoined.add(this);
+                    Map<String, Object> details = new HashMap<>();
+                    details.put("realm", "realm1");
+                    details.put("roles", Collections.singletonMap("broker", Collections.emptyMap()));
+                    reply(2, 1234, details);
+                    break;
+                case Goodbye.MESSAGE_TYPE:
+                    reply(6, Collections.emptyMap(), "wamp.close.goodbye_and_out");
+                    break;
+                case Subscribe.MESSAGE_TYPE:
+                    long subscription = NEXT_ID.incrementAndGet();
+                    mSubscriptions.put((String) message.get(3), subscription);
+                    reply(33, request, subscription);
+                    break;
+                case Unsubscribe.MESSAGE_TYPE:
+                    reply(35, request);
+                    break;
+                case Register.MESSAGE_TYPE:
+                    reply(65, request, NEXT_ID.incrementAndGet());
+                    break;
+                case Unregister.MESSAGE_TYPE:
+                    reply(67, request);
+                    break;
+            }
+        }
+
+        private void reply(Object... message) {
+            byte[] payload;
+            try {
+                payload = MAPPER.writeValueAsBytes(Arrays.asList(message));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            List<byte[]> held = mHeld;
+            if (held != null && ((Integer) message[0] == 33 || (Integer) message[0] == 65)) {
+                held.add(payload);
+                return;
+            }
+            mReader.execute(() -> {
+                try {
+                    mHandler.onMessage(payload, false);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        // Holds back the replies to SUBSCRIBE and REGISTER.
+        void hold() {
+            mHeld = new CopyOnWriteArrayList<>();
+        }
+
+        void release() {
+            List<byte[]> held = mHeld;
+            mHeld = null;
+            for (byte[] payload: held) {
+                mReader.execute(() -> {
+                    try {
+                        mHandler.onMessage(payload, false);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+        }
+
+        void publish(String topic, Object arg) {
+            reply(36, mSubscriptions.get(topic), 1, Collections.emptyMap(),
+                    Collections.singletonList(arg));
+        }
+
+        void lose() {
+            List<byte[]> held = mHeld;
+            if (held != null) {
+                held.clear();
+            }
+            mOpen = false;
+            mHandler.onLeave(new CloseDetails(CloseDetails.REASON_TRANSPORT_LOST, null));
+            mHandler.onDisconnect(false);
+        }
+
+        // The router shuts down.
+        void goodbye() {
+            reply(6, Collections.emptyMap(), "wamp.close.system_shutdown");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return mOpen;
+        }
+
+        @Override
+        public void close() {
+            if (mOpen) {
+                mOpen = false;
+                mHandler.onDisconnect(true);
+            }
+        }
+
+        @Override
+        public void abort() {
+            close();
+        }
+
+        @Override
+        public void setOptions(TransportOptions options) {
+        }
+
+        @Override
+        public TransportOptions getOptions() {
+            return null;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        FakeTransport up1 = new FakeTransport(true);
+        FakeTransport up2 = new FakeTransport(true);
+        FakeTransport down = new FakeTransport(false);
+        Session session = new Session(mExecutor);
+        BlockingQueue<Long> sessionJoins = new LinkedBlockingQueue<>();
+        session.addOnJoinListener((s, details) -> sessionJoins.add(details.sessionID));
+        Client client = new Client(Arrays.asList(up1, down, up2), mExecutor);
+        client.add(session, "realm1");
+        CompletableFuture<ExitInfo> exit = client.connect();
+
+        FakeTransport joined = mJoined.poll(5, TimeUnit.SECONDS);
+        assertTrue(joined == up1 || joined == up2);
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+        joined.lose();
+        // Rejoined through the other router, skipping the one that is down.
+        FakeTransport rejoined = mJoined.poll(5, TimeUnit.SECONDS);
+        assertTrue(rejoined == up1 || rejoined == up2);
+        assertNotSame(joined, rejoined);
+        assertTrue(down.mConnects <= 1);
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+        session.leave();
+        assertEquals(0, exit.get(5, TimeUnit.SECONDS).code);
+    }
+
+    @Test
+    public void testAllFailed() throws Exception {
+        FakeTransport up = new FakeTransport(true);
+        FakeTransport down = new FakeTransport(false);
+        Session session = new Session(mExecutor);
+        CompletableFuture<SessionDetails> joined = new CompletableFuture<>();
+        session.addOnJoinListener((s, details) -> joined.complete(details));
+        Client client = new Client(Arrays.asList(up, down), mExecutor);
+        client.add(session, "realm1");
+        CompletableFuture<ExitInfo> exit = client.connect();
+
+        joined.get(5, TimeUnit.SECONDS);
+        up.lose();
+        assertEquals(1, exit.get(5, TimeUnit.SECONDS).code);
+        // Tried once more after the loss, unless it already failed first.
+        assertTrue(down.mConnects >= 1 && down.mConnects <= 2);
+    }
+
+    private static List<Object> next(FakeTransport transport, int messageType)
+            throws InterruptedException {
+        while (true) {
+            List<Object> message = transport.mReceived.poll(5, TimeUnit.SECONDS);
+            assertTrue(message != null);
+            if ((Integer) message.get(0) == messageType) {
+                return message;
+            }
+        }
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        FakeTransport router = new FakeTransport(true);
+        Session session = new Session(mExecutor);
+        BlockingQueue<Long> sessionJoins = new LinkedBlockingQueue<>();
+        session.addOnJoinListener((s, details) -> sessionJoins.add(details.sessionID));
+        Client client = new Client(router, mExecutor);
+        client.setMaxRetries(-1);
+        client.setInitialRetryDelay(10);
+        client.add(session, "realm1");
+        CompletableFuture<ExitInfo> exit = client.connect();
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        Subscription subscription = session.subscribe("com.example.topic",
+                (List<Object> args) -> events.add(args.get(0))).get(5, TimeUnit.SECONDS);
+        Registration registration = session.register("com.example.procedure",
+                () -> 42).get(5, TimeUnit.SECONDS);
+        // Lost before the router answered.
+        router.hold();
+        CompletableFuture<Subscription> pending = session.subscribe("com.example.other",
+                () -> { });
+        next(router, Subscribe.MESSAGE_TYPE);
+        router.lose();
+        try {
+            pending.get(5, TimeUnit.SECONDS);
+            assertTrue(false);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ApplicationError);
+        }
+
+        // Both requests are sent before either is answered.
+        next(router, Hello.MESSAGE_TYPE);
+        assertEquals("com.example.topic", next(router, Subscribe.MESSAGE_TYPE).get(3));
+        assertEquals("com.example.procedure", next(router, Register.MESSAGE_TYPE).get(3));
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+        router.release();
+
+        // Under the ID the router picked this time.
+        router.publish("com.example.topic", "hello");
+        assertEquals("hello", events.poll(5, TimeUnit.SECONDS));
+        assertEquals(0, (int) subscription.unsubscribe().get(5, TimeUnit.SECONDS));
+        assertEquals((long) router.mSubscriptions.get("com.example.topic"),
+                ((Number) next(router, Unsubscribe.MESSAGE_TYPE).get(2)).longValue());
+        assertEquals(0, (int) registration.unregister().get(5, TimeUnit.SECONDS));
+        assertFalse(registration.registration
+                == ((Number) next(router, Unregister.MESSAGE_TYPE).get(2)).longValue());
+
+        session.leave();
+        assertEquals(0, exit.get(5, TimeUnit.SECONDS).code);
+        assertEquals(2, router.mConnects);
+    }
+
+    @Test
+    public void testRejoinAfterGoodbye() throws Exception {
+        FakeTransport router = new FakeTransport(true);
+        Session session = new Session(mExecutor);
+        BlockingQueue<Long> sessionJoins = new LinkedBlockingQueue<>();
+        session.addOnJoinListener((s, details) -> sessionJoins.add(details.sessionID));
+        Client client = new Client(router, mExecutor);
+        client.setMaxRetries(-1);
+        client.setInitialRetryDelay(10);
+        client.add(session, "realm1");
+        CompletableFuture<ExitInfo> exit = client.connect();
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        Subscription subscription = session.subscribe("com.example.topic",
+                (List<Object> args) -> events.add(args.get(0))).get(5, TimeUnit.SECONDS);
+        next(router, Subscribe.MESSAGE_TYPE);
+
+        router.goodbye();
+        next(router, Hello.MESSAGE_TYPE);
+        assertEquals("com.example.topic", next(router, Subscribe.MESSAGE_TYPE).get(3));
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+
+        // Closed cleanly without a GOODBYE.
+        router.close();
+        next(router, Hello.MESSAGE_TYPE);
+        assertEquals("com.example.topic", next(router, Subscribe.MESSAGE_TYPE).get(3));
+        assertEquals(1234L, (long) sessionJoins.poll(5, TimeUnit.SECONDS));
+        router.publish("com.example.topic", "hello");
+        assertEquals("hello", events.poll(5, TimeUnit.SECONDS));
+        assertTrue(subscription.isActive());
+        assertFalse(exit.isDone());
+
+        session.leave();
+        assertEquals(0, exit.get(5, TimeUnit.SECONDS).code);
+        assertEquals(3, router.mConnects);
+        session.getDisconnectFuture().get(5, TimeUnit.SECONDS);
+        assertFalse(subscription.isActive());
+    }
+}
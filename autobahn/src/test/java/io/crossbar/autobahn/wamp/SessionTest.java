@@ -0,0 +1,401 @@
+package io.crossbar.autobahn.wamp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.exceptions.ApplicationError;
+import io.crossbar.autobahn.wamp.exceptions.SendBufferFullError;
+import io.crossbar.autobahn.wamp.interfaces.IInvocationHandler;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Cancel;
+import io.crossbar.autobahn.wamp.messages.Error;
+import io.crossbar.autobahn.wamp.messages.Hello;
+import io.crossbar.autobahn.wamp.messages.Interrupt;
+import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.messages.Register;
+import io.crossbar.autobahn.wamp.messages.Subscribe;
+import io.crossbar.autobahn.wamp.messages.Yield;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.LazyList;
+import io.crossbar.autobahn.wamp.types.CallOptions;
+import io.crossbar.autobahn.wamp.types.CallResult;
+import io.crossbar.autobahn.wamp.types.InvocationDetails;
+import io.crossbar.autobahn.wamp.types.InvocationResult;
+import io.crossbar.autobahn.wamp.types.Publication;
+import io.crossbar.autobahn.wamp.types.PublishOptions;
+import io.crossbar.autobahn.wamp.types.Subscription;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+
+public class SessionTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    // Messages the session sent to the router.
+    private final BlockingQueue<List<Object>> mSent = new LinkedBlockingQueue<>();
+    // Thrown by the transport instead of sending, if set.
+    private volatile RuntimeException mSendError;
+    // The args that typed handlers were bound from.
+    private final BlockingQueue<List<Object>> mConverted = new LinkedBlockingQueue<>();
+    private Session mSession;
+
+    public static class Point {
+        public int x;
+        public int y;
+    }
+
+    private final JSONSerializer mSerializer = new JSONSerializer() {
+        @Override
+        public <T> T convertArg(List<Object> args, int index, Class<T> toValueTypeClass) {
+            mConverted.add(args);
+            return super.convertArg(args, index, toValueTypeClass);
+        }
+    };
+
+    private final ITransport mTransport = new ITransport() {
+        @Override
+        public void send(byte[] payload, boolean isBinary) {
+            if (mSendError != null) {
+                throw mSendError;
+            }
+            try {
+                mSent.add(MAPPER.readValue(payload, List.class));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void connect(ITransportHandler transportHandler) {
+        }
+
+        @Override
+        public void connect(ITransportHandler transportHandler, TransportOptions options) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void abort() {
+        }
+
+        @Override
+        public void setOptions(TransportOptions options) {
+        }
+
+        @Override
+        public TransportOptions getOptions() {
+            return null;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        mSession = new Session(mExecutor);
+        join();
+    }
+
+    private void join() throws Exception {
+        mSession.onConnect(mTransport, mSerializer);
+        CompletableFuture<?> joined = mSession.join("realm1");
+        next(Hello.MESSAGE_TYPE);
+        Map<String, Object> roles = new HashMap<>();
+        roles.put("broker", Collections.emptyMap());
+        roles.put("dealer", Collections.emptyMap());
+        Map<String, Object> details = new HashMap<>();
+        details.put("realm", "realm1");
+        details.put("roles", roles);
+        receive(2, 1234, details);
+        joined.get(5, TimeUnit.SECONDS);
+    }
+
+    private void reconnect() throws Exception {
+        mSession.onDisconnect(false);
+        mSession.getDisconnectFuture().get(5, TimeUnit.SECONDS);
+        join();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private void receive(Object... message) throws Exception {
+        mSession.onMessage(MAPPER.writeValueAsBytes(Arrays.asList(message)), false);
+    }
+
+    private List<Object> next(int messageType) throws InterruptedException {
+        List<Object> message = mSent.poll(5, TimeUnit.SECONDS);
+        if (message == null) {
+            fail("timed out");
+        }
+        assertEquals(messageType, message.get(0));
+        return message;
+    }
+
+    // Registers an endpoint that never answers, and invokes it.
+    private BlockingQueue<Object> invokeEndlessly() throws Exception {
+        BlockingQueue<Object> invoked = new LinkedBlockingQueue<>();
+        CompletableFuture<?> registered = mSession.register("com.example.endless",
+                (List<Object> args, InvocationDetails details) -> {
+                    CompletableFuture<InvocationResult> result = new CompletableFuture<>();
+                    invoked.add(details);
+                    invoked.add(result);
+                    return result;
+                });
+        receive(65, next(Register.MESSAGE_TYPE).get(1), 5678);
+        registered.get(5, TimeUnit.SECONDS);
+        receive(68, 42, 5678, Collections.emptyMap(), Collections.emptyList());
+        return invoked;
+    }
+
+    // The endpoint's future may only be handed to the session after the
+    // INTERRUPT is handled, in which case it's cancelled right then.
+    private static void assertCancelled(CompletableFuture<?> future) {
+        assertThrows(CancellationException.class, () -> future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInterrupt() throws Exception {
+        BlockingQueue<Object> invoked = invokeEndlessly();
+        InvocationDetails details = (InvocationDetails) invoked.poll(5, TimeUnit.SECONDS);
+        CompletableFuture<?> result = (CompletableFuture<?>) invoked.poll(5, TimeUnit.SECONDS);
+
+        receive(69, 42, Collections.singletonMap("mode", "kill"));
+        List<Object> error = next(Error.MESSAGE_TYPE);
+        assertEquals(Invocation.MESSAGE_TYPE, error.get(1));
+        assertEquals(42, error.get(2));
+        assertEquals("wamp.error.canceled", error.get(4));
+        assertTrue(details.isCancelled());
+        assertCancelled(result);
+        // Answered once only.
+        assertNull(mSent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testProgressiveResults() throws Exception {
+        List<Object> progress = new CopyOnWriteArrayList<>();
+        CompletableFuture<CallResult> call = mSession.call("com.example.count",
+                new CallOptions(0, result -> {
+                    progress.add(result.results.get(0));
+                    // Slow handlers must not let the final result overtake them.
+                    sleep(50);
+                }));
+        Object request = next(Call.MESSAGE_TYPE).get(1);
+        Map<String, Object> details = Collections.singletonMap("progress", true);
+        for (int i = 0; i < 3; i++) {
+            receive(50, request, details, Collections.singletonList(i));
+        }
+        receive(50, request, Collections.emptyMap(), Collections.singletonList("done"));
+        assertEquals("done", call.get(5, TimeUnit.SECONDS).results.get(0));
+        assertEquals(Arrays.asList(0, 1, 2), progress);
+    }
+
+    @Test
+    public void testCallTimeout() throws Exception {
+        // The timer is stopped on every disconnect, and must work again after.
+        reconnect();
+        CompletableFuture<CallResult> call = mSession.call("com.example.slow",
+                new CallOptions(100));
+        Object request = next(Call.MESSAGE_TYPE).get(1);
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> call.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ApplicationError);
+        assertEquals("wamp.error.timeout", e.getCause().getMessage());
+
+        List<Object> cancel = next(Cancel.MESSAGE_TYPE);
+        assertEquals(request, cancel.get(1));
+        assertEquals(Collections.singletonMap("mode", "kill"), cancel.get(2));
+        assertEquals(0, mSession.getPendingRequestCount());
+    }
+
+    @Test
+    public void testCallSendFails() throws Exception {
+        mSendError = new IllegalStateException("broken");
+        CompletableFuture<CallResult> call = mSession.call("com.example.proc",
+                new CallOptions(100));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> call.get(5, TimeUnit.SECONDS));
+        assertEquals(mSendError, e.getCause());
+        assertEquals(0, mSession.getPendingRequestCount());
+
+        // Its timeout was cancelled too, no CANCEL follows.
+        mSendError = null;
+        assertNull(mSent.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPublishUnacknowledged() throws Exception {
+        CompletableFuture<Publication> published = mSession.publish("com.example.topic", "hello");
+        assertTrue(published.isDone());
+        assertNull(published.get());
+        List<Object> publish = next(Publish.MESSAGE_TYPE);
+        assertEquals("com.example.topic", publish.get(3));
+        // The router won't answer, so nothing is kept for it.
+        assertEquals(0, mSession.getPendingRequestCount());
+
+        // Each publish has a future of its own, tampering with one
+        // doesn't affect the next.
+        published.obtrudeException(new IllegalStateException());
+        assertNull(mSession.publish("com.example.topic", "again").get());
+    }
+
+    @Test
+    public void testPublishSendFails() throws Exception {
+        mSendError = new SendBufferFullError("full");
+        CompletableFuture<Publication> published = mSession.publish("com.example.topic", "hello");
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> published.get(5, TimeUnit.SECONDS));
+        assertEquals(mSendError, e.getCause());
+
+        CompletableFuture<Publication> acknowledged = mSession.publish("com.example.topic",
+                new PublishOptions(true, true), "hello");
+        e = assertThrows(ExecutionException.class, () -> acknowledged.get(5, TimeUnit.SECONDS));
+        assertEquals(mSendError, e.getCause());
+        assertEquals(0, mSession.getPendingRequestCount());
+    }
+
+    // Typed handlers get their POJO bound straight from the received
+    // bytes, without building the generic args first.
+    private void assertBoundLazily() throws InterruptedException {
+        List<Object> args = mConverted.poll(5, TimeUnit.SECONDS);
+        assertTrue(args instanceof LazyList);
+        assertFalse(((LazyList) args).isDecoded());
+    }
+
+    @Test
+    public void testTypedSubscribe() throws Exception {
+        BlockingQueue<Point> points = new LinkedBlockingQueue<>();
+        CompletableFuture<Subscription> subscribed = mSession.subscribe("com.example.points",
+                points::add, Point.class);
+        receive(33, next(Subscribe.MESSAGE_TYPE).get(1), 5678);
+        subscribed.get(5, TimeUnit.SECONDS);
+
+        Map<String, Object> point = new HashMap<>();
+        point.put("x", 1);
+        point.put("y", 2);
+        receive(36, 5678, 1, Collections.emptyMap(), Collections.singletonList(point));
+        Point received = points.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, received.x);
+        assertEquals(2, received.y);
+        assertBoundLazily();
+    }
+
+    @Test
+    public void testTypedCall() throws Exception {
+        CompletableFuture<Point> call = mSession.call("com.example.point", Point.class);
+        Object request = next(Call.MESSAGE_TYPE).get(1);
+        Map<String, Object> point = new HashMap<>();
+        point.put("x", 3);
+        point.put("y", 4);
+        receive(50, request, Collections.emptyMap(), Collections.singletonList(point));
+        Point result = call.get(5, TimeUnit.SECONDS);
+        assertEquals(3, result.x);
+        assertEquals(4, result.y);
+        assertBoundLazily();
+    }
+
+    @Test
+    public void testChangeArgs() throws Exception {
+        CompletableFuture<?> registered = mSession.register("com.example.echo",
+                (IInvocationHandler) (args, kwargs, details) -> {
+                    args.set(0, "first");
+                    args.remove(1);
+                    args.add("last");
+                    kwargs.put("seen", true);
+                    kwargs.remove("drop");
+                    return new InvocationResult(args, kwargs);
+                });
+        receive(65, next(Register.MESSAGE_TYPE).get(1), 5678);
+        registered.get(5, TimeUnit.SECONDS);
+
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("keep", 1);
+        kwargs.put("drop", 2);
+        receive(68, 42, 5678, Collections.emptyMap(), Arrays.asList(1, 2, 3), kwargs);
+        List<Object> yield = next(Yield.MESSAGE_TYPE);
+        assertEquals(42, yield.get(1));
+        assertEquals(Arrays.asList("first", 3, "last"), yield.get(3));
+        Map<String, Object> kwresults = new HashMap<>();
+        kwresults.put("keep", 1);
+        kwresults.put("seen", true);
+        assertEquals(kwresults, yield.get(4));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testInterruptKillNoWait() throws Exception {
+        BlockingQueue<Object> invoked = invokeEndlessly();
+        InvocationDetails details = (InvocationDetails) invoked.poll(5, TimeUnit.SECONDS);
+        CompletableFuture<?> result = (CompletableFuture<?>) invoked.poll(5, TimeUnit.SECONDS);
+
+        receive(69, 42, Collections.singletonMap("mode", Interrupt.KILL_NO_WAIT));
+        assertTrue(details.isCancelled());
+        assertCancelled(result);
+        assertNull(mSent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testInterruptedRestore() throws Exception {
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        CompletableFuture<Subscription> subscribed = mSession.subscribe("com.example.topic",
+                (List<Object> args) -> events.add(args.get(0)));
+        receive(33, next(Subscribe.MESSAGE_TYPE).get(1), 5678);
+        subscribed.get(5, TimeUnit.SECONDS);
+
+        // Lost again before the router answered the restoring SUBSCRIBE.
+        reconnect();
+        next(Subscribe.MESSAGE_TYPE);
+        reconnect();
+        receive(33, next(Subscribe.MESSAGE_TYPE).get(1), 9012);
+        assertNull(mSent.poll(200, TimeUnit.MILLISECONDS));
+
+        receive(36, 9012, 1, Collections.emptyMap(), Collections.singletonList("restored"));
+        assertEquals("restored", events.poll(5, TimeUnit.SECONDS));
+        assertTrue(subscribed.get().isActive());
+    }
+}
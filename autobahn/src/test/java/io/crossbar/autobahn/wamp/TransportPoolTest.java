@@ -0,0 +1,74 @@
+package io.crossbar.autobahn.wamp;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.transports.RawSocket;
+
+public class TransportPoolTest {
+
+    private final List<ITransport> mTransports = Arrays.asList(
+            new RawSocket("rs://a:8080"), new RawSocket("rs://b:8080"),
+            new RawSocket("rs://c:8080"));
+
+    @Test
+    public void testRoundRobin() {
+        TransportPool pool = new TransportPool(mTransports);
+        ITransport first = pool.next(false);
+        int index = mTransports.indexOf(first);
+        assertSame(mTransports.get((index + 1) % 3), pool.next(false));
+        assertSame(mTransports.get((index + 2) % 3), pool.next(false));
+        assertSame(first, pool.next(false));
+
+        // Failed transports are skipped during the cool-down.
+        pool.onFailed(mTransports.get((index + 1) % 3), 1, TimeUnit.HOURS);
+        assertSame(mTransports.get((index + 2) % 3), pool.next(false));
+        assertSame(first, pool.next(false));
+        pool.onFailed(mTransports.get((index + 1) % 3), 0, TimeUnit.HOURS);
+        assertSame(mTransports.get((index + 1) % 3), pool.next(false));
+    }
+
+    @Test
+    public void testAllFailed() {
+        TransportPool pool = new TransportPool(mTransports);
+        pool.onFailed(mTransports.get(1), 1, TimeUnit.HOURS);
+        pool.onFailed(mTransports.get(0), 2, TimeUnit.HOURS);
+        pool.onFailed(mTransports.get(2), 3, TimeUnit.HOURS);
+        // The one whose cool-down ends first.
+        assertSame(mTransports.get(1), pool.next(false));
+        assertSame(mTransports.get(1), pool.next(true));
+    }
+
+    @Test
+    public void testLowestRTT() {
+        TransportPool pool = new TransportPool(mTransports);
+        // Unknown transports are tried first.
+        List<ITransport> tried = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ITransport transport = pool.next(true);
+            tried.add(transport);
+            pool.onConnected(transport, TimeUnit.MILLISECONDS.toNanos(10 + i));
+        }
+        assertNotSame(tried.get(0), tried.get(1));
+        assertNotSame(tried.get(1), tried.get(2));
+        assertNotSame(tried.get(0), tried.get(2));
+        assertSame(tried.get(0), pool.next(true));
+        assertSame(tried.get(0), pool.next(true));
+
+        pool.onFailed(tried.get(0), 1, TimeUnit.HOURS);
+        assertSame(tried.get(1), pool.next(true));
+        // A transport that got slower loses its place gradually.
+        for (int i = 0; i < 20; i++) {
+            pool.onConnected(tried.get(1), TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertSame(tried.get(2), pool.next(true));
+    }
+}
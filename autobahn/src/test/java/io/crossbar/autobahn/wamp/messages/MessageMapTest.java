@@ -0,0 +1,65 @@
+package io.crossbar.autobahn.wamp.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+
+public class MessageMapTest {
+
+    @Test
+    public void testEveryMappedTypeHasParser() {
+        for (Integer messageType: MessageMap.MESSAGE_TYPE_MAP.keySet()) {
+            assertNotNull("no parser for " + messageType, MessageMap.getParser(messageType));
+        }
+        assertNull(MessageMap.getParser(-1));
+        assertNull(MessageMap.getParser(MessageMap.MAX_MESSAGE_TYPE + 1));
+    }
+
+    @Test
+    public void testParseEvent() {
+        List<Object> raw = Arrays.asList(Event.MESSAGE_TYPE, 1, 2, Collections.emptyMap(),
+                Collections.singletonList("hello"));
+        IMessage message = MessageMap.parse(raw);
+        assertTrue(message instanceof Event);
+        assertEquals(1, ((Event) message).subscription);
+        assertEquals("hello", ((Event) message).args.get(0));
+    }
+
+    @Test
+    public void testProgressRoundTrip() {
+        List<Object> args = Arrays.asList(1, "two");
+        Yield yield = (Yield) MessageMap.parse(
+                new Yield(7, args, Collections.singletonMap("k", 3), true).marshal());
+        assertEquals(7, yield.request);
+        assertTrue(yield.progress);
+        assertEquals(args, yield.args);
+        assertEquals(3, yield.kwargs.get("k"));
+
+        Result result = (Result) MessageMap.parse(new Result(8, args, null, true).marshal());
+        assertEquals(8, result.request);
+        assertTrue(result.progress);
+        assertEquals(args, result.args);
+        assertNull(result.kwargs);
+
+        assertFalse(((Yield) MessageMap.parse(new Yield(9, args, null, false).marshal())).progress);
+    }
+
+    @Test
+    public void testParseUnknownType() {
+        assertThrows(ProtocolError.class,
+                () -> MessageMap.parse(Arrays.asList(99, 1, Collections.emptyMap())));
+        assertThrows(ProtocolError.class, () -> MessageMap.parse(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,60 @@
+package io.crossbar.autobahn.wamp.messages;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+
+public class MessageWriteTest {
+
+    private static List<IMessage> messages() {
+        List<Object> args = Arrays.asList(1, "two", 3.5);
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("key", "value");
+        return Arrays.asList(
+                new Call(1, "com.example.add", null, null, 0),
+                new Call(2, "com.example.add", args, null, 1000, true),
+                new Call(3, "com.example.add", null, kwargs, 0),
+                new Publish(4, "com.example.topic", null, null, false, true, false),
+                new Publish(5, "com.example.topic", args, kwargs, true, false, true),
+                new Yield(6, null, null),
+                new Yield(7, args, kwargs, true),
+                new Error(Invocation.MESSAGE_TYPE, 8, "com.example.error", null, null),
+                new Error(Invocation.MESSAGE_TYPE, 9, "com.example.error", null, kwargs));
+    }
+
+    private static void checkSameAsMarshal(ISerializer serializer) {
+        for (IMessage message: messages()) {
+            List<Object> streamed = serializer.unserialize(
+                    serializer.serialize(message), serializer.isBinary());
+            List<Object> marshalled = serializer.unserialize(
+                    serializer.serialize(message.marshal()), serializer.isBinary());
+            assertEquals(message.getClass().getSimpleName(), marshalled, streamed);
+        }
+    }
+
+    @Test
+    public void testJSON() {
+        checkSameAsMarshal(new JSONSerializer());
+    }
+
+    @Test
+    public void testCBOR() {
+        checkSameAsMarshal(new CBORSerializer());
+    }
+
+    @Test
+    public void testMessagePack() {
+        checkSameAsMarshal(new MessagePackSerializer());
+    }
+}
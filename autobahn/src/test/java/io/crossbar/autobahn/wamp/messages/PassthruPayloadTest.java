@@ -0,0 +1,105 @@
+package io.crossbar.autobahn.wamp.messages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.crossbar.autobahn.wamp.exceptions.ProtocolError;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
+
+public class PassthruPayloadTest {
+
+    private static final byte[] DATA = {0, 1, 2, (byte) 0xff, 42};
+
+    private static void checkRoundTrip(ISerializer serializer) {
+        PassthruPayload payload = new PassthruPayload("x_test", "cbor", DATA);
+        Publish publish = new Publish(
+                1, "com.example.topic", Collections.singletonList(payload), null,
+                false, true, false);
+
+        List<Object> raw = serializer.unserialize(
+                serializer.serialize(publish), serializer.isBinary());
+        Map<String, Object> options = (Map<String, Object>) raw.get(2);
+        assertEquals("x_test", options.get("ppt_scheme"));
+        assertEquals("cbor", options.get("ppt_serializer"));
+
+        Publish parsed = Publish.parse(raw);
+        assertNull(parsed.kwargs);
+        assertEquals(1, parsed.args.size());
+        PassthruPayload received = (PassthruPayload) parsed.args.get(0);
+        assertEquals("x_test", received.scheme);
+        assertEquals("cbor", received.serializer);
+        assertNull(received.cipher);
+        assertArrayEquals(DATA, received.getBytes());
+
+        // Forwarding a received payload doesn't copy it.
+        assertSame(received.getBytes(), received.getBytes());
+        Yield yield = Yield.parse(serializer.unserialize(serializer.serialize(
+                new Yield(2, parsed.args, null)), serializer.isBinary()));
+        assertArrayEquals(DATA, ((PassthruPayload) yield.args.get(0)).getBytes());
+    }
+
+    @Test
+    public void testCBOR() {
+        checkRoundTrip(new CBORSerializer());
+    }
+
+    @Test
+    public void testMessagePack() {
+        checkRoundTrip(new MessagePackSerializer());
+    }
+
+    @Test
+    public void testJSON() {
+        checkRoundTrip(new JSONSerializer());
+    }
+
+    @Test
+    public void testByteBufferSlice() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {9, 9, 0, 1, 2, (byte) 0xff, 42, 9});
+        buffer.position(2).limit(7);
+        PassthruPayload payload = new PassthruPayload("x_test", null, buffer);
+        assertEquals(DATA.length, payload.length());
+        assertArrayEquals(DATA, payload.getBytes());
+
+        ISerializer serializer = new CBORSerializer();
+        Call call = Call.parse(serializer.unserialize(serializer.serialize(
+                new Call(1, "com.example.proc", Arrays.asList(payload), null, 0)), true));
+        assertArrayEquals(DATA, ((PassthruPayload) call.args.get(0)).getBytes());
+    }
+
+    @Test
+    public void testEvent() {
+        ISerializer serializer = new CBORSerializer();
+        Map<String, Object> details = new HashMap<>();
+        details.put("ppt_scheme", "mqtt");
+        Event event = Event.parse(serializer.unserializeLazily(serializer.serialize(
+                Arrays.asList(Event.MESSAGE_TYPE, 1, 2, details, DATA)), true));
+        PassthruPayload payload = (PassthruPayload) event.args.get(0);
+        assertEquals("mqtt", payload.scheme);
+        assertArrayEquals(DATA, payload.getBytes());
+        assertTrue(serializer.convertArg(event.args, 0, PassthruPayload.class) == payload);
+    }
+
+    @Test
+    public void testMissingScheme() {
+        assertThrows(ProtocolError.class, () -> Event.parse(
+                Arrays.asList(Event.MESSAGE_TYPE, 1, 2, Collections.emptyMap(), DATA)));
+    }
+}
@@ -0,0 +1,142 @@
+package io.crossbar.autobahn.wamp.serializers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Publish;
+
+public class CBORTypedArrayTest {
+
+    private static final double[] DOUBLES = {1.5, -2.25, Double.MAX_VALUE, 0};
+    private static final long[] LONGS = {1, -1, Long.MIN_VALUE, 1L << 40};
+
+    private static byte[] event(ISerializer serializer) {
+        Map<String, Object> kwargs = Collections.singletonMap("ids", LONGS);
+        return serializer.serialize(new Event(1, 2, null, false,
+                Arrays.asList(DOUBLES, new int[] {7, 8}, new float[] {0.5f}), kwargs));
+    }
+
+    @Test
+    public void testWritesTaggedByteString() {
+        byte[] payload = new CBORSerializer(true).serialize(new Publish(
+                1, "com.example.topic", Collections.singletonList(DOUBLES), null,
+                false, true, false));
+        // tag(82) followed by a byte string of 32 bytes.
+        byte[] typedArray = {(byte) 0xd8, 82, 0x58, 32};
+        assertTrue(indexOf(payload, typedArray) > 0);
+        assertTrue(payload.length < 32 + 30);
+    }
+
+    @Test
+    public void testUnserialize() {
+        for (ISerializer serializer: Arrays.asList(new CBORSerializer(true), new FlatSerializer(true))) {
+            Event event = (Event) MessageMap.parse(
+                    serializer.unserialize(event(serializer), true));
+            assertArrayEquals(DOUBLES, (double[]) event.args.get(0), 0);
+            assertArrayEquals(new int[] {7, 8}, (int[]) event.args.get(1));
+            assertArrayEquals(new float[] {0.5f}, (float[]) event.args.get(2), 0);
+            assertArrayEquals(LONGS, (long[]) event.kwargs.get("ids"));
+        }
+    }
+
+    @Test
+    public void testConvertArg() {
+        for (ISerializer serializer: Arrays.asList(new CBORSerializer(true), new FlatSerializer(true))) {
+            Event event = (Event) MessageMap.parse(
+                    serializer.unserializeLazily(event(serializer), true));
+            assertArrayEquals(DOUBLES, serializer.convertArg(event.args, 0, double[].class), 0);
+
+            DoubleBuffer view = serializer.convertArg(event.args, 0, DoubleBuffer.class);
+            assertEquals(DOUBLES.length, view.remaining());
+            assertEquals(DOUBLES[2], view.get(2), 0);
+
+            LongBuffer ids = serializer.convertValue(event.kwargs.get("ids"), LongBuffer.class);
+            assertEquals(LONGS[2], ids.get(2));
+        }
+    }
+
+    @Test
+    public void testPlainArrays() {
+        // A peer without typed arrays sends plain CBOR arrays.
+        ISerializer serializer = new CBORSerializer(true);
+        List<Object> args = Collections.singletonList(Arrays.asList(1.5, -2.25));
+        byte[] payload = serializer.serialize(new Event(1, 2, null, false, args, null));
+        Event event = (Event) MessageMap.parse(serializer.unserializeLazily(payload, true));
+        assertArrayEquals(new double[] {1.5, -2.25},
+                serializer.convertArg(event.args, 0, double[].class), 0);
+    }
+
+    @Test
+    public void testLittleEndian() throws Exception {
+        ByteBuffer bytes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.putDouble(1.5).putDouble(-3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CBORGenerator generator = new CBORFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            generator.writeTag(86);
+            generator.writeBinary(bytes.array());
+            generator.writeEndArray();
+        }
+        List<Object> decoded = new CBORSerializer(true).unserialize(out.toByteArray(), true);
+        assertArrayEquals(new double[] {1.5, -3}, (double[]) decoded.get(0), 0);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        for (ISerializer serializer: Arrays.asList(new CBORSerializer(), new FlatSerializer(),
+                SerializerRegistry.get(CBORSerializer.NAME, false))) {
+            byte[] payload = serializer.serialize(new Publish(
+                    1, "com.example.topic", Collections.singletonList(DOUBLES), null,
+                    false, true, false));
+            assertEquals(-1, indexOf(payload, new byte[] {(byte) 0xd8, 82}));
+            Publish publish = (Publish) MessageMap.parse(serializer.unserialize(payload, true));
+            assertEquals(Arrays.asList(1.5, -2.25, Double.MAX_VALUE, 0.0), publish.args.get(0));
+        }
+        ISerializer typed = SerializerRegistry.get(CBORSerializer.NAME, true);
+        assertNotSame(SerializerRegistry.get(CBORSerializer.NAME), typed);
+        assertSame(typed, SerializerRegistry.get(CBORSerializer.NAME, true));
+        assertSame(SerializerRegistry.get(JSONSerializer.NAME),
+                SerializerRegistry.get(JSONSerializer.NAME, true));
+    }
+
+    @Test
+    public void testJSONUnchanged() {
+        ISerializer serializer = new JSONSerializer();
+        List<Object> message = serializer.unserialize(event(serializer), false);
+        assertEquals(Arrays.asList(7, 8), ((List<?>) message.get(4)).get(1));
+    }
+
+    private static int indexOf(byte[] buffer, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= buffer.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,99 @@
+package io.crossbar.autobahn.wamp.serializers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Error;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.Hello;
+import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.messages.Result;
+import io.crossbar.autobahn.wamp.messages.Subscribe;
+import io.crossbar.autobahn.wamp.messages.Yield;
+import io.crossbar.autobahn.wamp.types.PassthruPayload;
+
+public class FlatSerializerTest {
+
+    public static class Point {
+        public int x;
+        public int y;
+    }
+
+    private static List<IMessage> messages() {
+        Map<String, Object> point = new HashMap<>();
+        point.put("x", 1);
+        point.put("y", 2);
+        List<Object> args = Arrays.asList(point, "two", 3.5, 1L << 40);
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("key", "v\u00e4lue");
+        return Arrays.asList(
+                new Publish(1, "com.example.topic", args, kwargs, true, false, false),
+                new Publish(2, "com.example.topic", null, null, false, true, false),
+                new Event(3, 1L << 52, "com.example.topic", true, args, null),
+                new Call(4, "com.example.proc", args, kwargs, 1000, true),
+                new Result(5, null, kwargs, false),
+                new Invocation(6, 7, Collections.singletonMap("caller", 8), args, kwargs),
+                new Yield(9, args, null, true),
+                new Error(Call.MESSAGE_TYPE, 10, "com.example.\u00e9rror", args, kwargs),
+                new Yield(11, Collections.singletonList(
+                        new PassthruPayload("x_test", null, new byte[] {1, 2, 3})), null),
+                new Subscribe(12, null, "com.example.topic"));
+    }
+
+    @Test
+    public void testSameAsCBOR() {
+        FlatSerializer flat = new FlatSerializer();
+        CBORSerializer cbor = new CBORSerializer();
+        for (IMessage message: messages()) {
+            byte[] payload = flat.serialize(message);
+            IMessage viaCBOR = MessageMap.parse(cbor.unserialize(cbor.serialize(message), true));
+            IMessage lazy = MessageMap.parse(flat.unserializeLazily(payload, true));
+            IMessage eager = MessageMap.parse(flat.unserialize(payload, true));
+            String expected = Arrays.deepToString(viaCBOR.marshal().toArray());
+            assertEquals(expected, Arrays.deepToString(lazy.marshal().toArray()));
+            assertEquals(expected, Arrays.deepToString(eager.marshal().toArray()));
+        }
+    }
+
+    @Test
+    public void testFieldsInPlace() {
+        FlatSerializer flat = new FlatSerializer();
+        byte[] payload = flat.serialize(messages().get(2));
+        assertEquals(Event.MESSAGE_TYPE, payload[0]);
+
+        Event event = (Event) MessageMap.parse(flat.unserializeLazily(payload, true));
+        assertEquals(3, event.subscription);
+        assertEquals(1L << 52, event.publication);
+        assertEquals("com.example.topic", event.topic);
+        assertTrue(event.retained);
+        assertFalse(((LazyList) event.args).isDecoded());
+
+        Point point = flat.convertArg(event.args, 0, Point.class);
+        assertEquals(2, point.y);
+        assertFalse(((LazyList) event.args).isDecoded());
+    }
+
+    @Test
+    public void testOtherMessagesAreCBOR() {
+        FlatSerializer flat = new FlatSerializer();
+        Hello hello = new Hello("realm1", new HashMap<>());
+        byte[] payload = flat.serialize(hello);
+        assertEquals(new CBORSerializer().serialize(hello.marshal()).length, payload.length);
+        assertEquals("realm1", ((Hello) MessageMap.parse(
+                flat.unserializeLazily(payload, true))).realm);
+    }
+}
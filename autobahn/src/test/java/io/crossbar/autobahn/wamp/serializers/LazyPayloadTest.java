@@ -0,0 +1,94 @@
+package io.crossbar.autobahn.wamp.serializers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Result;
+
+public class LazyPayloadTest {
+
+    public static class Point {
+        public int x;
+        public int y;
+    }
+
+    private static byte[] event(ISerializer serializer) {
+        Map<String, Object> point = new HashMap<>();
+        point.put("x", 1);
+        point.put("y", 2);
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("name", "last");
+        return serializer.serialize(new Event(
+                1, 2, "com.example.topic", false, Arrays.asList(point, "tail"), kwargs).marshal());
+    }
+
+    private static void checkLazyEvent(ISerializer serializer) {
+        byte[] payload = event(serializer);
+        List<Object> raw = serializer.unserializeLazily(payload, serializer.isBinary());
+        assertTrue(raw.get(4) instanceof LazyList);
+        assertTrue(raw.get(5) instanceof LazyMap);
+
+        Event event = (Event) MessageMap.parse(raw);
+        assertEquals("com.example.topic", event.topic);
+        assertFalse(((LazyList) event.args).isDecoded());
+
+        Point point = serializer.convertArg(event.args, 0, Point.class);
+        assertEquals(1, point.x);
+        assertEquals(2, point.y);
+        assertFalse(((LazyList) event.args).isDecoded());
+
+        assertEquals(serializer.unserialize(payload, serializer.isBinary()), raw);
+        assertEquals("last", event.kwargs.get("name"));
+    }
+
+    @Test
+    public void testJSON() {
+        checkLazyEvent(new JSONSerializer());
+    }
+
+    @Test
+    public void testCBOR() {
+        checkLazyEvent(new CBORSerializer());
+    }
+
+    @Test
+    public void testMessagePack() {
+        checkLazyEvent(new MessagePackSerializer());
+    }
+
+    @Test
+    public void testMutable() {
+        ISerializer serializer = new JSONSerializer();
+        Event event = (Event) MessageMap.parse(
+                serializer.unserializeLazily(event(serializer), false));
+        event.args.add("more");
+        event.args.set(1, "changed");
+        assertEquals(Arrays.asList("changed", "more"), event.args.subList(1, 3));
+        assertEquals("changed", serializer.convertArg(event.args, 1, String.class));
+        event.kwargs.put("name", "first");
+        event.kwargs.put("extra", 1);
+        assertEquals("first", event.kwargs.get("name"));
+        assertEquals(2, event.kwargs.size());
+    }
+
+    @Test
+    public void testOnlyPayloadIsLazy() {
+        ISerializer serializer = new CBORSerializer();
+        byte[] payload = serializer.serialize(new Result(7, Arrays.asList(1, 2), null, true).marshal());
+        Result result = (Result) MessageMap.parse(serializer.unserializeLazily(payload, true));
+        assertEquals(7, result.request);
+        assertTrue(result.progress);
+        assertEquals(Arrays.asList(1, 2), result.args);
+    }
+}
@@ -0,0 +1,33 @@
+package io.crossbar.autobahn.wamp.serializers;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SerializerRegistryTest {
+
+    @Test
+    public void testShared() {
+        assertTrue(SerializerRegistry.get(CBORSerializer.NAME) instanceof CBORSerializer);
+        assertSame(SerializerRegistry.get(CBORSerializer.NAME),
+                SerializerRegistry.get(CBORSerializer.NAME));
+        assertSame(SerializerRegistry.get(JSONSerializer.NAME),
+                SerializerRegistry.get(JSONSerializer.RAWSOCKET_SERIALIZER_ID));
+        assertSame(SerializerRegistry.get(MessagePackSerializer.NAME),
+                SerializerRegistry.get(MessagePackSerializer.RAWSOCKET_SERIALIZER_ID));
+    }
+
+    @Test
+    public void testUnsupported() {
+        assertThrows(IllegalArgumentException.class, () -> SerializerRegistry.get("wamp.2.xml"));
+        assertThrows(IllegalArgumentException.class, () -> SerializerRegistry.get(15));
+    }
+
+    @Test
+    public void testWarmUp() {
+        SerializerRegistry.warmUp();
+        SerializerRegistry.warmUp(CBORSerializer.NAME);
+    }
+}
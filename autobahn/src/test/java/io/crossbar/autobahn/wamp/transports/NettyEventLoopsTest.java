@@ -0,0 +1,52 @@
+package io.crossbar.autobahn.wamp.transports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+public class NettyEventLoopsTest {
+
+    @Test
+    public void testDefaultGroup() {
+        EventLoopGroup group = NettyEventLoops.getDefaultGroup();
+        assertSame(group, NettyEventLoops.getDefaultGroup());
+        assertSame(group, NettyEventLoops.newBootstrap(new TransportOptions(), null)
+                .config().group());
+        assertSame(group, NettyEventLoops.newBootstrap(new NettyTransportOptions(), null)
+                .config().group());
+    }
+
+    @Test
+    public void testInjected() {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        EventLoopGroup other = new NioEventLoopGroup(1);
+        try {
+            assertEquals(NioSocketChannel.class, NettyEventLoops.getChannelClass(group));
+            assertSame(other, NettyEventLoops.newBootstrap(new TransportOptions(), other)
+                    .config().group());
+
+            NettyTransportOptions options = new NettyTransportOptions();
+            options.setEventLoopGroup(group);
+            assertSame(group, NettyEventLoops.newBootstrap(options, other).config().group());
+
+            Bootstrap template = new Bootstrap().option(ChannelOption.SO_KEEPALIVE, true);
+            options.setBootstrap(template);
+            Bootstrap bootstrap = NettyEventLoops.newBootstrap(options, other);
+            assertSame(group, bootstrap.config().group());
+            assertEquals(true, bootstrap.config().options().get(ChannelOption.SO_KEEPALIVE));
+            // The template is cloned, not filled in.
+            assertEquals(null, template.config().group());
+        } finally {
+            group.shutdownGracefully();
+            other.shutdownGracefully();
+        }
+    }
+}
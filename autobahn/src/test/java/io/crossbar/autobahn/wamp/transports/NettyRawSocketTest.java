@@ -0,0 +1,326 @@
+package io.crossbar.autobahn.wamp.transports;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.Session;
+import io.crossbar.autobahn.wamp.exceptions.SendBufferFullError;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.serializers.LazyList;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.crossbar.autobahn.wamp.utils.Platform;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+public class NettyRawSocketTest {
+
+    private final ServerSocket mServer;
+    private final BlockingQueue<Object> mEvents = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> mWritability = new LinkedBlockingQueue<>();
+    private ITransport mTransport;
+
+    private final ITransportHandler mHandler = new ITransportHandler() {
+        @Override
+        public void onConnect(ITransport transport, ISerializer serializer) {
+            mEvents.add(serializer);
+        }
+
+        @Override
+        public void onMessage(byte[] payload, boolean isBinary) {
+            mEvents.add(payload);
+        }
+
+        @Override
+        public void onWritabilityChanged(boolean writable) {
+            mWritability.add(writable);
+        }
+
+        @Override
+        public void onLeave(CloseDetails details) {
+        }
+
+        @Override
+        public void onDisconnect(boolean wasClean) {
+            mEvents.add(wasClean);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+    };
+
+    public NettyRawSocketTest() throws IOException {
+        mServer = new ServerSocket(0);
+        mServer.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mTransport != null) {
+            mTransport.close();
+        }
+        mServer.close();
+    }
+
+    private Object next() throws InterruptedException {
+        Object event = mEvents.poll(5, TimeUnit.SECONDS);
+        if (event == null) {
+            fail("timed out");
+        }
+        return event;
+    }
+
+    private Socket accept(int reply) throws IOException {
+        Socket socket = mServer.accept();
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(0x7f, in.readUnsignedByte());
+        in.readUnsignedByte();
+        in.readShort();
+        socket.getOutputStream().write(new byte[] {0x7f, (byte) reply, 0, 0});
+        return socket;
+    }
+
+    private static byte[] readFrame(DataInputStream in, int frameType) throws IOException {
+        int header = in.readInt();
+        assertEquals(frameType, header >>> 24);
+        byte[] payload = new byte[header & 0xffffff];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private static void writeFrame(DataOutputStream out, int frameType, byte[] payload)
+            throws IOException {
+        out.writeInt(frameType << 24 | payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    @Test
+    public void testFraming() throws Exception {
+        mTransport = Platform.autoSelectTransport("rs://127.0.0.1:" + mServer.getLocalPort());
+        assertTrue(mTransport instanceof NettyRawSocket);
+        TransportOptions options = new TransportOptions();
+        options.setMaxFramePayloadSize(1024 * 1024);
+        mTransport.connect(mHandler, options);
+
+        // CBOR is proposed first, reply with "serializer unsupported".
+        try (Socket rejected = accept(0x10);
+             Socket socket = accept(0x90 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            assertTrue(next() instanceof MessagePackSerializer);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            byte[] large = new byte[100 * 1024];
+            Arrays.fill(large, (byte) 7);
+            mTransport.send(new byte[] {1, 2, 3}, true);
+            mTransport.send(large, true);
+            assertArrayEquals(new byte[] {1, 2, 3}, readFrame(in, 0));
+            assertArrayEquals(large, readFrame(in, 0));
+
+            // Serialized straight into the frame.
+            MessagePackSerializer serializer = new MessagePackSerializer();
+            Publish publish = new Publish(1, "com.example.topic", Arrays.asList(1, "two"),
+                    null, true, false, false);
+            mTransport.send(publish, serializer);
+            assertArrayEquals(serializer.serialize(publish), readFrame(in, 0));
+            try {
+                // The router accepts up to 2^18 bytes.
+                mTransport.send(new byte[(1 << 18) + 1], true);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+
+            writeFrame(out, 0, large);
+            writeFrame(out, 0, new byte[] {4, 5});
+            assertArrayEquals(large, (byte[]) next());
+            assertArrayEquals(new byte[] {4, 5}, (byte[]) next());
+
+            writeFrame(out, 1, new byte[] {9, 9});
+            assertArrayEquals(new byte[] {9, 9}, readFrame(in, 2));
+
+            // We announced 1 MB.
+            out.writeInt(1024 * 1024 + 1);
+            out.flush();
+            assertEquals(false, next());
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        TransportOptions options = new TransportOptions();
+        options.setSendBufferSize(256 * 1024);
+        options.setSendBufferPolicy(TransportOptions.SEND_BUFFER_DROP);
+        mTransport = new NettyRawSocket("rs://127.0.0.1:" + mServer.getLocalPort(),
+                Arrays.asList(MessagePackSerializer.NAME));
+        mTransport.connect(mHandler, options);
+        try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            assertTrue(next() instanceof MessagePackSerializer);
+
+            // The router doesn't read, so once the socket buffers are full
+            // the send buffer fills up.
+            byte[] payload = new byte[64 * 1024];
+            int sent = 0;
+            while (mTransport.isWritable()) {
+                mTransport.send(payload, true);
+                sent++;
+                assertTrue(sent < 10000);
+            }
+            assertTrue(mTransport.isOpen());
+            assertEquals(false, mWritability.poll(5, TimeUnit.SECONDS));
+            MessagePackSerializer serializer = new MessagePackSerializer();
+            Publish publish = new Publish(1, "com.example.topic", null, null, false, true, false);
+            // The kernel may have taken some more in the meantime, dropped
+            // messages fail right away.
+            Publish large = new Publish(1, "com.example.topic", Arrays.asList(payload), null,
+                    false, true, false);
+            CompletableFuture<Void> dropped;
+            while (!(dropped = mTransport.sendAsync(large, serializer)).isCompletedExceptionally()) {
+                sent++;
+                assertTrue(sent < 10000);
+            }
+            try {
+                dropped.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SendBufferFullError);
+            }
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            for (int i = 0; i < sent; i++) {
+                readFrame(in, 0);
+            }
+            assertEquals(true, mWritability.poll(5, TimeUnit.SECONDS));
+
+            CompletableFuture<Void> written = mTransport.sendAsync(publish, serializer);
+            assertArrayEquals(serializer.serialize(publish), readFrame(in, 0));
+            written.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testLazyEvent() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            Session session = new Session(executor);
+            session.addOnConnectListener(connected -> mEvents.add(connected));
+            mTransport = new NettyRawSocket("rs://127.0.0.1:" + mServer.getLocalPort(),
+                    Arrays.asList(MessagePackSerializer.NAME));
+            mTransport.connect(session, new TransportOptions());
+            try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+                assertEquals(session, next());
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                MessagePackSerializer serializer = new MessagePackSerializer();
+
+                CompletableFuture<?> joined = session.join("realm1");
+                readFrame(in, 0);
+                writeFrame(out, 0, serializer.serialize(Arrays.asList(2, 1234,
+                        Collections.singletonMap("roles",
+                                Collections.singletonMap("broker", Collections.emptyMap())))));
+                joined.get(5, TimeUnit.SECONDS);
+
+                CompletableFuture<?> subscribed = session.subscribe("com.example.topic",
+                        (List<Object> args) -> mEvents.add(args));
+                Object request = serializer.unserialize(readFrame(in, 0), true).get(1);
+                writeFrame(out, 0, serializer.serialize(Arrays.asList(33, request, 5678)));
+                subscribed.get(5, TimeUnit.SECONDS);
+
+                writeFrame(out, 0, serializer.serialize(Arrays.asList(36, 5678, 1,
+                        Collections.emptyMap(), Arrays.asList("hello", 42))));
+                Object args = next();
+                // Decoded from a copy of the pooled frame, only once it's used.
+                assertTrue(args instanceof LazyList);
+                assertEquals(Arrays.asList("hello", 42), args);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        mTransport = new NettyRawSocket("rs://127.0.0.1:" + mServer.getLocalPort(),
+                Arrays.asList(MessagePackSerializer.NAME));
+        mTransport.connect(mHandler, new TransportOptions());
+        try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            next();
+            assertTrue(mTransport.isOpen());
+            mTransport.send(new byte[] {1}, true);
+            mTransport.close();
+            assertArrayEquals(new byte[] {1},
+                    readFrame(new DataInputStream(socket.getInputStream()), 0));
+            assertEquals(true, next());
+        }
+    }
+
+    @Test
+    public void testSharedGroup() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1, new DefaultThreadFactory("shared"));
+        try {
+            NettyTransportOptions options = new NettyTransportOptions();
+            options.setEventLoopGroup(group);
+            for (int i = 0; i < 2; i++) {
+                mTransport = new NettyRawSocket("rs://127.0.0.1:" + mServer.getLocalPort(),
+                        Arrays.asList(MessagePackSerializer.NAME));
+                mTransport.connect(new ITransportHandler() {
+                    @Override
+                    public void onConnect(ITransport transport, ISerializer serializer) {
+                        mEvents.add(Thread.currentThread().getName());
+                    }
+
+                    @Override
+                    public void onMessage(byte[] payload, boolean isBinary) {
+                    }
+
+                    @Override
+                    public void onLeave(CloseDetails details) {
+                    }
+
+                    @Override
+                    public void onDisconnect(boolean wasClean) {
+                    }
+
+                    @Override
+                    public boolean isConnected() {
+                        return false;
+                    }
+                }, options);
+                try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+                    assertTrue(((String) next()).startsWith("shared-"));
+                    mTransport.close();
+                }
+                assertTrue(!group.isShuttingDown());
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+}
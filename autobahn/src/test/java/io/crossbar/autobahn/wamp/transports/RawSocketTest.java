@@ -0,0 +1,270 @@
+package io.crossbar.autobahn.wamp.transports;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.exceptions.SendBufferFullError;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+
+public class RawSocketTest {
+
+    private final ServerSocket mServer;
+    private final Handler mHandler = new Handler();
+    private RawSocket mTransport;
+
+    public RawSocketTest() throws IOException {
+        mServer = new ServerSocket(0);
+        mServer.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (mTransport != null) {
+            mTransport.abort();
+        }
+        mServer.close();
+    }
+
+    private static class Handler implements ITransportHandler {
+
+        final BlockingQueue<Object> mEvents = new LinkedBlockingQueue<>();
+        final BlockingQueue<Boolean> mWritability = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onConnect(ITransport transport, ISerializer serializer) {
+            mEvents.add(serializer);
+        }
+
+        @Override
+        public void onMessage(byte[] payload, boolean isBinary) {
+            mEvents.add(payload);
+        }
+
+        @Override
+        public void onWritabilityChanged(boolean writable) {
+            mWritability.add(writable);
+        }
+
+        @Override
+        public void onLeave(CloseDetails details) {
+        }
+
+        @Override
+        public void onDisconnect(boolean wasClean) {
+            mEvents.add(wasClean);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return false;
+        }
+
+        Object next() throws InterruptedException {
+            Object event = mEvents.poll(5, TimeUnit.SECONDS);
+            if (event == null) {
+                fail("timed out");
+            }
+            return event;
+        }
+    }
+
+    private Socket accept(int reply) throws IOException {
+        Socket socket = mServer.accept();
+        byte[] handshake = new byte[4];
+        new DataInputStream(socket.getInputStream()).readFully(handshake);
+        assertEquals(0x7f, handshake[0]);
+        socket.getOutputStream().write(new byte[] {0x7f, (byte) reply, 0, 0});
+        return socket;
+    }
+
+    private static byte[] readFrame(DataInputStream in, int frameType) throws IOException {
+        int header = in.readInt();
+        assertEquals(frameType, header >>> 24);
+        byte[] payload = new byte[header & 0xffffff];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private static void writeFrame(DataOutputStream out, int frameType, byte[] payload)
+            throws IOException {
+        out.writeInt(frameType << 24 | payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    private void connect(String... serializers) throws Exception {
+        connect(0, serializers);
+    }
+
+    private void connect(int autoPingInterval, String... serializers) throws Exception {
+        TransportOptions options = new TransportOptions();
+        options.setMaxFramePayloadSize(1024 * 1024);
+        options.setAutoPingInterval(autoPingInterval);
+        options.setAutoPingTimeout(1);
+        mTransport = new RawSocket("rs://127.0.0.1:" + mServer.getLocalPort(),
+                serializers.length == 0 ? null : Arrays.asList(serializers));
+        mTransport.connect(mHandler, options);
+    }
+
+    @Test
+    public void testFraming() throws Exception {
+        connect(MessagePackSerializer.NAME);
+        // msgpack, the router accepts up to 2^24 bytes.
+        try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            assertTrue(mHandler.next() instanceof MessagePackSerializer);
+            assertTrue(mTransport.isOpen());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+            // Longer than the read buffer, and than one byte of length.
+            byte[] large = new byte[100 * 1024];
+            Arrays.fill(large, (byte) 7);
+            mTransport.send(new byte[] {1, 2, 3}, true);
+            mTransport.send(large, true);
+            assertArrayEquals(new byte[] {1, 2, 3}, readFrame(in, 0));
+            assertArrayEquals(large, readFrame(in, 0));
+
+            writeFrame(out, 0, large);
+            writeFrame(out, 0, new byte[] {4, 5});
+            assertArrayEquals(large, (byte[]) mHandler.next());
+            assertArrayEquals(new byte[] {4, 5}, (byte[]) mHandler.next());
+
+            writeFrame(out, 1, new byte[] {9, 9});
+            assertArrayEquals(new byte[] {9, 9}, readFrame(in, 2));
+
+            mTransport.close();
+            assertEquals(true, mHandler.next());
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        TransportOptions options = new TransportOptions();
+        options.setSendBufferSize(256 * 1024);
+        options.setSendBufferPolicy(TransportOptions.SEND_BUFFER_FAIL);
+        mTransport = new RawSocket("rs://127.0.0.1:" + mServer.getLocalPort(),
+                Arrays.asList(MessagePackSerializer.NAME));
+        mTransport.connect(mHandler, options);
+        try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            assertTrue(mHandler.next() instanceof MessagePackSerializer);
+
+            // The router doesn't read, so once the socket buffers are full
+            // the send buffer fills up.
+            byte[] payload = new byte[64 * 1024];
+            int sent = 0;
+            while (mTransport.isWritable()) {
+                mTransport.send(payload, true);
+                sent++;
+                assertTrue(sent < 10000);
+            }
+            assertEquals(false, mHandler.mWritability.poll(5, TimeUnit.SECONDS));
+            // The kernel may have taken some more in the meantime.
+            while (true) {
+                try {
+                    mTransport.send(payload, true);
+                } catch (SendBufferFullError expected) {
+                    break;
+                }
+                sent++;
+                assertTrue(sent < 10000);
+            }
+            // Protocol messages are queued anyway.
+            MessagePackSerializer serializer = new MessagePackSerializer();
+            Call call = new Call(2, "com.example.proc", null, null, 0);
+            mTransport.send(call, serializer);
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            for (int i = 0; i < sent; i++) {
+                readFrame(in, 0);
+            }
+            assertArrayEquals(serializer.serialize(call), readFrame(in, 0));
+            assertEquals(true, mHandler.mWritability.poll(5, TimeUnit.SECONDS));
+
+            Publish publish = new Publish(1, "com.example.topic", null, null, false, true, false);
+            CompletableFuture<Void> written = mTransport.sendAsync(publish, serializer);
+            assertArrayEquals(serializer.serialize(publish), readFrame(in, 0));
+            written.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testSerializerFallback() throws Exception {
+        connect();
+        // CBOR is proposed first, reply with "serializer unsupported".
+        try (Socket rejected = accept(0x10)) {
+            try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+                assertTrue(mHandler.next() instanceof MessagePackSerializer);
+            }
+        }
+        assertEquals(true, mHandler.next());
+    }
+
+    @Test
+    public void testMaxLength() throws Exception {
+        connect(MessagePackSerializer.NAME);
+        // The router accepts up to 2^9 bytes.
+        try (Socket socket = accept(MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            mHandler.next();
+            try {
+                mTransport.send(new byte[513], true);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+            mTransport.send(new byte[512], true);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(512, readFrame(in, 0).length);
+
+            // We announced 1 MB, the header alone is enough to drop the connection.
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(1024 * 1024 + 1);
+            out.flush();
+            assertEquals(false, mHandler.next());
+        }
+    }
+
+    @Test
+    public void testHandshakeError() throws Exception {
+        connect(MessagePackSerializer.NAME);
+        // "maximum message length unacceptable"
+        try (Socket socket = accept(0x20)) {
+            assertEquals(false, mHandler.next());
+        }
+    }
+
+    @Test
+    public void testAutoPing() throws Exception {
+        connect(1, MessagePackSerializer.NAME);
+        try (Socket socket = accept(0xf0 | MessagePackSerializer.RAWSOCKET_SERIALIZER_ID)) {
+            mHandler.next();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] ping = readFrame(in, 1);
+            writeFrame(new DataOutputStream(socket.getOutputStream()), 2, ping);
+            readFrame(in, 1);
+            // No PONG this time.
+            assertEquals(false, mHandler.next());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package io.crossbar.autobahn.wamp.transports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.exceptions.SendBufferFullError;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+
+public class SendBufferTest {
+
+    private final List<Boolean> mChanges = new ArrayList<>();
+    // Run on every change, if set.
+    private volatile Runnable mOnChange;
+
+    private final ITransportHandler mHandler = new ITransportHandler() {
+        @Override
+        public void onConnect(ITransport transport, ISerializer serializer) {
+        }
+
+        @Override
+        public void onMessage(byte[] payload, boolean isBinary) {
+        }
+
+        @Override
+        public void onWritabilityChanged(boolean writable) {
+            mChanges.add(writable);
+            Runnable onChange = mOnChange;
+            if (onChange != null) {
+                onChange.run();
+            }
+        }
+
+        @Override
+        public void onLeave(CloseDetails details) {
+        }
+
+        @Override
+        public void onDisconnect(boolean wasClean) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    };
+
+    private SendBuffer newSendBuffer(int policy) {
+        TransportOptions options = new TransportOptions();
+        options.setSendBufferSize(100);
+        options.setSendBufferPolicy(policy);
+        return new SendBuffer(mHandler, options);
+    }
+
+    @Test
+    public void testWaterMarks() {
+        SendBuffer buffer = newSendBuffer(TransportOptions.SEND_BUFFER_UNBOUNDED);
+        assertTrue(buffer.acquire(60, true, true));
+        assertTrue(buffer.isWritable());
+        assertTrue(buffer.acquire(40, true, true));
+        assertFalse(buffer.isWritable());
+        // Queued anyway.
+        assertTrue(buffer.acquire(60, true, true));
+        buffer.release(60);
+        assertFalse(buffer.isWritable());
+        buffer.release(60);
+        assertTrue(buffer.isWritable());
+        assertEquals(2, mChanges.size());
+        assertEquals(false, mChanges.get(0));
+        assertEquals(true, mChanges.get(1));
+    }
+
+    @Test
+    public void testNotifiedWithoutLock() {
+        SendBuffer buffer = newSendBuffer(TransportOptions.SEND_BUFFER_UNBOUNDED);
+        // e.g. a handler that waits for another thread looking at the transport.
+        List<Boolean> seen = new ArrayList<>();
+        mOnChange = () -> {
+            try {
+                seen.add(CompletableFuture.supplyAsync(buffer::isWritable)
+                        .get(5, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                // Timed out, the lock is still held.
+            }
+        };
+        assertTrue(buffer.acquire(100, true, true));
+        buffer.release(100);
+        assertEquals(Arrays.asList(false, true), seen);
+    }
+
+    @Test
+    public void testConcurrentChanges() throws Exception {
+        SendBuffer buffer = newSendBuffer(TransportOptions.SEND_BUFFER_UNBOUNDED);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    buffer.acquire(60, true, true);
+                    buffer.release(60);
+                }
+            }));
+        }
+        for (Thread thread: threads) {
+            thread.start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        // Reported in order, never the same state twice in a row.
+        for (int i = 0; i < mChanges.size(); i++) {
+            assertEquals(i % 2 == 1, mChanges.get(i));
+        }
+        assertTrue(buffer.isWritable());
+        assertTrue(mChanges.isEmpty() || mChanges.get(mChanges.size() - 1));
+    }
+
+    @Test
+    public void testFailAndDrop() {
+        SendBuffer buffer = newSendBuffer(TransportOptions.SEND_BUFFER_FAIL);
+        assertTrue(buffer.acquire(100, true, true));
+        try {
+            buffer.acquire(1, true, true);
+            fail();
+        } catch (SendBufferFullError expected) {
+        }
+
+        // Protocol messages are queued anyway.
+        assertTrue(buffer.acquire(1, true, false));
+
+        buffer = newSendBuffer(TransportOptions.SEND_BUFFER_DROP);
+        assertTrue(buffer.acquire(100, true, true));
+        assertFalse(buffer.acquire(1, true, true));
+        assertTrue(buffer.acquire(1, true, false));
+        buffer.release(101);
+        assertTrue(buffer.acquire(1, true, true));
+    }
+
+    @Test
+    public void testMayDrop() {
+        assertTrue(SendBuffer.mayDrop(
+                new Publish(1, "com.example.topic", null, null, false, true, false)));
+        assertFalse(SendBuffer.mayDrop(
+                new Publish(1, "com.example.topic", null, null, true, true, false)));
+        assertFalse(SendBuffer.mayDrop(new Call(1, "com.example.proc", null, null, 0)));
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        SendBuffer buffer = newSendBuffer(TransportOptions.SEND_BUFFER_BLOCK);
+        assertTrue(buffer.acquire(100, true, true));
+        // I/O threads queue instead of blocking.
+        assertTrue(buffer.acquire(10, false, true));
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(
+                () -> buffer.acquire(10, true, true));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+        buffer.release(110);
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+
+        buffer.acquire(100, true, true);
+        blocked = CompletableFuture.supplyAsync(() -> buffer.acquire(10, true, true));
+        Thread.sleep(100);
+        buffer.close();
+        assertFalse(blocked.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,97 @@
+package io.crossbar.autobahn.wamp.transports;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.utils.Platform;
+
+public class UnixRawSocketTest {
+
+    private Path mPath;
+
+    @After
+    public void tearDown() throws Exception {
+        if (mPath != null) {
+            Files.deleteIfExists(mPath);
+        }
+    }
+
+    @Test
+    public void testConnect() throws Exception {
+        mPath = Files.createTempFile("autobahn", ".sock");
+        Files.delete(mPath);
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        ITransportHandler handler = new ITransportHandler() {
+            @Override
+            public void onConnect(ITransport transport, ISerializer serializer) {
+                events.add(serializer);
+            }
+
+            @Override
+            public void onMessage(byte[] payload, boolean isBinary) {
+                events.add(payload);
+            }
+
+            @Override
+            public void onLeave(CloseDetails details) {
+            }
+
+            @Override
+            public void onDisconnect(boolean wasClean) {
+                events.add(wasClean);
+            }
+
+            @Override
+            public boolean isConnected() {
+                return false;
+            }
+        };
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(mPath));
+            ITransport transport = Platform.autoSelectTransport("unix://" + mPath);
+            assertTrue(transport instanceof UnixRawSocket);
+            transport.connect(handler);
+
+            try (SocketChannel channel = server.accept()) {
+                DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+                DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+                assertEquals(0x7f, in.readInt() >>> 24);
+                out.writeInt(0x7ff30000);
+                assertTrue(events.poll(5, TimeUnit.SECONDS) instanceof CBORSerializer);
+
+                transport.send(new byte[] {1, 2}, true);
+                assertEquals(2, in.readInt());
+                out.writeInt(2);
+                out.write(new byte[] {in.readByte(), in.readByte()});
+                assertArrayEquals(new byte[] {1, 2},
+                        (byte[]) events.poll(5, TimeUnit.SECONDS));
+
+                transport.close();
+                assertEquals(true, events.poll(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+}
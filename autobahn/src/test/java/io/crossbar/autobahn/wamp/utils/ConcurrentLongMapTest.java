@@ -0,0 +1,97 @@
+package io.crossbar.autobahn.wamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrentLongMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertNull(map.put(1, "one"));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertTrue(map.containsKey(1));
+        assertEquals("uno", map.remove(1));
+        assertNull(map.get(1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void testPutIfAbsentAndComputeIfAbsent() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertNull(map.putIfAbsent(7, "a"));
+        assertEquals("a", map.putIfAbsent(7, "b"));
+        assertEquals("a", map.computeIfAbsent(7, key -> "c"));
+        assertEquals("8", map.computeIfAbsent(8, Long::toString));
+        assertFalse(map.remove(8, "x"));
+        assertTrue(map.remove(8, "8"));
+    }
+
+    @Test
+    public void testRehashAndBackwardShiftDelete() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(4, 1);
+        for (long i = 1; i <= 10000; i++) {
+            map.put(i, i);
+        }
+        assertEquals(10000, map.size());
+        for (long i = 1; i <= 10000; i += 2) {
+            assertEquals(Long.valueOf(i), map.remove(i));
+        }
+        for (long i = 1; i <= 10000; i++) {
+            assertEquals(i % 2 == 0 ? Long.valueOf(i) : null, map.get(i));
+        }
+        assertEquals(5000, map.values().size());
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void testZeroKeyRejected() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, "zero"));
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        IDGenerator generator = new IDGenerator();
+        int threads = 8;
+        int perThread = 20000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    long id = generator.next();
+                    map.put(id, id);
+                    if (i % 2 == 0) {
+                        map.remove(id);
+                    }
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Set<Long> values = new HashSet<>(map.values());
+        assertEquals(threads * perThread / 2, map.size());
+        assertEquals(map.size(), values.size());
+        for (Long value: values) {
+            assertEquals(value, map.get(value));
+        }
+    }
+}
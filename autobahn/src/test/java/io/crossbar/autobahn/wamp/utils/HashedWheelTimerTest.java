@@ -0,0 +1,71 @@
+package io.crossbar.autobahn.wamp.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class HashedWheelTimerTest {
+
+    private static HashedWheelTimer newTimer() {
+        return new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8,
+                Executors.defaultThreadFactory());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        HashedWheelTimer timer = newTimer();
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            // Long enough to need more than one round of the wheel.
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(
+                    latch::countDown, 150, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(timeout.isExpired());
+            assertFalse(timeout.cancel());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        HashedWheelTimer timer = newTimer();
+        try {
+            for (int i = 0; i < 50; i++) {
+                timer.newTimeout(() -> { }, 10, TimeUnit.MILLISECONDS);
+                timer.stop();
+                // Must not be picked up by the worker that is shutting down.
+                CountDownLatch latch = new CountDownLatch(1);
+                timer.newTimeout(latch::countDown, 0, TimeUnit.MILLISECONDS);
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        HashedWheelTimer timer = newTimer();
+        try {
+            AtomicBoolean fired = new AtomicBoolean();
+            HashedWheelTimer.Timeout timeout = timer.newTimeout(
+                    () -> fired.set(true), 50, TimeUnit.MILLISECONDS);
+            assertTrue(timeout.cancel());
+            assertTrue(timeout.isCancelled());
+
+            CountDownLatch latch = new CountDownLatch(1);
+            timer.newTimeout(latch::countDown, 100, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertFalse(fired.get());
+        } finally {
+            timer.stop();
+        }
+    }
+}
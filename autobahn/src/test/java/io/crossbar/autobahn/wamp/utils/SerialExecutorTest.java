@@ -0,0 +1,63 @@
+package io.crossbar.autobahn.wamp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SerialExecutorTest {
+
+    @Test
+    public void testOrderPerLane() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            int lanes = 4;
+            int tasks = 10000;
+            List<List<Integer>> seen = new ArrayList<>();
+            List<SerialExecutor> executors = new ArrayList<>();
+            for (int i = 0; i < lanes; i++) {
+                seen.add(new ArrayList<>());
+                executors.add(new SerialExecutor(pool));
+            }
+            CountDownLatch done = new CountDownLatch(lanes * tasks);
+            for (int n = 0; n < tasks; n++) {
+                for (int i = 0; i < lanes; i++) {
+                    List<Integer> lane = seen.get(i);
+                    int value = n;
+                    // Plain list on purpose, a lane must never run two tasks at once.
+                    executors.get(i).execute(() -> {
+                        lane.add(value);
+                        done.countDown();
+                    });
+                }
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            for (List<Integer> lane: seen) {
+                assertEquals(tasks, lane.size());
+                for (int n = 0; n < tasks; n++) {
+                    assertEquals(n, (int) lane.get(n));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopLane() throws Exception {
+        SerialExecutor executor = new SerialExecutor(new CurrentThreadExecutor());
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.execute(done::countDown);
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+    }
+}
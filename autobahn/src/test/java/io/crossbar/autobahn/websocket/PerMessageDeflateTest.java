@@ -0,0 +1,91 @@
+package io.crossbar.autobahn.websocket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import io.crossbar.autobahn.websocket.exceptions.WebSocketException;
+import io.crossbar.autobahn.websocket.types.WebSocketOptions;
+
+public class PerMessageDeflateTest {
+
+    private static WebSocketOptions newOptions() {
+        WebSocketOptions options = new WebSocketOptions();
+        options.setPerMessageDeflate(true);
+        return options;
+    }
+
+    @Test
+    public void testOffer() {
+        WebSocketOptions options = newOptions();
+        assertEquals("permessage-deflate", PerMessageDeflate.offer(options));
+        options.setDeflateClientNoContextTakeover(true);
+        options.setDeflateServerMaxWindowBits(10);
+        assertEquals("permessage-deflate; client_no_context_takeover; server_max_window_bits=10",
+                PerMessageDeflate.offer(options));
+    }
+
+    @Test
+    public void testAccept() throws WebSocketException {
+        WebSocketOptions options = newOptions();
+        assertNull(PerMessageDeflate.accept(null, options));
+        PerMessageDeflate.accept(
+                "permessage-deflate; server_no_context_takeover; server_max_window_bits=12",
+                options).end();
+
+        String[] invalid = {
+                "x-webkit-deflate-frame",
+                "permessage-deflate; client_max_window_bits=10",
+                "permessage-deflate; server_max_window_bits=16",
+                "permessage-deflate, permessage-deflate",
+        };
+        for (String header: invalid) {
+            try {
+                PerMessageDeflate.accept(header, options);
+                fail(header);
+            } catch (WebSocketException expected) {
+            }
+        }
+        try {
+            PerMessageDeflate.accept("permessage-deflate", new WebSocketOptions());
+            fail();
+        } catch (WebSocketException expected) {
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws WebSocketException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("[16,").append(i).append(",{},\"com.example.topic\",[]]");
+        }
+        byte[] payload = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (String header: new String[] {"permessage-deflate",
+                "permessage-deflate; client_no_context_takeover; server_no_context_takeover"}) {
+            PerMessageDeflate writer = PerMessageDeflate.accept(header, newOptions());
+            PerMessageDeflate reader = PerMessageDeflate.accept(header, newOptions());
+            try {
+                for (int i = 0; i < 3; i++) {
+                    byte[] compressed = writer.compress(payload);
+                    assertTrue(compressed.length < payload.length / 4);
+                    assertArrayEquals(payload, reader.decompress(compressed, payload.length));
+                }
+                try {
+                    reader.decompress(writer.compress(payload), payload.length - 1);
+                    fail();
+                } catch (WebSocketException expected) {
+                }
+            } finally {
+                writer.end();
+                reader.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.crossbar.autobahn.websocket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.crossbar.autobahn.websocket.interfaces.IWebSocketConnectionHandler;
+import io.crossbar.autobahn.websocket.types.WebSocketOptions;
+
+public class WebSocketConnectionTest {
+
+    private final ServerSocket mServer;
+    private final WebSocketConnection mConnection = new WebSocketConnection();
+    private final BlockingQueue<Object> mEvents = new LinkedBlockingQueue<>();
+
+    public WebSocketConnectionTest() throws IOException {
+        mServer = new ServerSocket(0);
+        mServer.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    private Object next() throws InterruptedException {
+        Object event = mEvents.poll(5, TimeUnit.SECONDS);
+        if (event == null) {
+            fail("timed out");
+        }
+        return event;
+    }
+
+    // Records the outcome, and whether it was reported on the writer thread.
+    private Consumer<Exception> listener() {
+        return e -> {
+            List<Object> event = new ArrayList<>();
+            event.add(e);
+            event.add(mConnection.isWriterThread());
+            mEvents.add(event);
+        };
+    }
+
+    private Socket connect(int maxFlushDelay) throws Exception {
+        WebSocketOptions options = new WebSocketOptions();
+        options.setMaxFlushDelay(maxFlushDelay);
+        mConnection.connect("ws://127.0.0.1:" + mServer.getLocalPort(),
+                new WebSocketConnectionHandler() {
+                    @Override
+                    public void onOpen() {
+                        mEvents.add("open");
+                    }
+
+                    @Override
+                    public void onClose(int code, String reason) {
+                        mEvents.add(code);
+                    }
+                }, options);
+
+        Socket socket = mServer.accept();
+        socket.setSoTimeout(5000);
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        int matched = 0;
+        byte[] end = {'\r', '\n', '\r', '\n'};
+        while (matched < end.length) {
+            matched = in.readByte() == end[matched] ? matched + 1 : 0;
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        assertEquals("open", next());
+        return socket;
+    }
+
+    // Client frames are masked, short payloads only.
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        assertEquals(0x82, in.readUnsignedByte());
+        int length = in.readUnsignedByte();
+        assertEquals(0x80, length & 0x80);
+        byte[] mask = new byte[4];
+        in.readFully(mask);
+        byte[] payload = new byte[length & 0x7f];
+        in.readFully(payload);
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] ^= mask[i % 4];
+        }
+        return payload;
+    }
+
+    @Test
+    public void testFlushOnDrain() throws Exception {
+        try (Socket socket = connect(0)) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            mConnection.sendMessage(new byte[] {1, 2, 3}, true, listener());
+            assertArrayEquals(new byte[] {1, 2, 3}, readFrame(in));
+            List<?> written = (List<?>) next();
+            assertNull(written.get(0));
+            assertEquals(true, written.get(1));
+        }
+    }
+
+    @Test
+    public void testMaxFlushDelay() throws Exception {
+        try (Socket socket = connect(500)) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            for (int i = 0; i < 3; i++) {
+                mConnection.sendMessage(new byte[] {(byte) i}, true, listener());
+            }
+
+            // Held back until the delay expires.
+            socket.setSoTimeout(200);
+            try {
+                in.readByte();
+                fail();
+            } catch (SocketTimeoutException expected) {
+            }
+            assertTrue(mEvents.isEmpty());
+
+            socket.setSoTimeout(5000);
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(new byte[] {(byte) i}, readFrame(in));
+            }
+            for (int i = 0; i < 3; i++) {
+                List<?> written = (List<?>) next();
+                assertNull(written.get(0));
+                assertEquals(true, written.get(1));
+            }
+        }
+    }
+
+    @Test
+    public void testSendAfterConnectionLost() throws Exception {
+        try (Socket socket = connect(0)) {
+            // The router goes away.
+        }
+        assertEquals(IWebSocketConnectionHandler.CLOSE_CONNECTION_LOST, next());
+        mConnection.sendMessage(new byte[] {1}, true, listener());
+        List<?> written = (List<?>) next();
+        assertNotNull(written.get(0));
+        assertEquals(false, written.get(1));
+    }
+}
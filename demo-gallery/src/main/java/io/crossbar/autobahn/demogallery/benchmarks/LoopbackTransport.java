@@ -0,0 +1,168 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+
+/**
+ * An in-process transport that plays a minimal WAMP router, so that
+ * benchmarks can drive a {@link io.crossbar.autobahn.wamp.Session}
+ * without a network or a real router.
+ * <p>
+ * Replies are delivered from a single "router" thread, the same way a
+ * network transport delivers them from its I/O thread. CALLs are echoed
+ * back as RESULTs.
+ */
+public class LoopbackTransport implements ITransport {
+
+    private final ISerializer mSerializer;
+    private final AtomicLong mIDs = new AtomicLong();
+    private final AtomicLong mSentMessages = new AtomicLong();
+
+    private ExecutorService mRouterThread;
+    private ITransportHandler mHandler;
+    private TransportOptions mOptions;
+
+    public LoopbackTransport(ISerializer serializer) {
+        mSerializer = serializer;
+    }
+
+    /**
+     * Number of messages the session has handed to this transport.
+     */
+    public long getSentMessages() {
+        return mSentMessages.get();
+    }
+
+    @Override
+    public void send(byte[] payload, boolean isBinary) {
+        mSentMessages.incrementAndGet();
+        List<Object> message = mSerializer.unserialize(payload, isBinary);
+        List<Object> reply = route(message);
+        if (reply != null) {
+            byte[] replyBytes = mSerializer.serialize(reply);
+            mRouterThread.execute(() -> deliver(replyBytes));
+        }
+    }
+
+    /**
+     * Feeds a router-originated message (e.g. an EVENT) into the session,
+     * on the calling thread.
+     */
+    public void deliver(byte[] payload) {
+        try {
+            mHandler.onMessage(payload, mSerializer.isBinary());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public byte[] serialize(List<Object> message) {
+        return mSerializer.serialize(message);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> route(List<Object> message) {
+        int type = (int) message.get(0);
+        switch (type) {
+            case 1: // HELLO
+                return reply(2, mIDs.incrementAndGet(), Collections.emptyMap());
+            case 6: // GOODBYE
+                return reply(6, Collections.emptyMap(), "wamp.close.goodbye_and_out");
+            case 16: { // PUBLISH
+                Map<String, Object> options = (Map<String, Object>) message.get(2);
+                if (Boolean.TRUE.equals(options.get("acknowledge"))) {
+                    return reply(17, message.get(1), mIDs.incrementAndGet());
+                }
+                return null;
+            }
+            case 32: // SUBSCRIBE
+                return reply(33, message.get(1), mIDs.incrementAndGet());
+            case 48: { // CALL
+                List<Object> reply = reply(50, message.get(1), Collections.emptyMap());
+                if (message.size() > 4) {
+                    reply.add(message.get(4));
+                }
+                return reply;
+            }
+            case 64: // REGISTER
+                return reply(65, message.get(1), mIDs.incrementAndGet());
+            default:
+                return null;
+        }
+    }
+
+    private static List<Object> reply(Object... items) {
+        List<Object> reply = new ArrayList<>();
+        Collections.addAll(reply, items);
+        return reply;
+    }
+
+    @Override
+    public void connect(ITransportHandler transportHandler) throws Exception {
+        connect(transportHandler, new TransportOptions());
+    }
+
+    @Override
+    public void connect(ITransportHandler transportHandler, TransportOptions options)
+            throws Exception {
+        mHandler = transportHandler;
+        mOptions = options;
+        mRouterThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loopback-router");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transportHandler.onConnect(this, mSerializer);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mRouterThread != null && !mRouterThread.isShutdown();
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (mRouterThread != null) {
+            mRouterThread.shutdownNow();
+            mHandler.onLeave(new CloseDetails(CloseDetails.REASON_DEFAULT, null));
+            mHandler.onDisconnect(true);
+        }
+    }
+
+    @Override
+    public void abort() throws Exception {
+        close();
+    }
+
+    @Override
+    public void setOptions(TransportOptions options) {
+        mOptions = options;
+    }
+
+    @Override
+    public TransportOptions getOptions() {
+        return mOptions;
+    }
+}
@@ -0,0 +1,142 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Result;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.serializers.FlatSerializer;
+
+import static io.crossbar.autobahn.wamp.messages.MessageMap.MESSAGE_TYPE_MAP;
+
+/**
+ * Inbound decode throughput of EVENT and RESULT frames.
+ * <p>
+ * "reflective" is the previous decode path (class lookup in
+ * MESSAGE_TYPE_MAP plus getMethod("parse").invoke()), "table" is the
+ * type-code indexed parser table. The *Parse variants start from the
+ * already unserialized raw message to isolate the dispatch cost from
+ * the serializer. "lazy" keeps args/kwargs as raw bytes, "lazyPojo" then
+ * decodes the first arg straight into a POJO, as a typed subscriber does.
+ * The "flat" serializer reads IDs and topic in place from its fixed layout.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=MessageDecode
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDecodeBenchmark {
+
+    public static class Quote {
+        public String symbol;
+        public double price;
+    }
+
+    @Param({"EVENT", "RESULT"})
+    public String messageType;
+
+    @Param({"cbor", "flat"})
+    public String serializer;
+
+    private ISerializer mSerializer;
+    private byte[] mPayload;
+    private List<Object> mRawMessage;
+
+    @Setup
+    public void setup() {
+        mSerializer = "flat".equals(serializer) ? new FlatSerializer() : new CBORSerializer();
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("symbol", "ACME");
+        kwargs.put("price", 101.25);
+        List<Object> args = Arrays.asList(kwargs, "two", 3.0);
+
+        List<Object> message;
+        if ("EVENT".equals(messageType)) {
+            message = new Event(1234, 5678, null, false, args, kwargs).marshal();
+        } else {
+            message = new Result(1234, args, kwargs).marshal();
+        }
+        mPayload = mSerializer.serialize(message);
+        mRawMessage = mSerializer.unserialize(mPayload, true);
+    }
+
+    @Benchmark
+    public IMessage reflective() throws Exception {
+        return reflectiveParse(mSerializer.unserialize(mPayload, true));
+    }
+
+    @Benchmark
+    public IMessage table() {
+        return MessageMap.parse(mSerializer.unserialize(mPayload, true));
+    }
+
+    @Benchmark
+    public IMessage lazy() {
+        return MessageMap.parse(mSerializer.unserializeLazily(mPayload, true));
+    }
+
+    @Benchmark
+    public Quote eagerPojo() {
+        IMessage message = MessageMap.parse(mSerializer.unserialize(mPayload, true));
+        return mSerializer.convertValue(args(message).get(0), Quote.class);
+    }
+
+    @Benchmark
+    public Quote lazyPojo() {
+        IMessage message = MessageMap.parse(mSerializer.unserializeLazily(mPayload, true));
+        return mSerializer.convertArg(args(message), 0, Quote.class);
+    }
+
+    @Benchmark
+    public IMessage reflectiveParse() throws Exception {
+        return reflectiveParse(mRawMessage);
+    }
+
+    @Benchmark
+    public IMessage tableParse() {
+        return MessageMap.parse(mRawMessage);
+    }
+
+    private static List<Object> args(IMessage message) {
+        return message instanceof Event ? ((Event) message).args : ((Result) message).args;
+    }
+
+    private static IMessage reflectiveParse(List<Object> rawMessage) throws Exception {
+        int type = (int) rawMessage.get(0);
+        Class<? extends IMessage> messageKlass = MESSAGE_TYPE_MAP.get(type);
+        return (IMessage) messageKlass.getMethod("parse", List.class).invoke(null, rawMessage);
+    }
+}
@@ -0,0 +1,110 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.IMessage;
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.messages.Error;
+import io.crossbar.autobahn.wamp.messages.Invocation;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.messages.Yield;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+
+/**
+ * Outbound encode cost of CALL, PUBLISH, YIELD and ERROR frames.
+ * <p>
+ * "marshal" is the previous send path, which builds the message as a
+ * List/Map tree and hands that to the ObjectMapper, "stream" lets the
+ * message write itself to the serializer's generator. Add "-prof gc" to
+ * the JMH args to see the bytes allocated per op.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=OutboundEncode
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutboundEncodeBenchmark {
+
+    @Param({"json", "cbor", "msgpack"})
+    public String serializer;
+
+    @Param({"CALL", "PUBLISH", "YIELD", "ERROR"})
+    public String messageType;
+
+    private ISerializer mSerializer;
+    private IMessage mMessage;
+
+    @Setup
+    public void setup() {
+        if ("json".equals(serializer)) {
+            mSerializer = new JSONSerializer();
+        } else if ("cbor".equals(serializer)) {
+            mSerializer = new CBORSerializer();
+        } else {
+            mSerializer = new MessagePackSerializer();
+        }
+
+        Map<String, Object> kwargs = new HashMap<>();
+        kwargs.put("symbol", "ACME");
+        kwargs.put("price", 101.25);
+        List<Object> args = Arrays.asList("one", 2, 3.0);
+
+        switch (messageType) {
+            case "CALL":
+                mMessage = new Call(1234, "com.example.quote", args, kwargs, 5000);
+                break;
+            case "PUBLISH":
+                mMessage = new Publish(1234, "com.example.quote", args, kwargs, false, true, false);
+                break;
+            case "YIELD":
+                mMessage = new Yield(1234, args, kwargs);
+                break;
+            default:
+                mMessage = new Error(Invocation.MESSAGE_TYPE, 1234, "com.example.error", args, kwargs);
+                break;
+        }
+    }
+
+    @Benchmark
+    public byte[] marshal() {
+        return mSerializer.serialize(mMessage.marshal());
+    }
+
+    @Benchmark
+    public byte[] stream() {
+        return mSerializer.serialize(mMessage);
+    }
+}
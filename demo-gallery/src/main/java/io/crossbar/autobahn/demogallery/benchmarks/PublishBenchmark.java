@@ -0,0 +1,78 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.Session;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.types.Publication;
+import io.crossbar.autobahn.wamp.types.PublishOptions;
+import io.crossbar.autobahn.wamp.utils.CurrentThreadExecutor;
+
+/**
+ * Publishes/sec from one Session: the default fire-and-forget publish
+ * against an acknowledged publish that waits for PUBLISHED.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=Publish
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublishBenchmark {
+
+    private static final String TOPIC = "com.example.telemetry";
+
+    private final PublishOptions mAcknowledged = new PublishOptions(true, true);
+
+    private LoopbackTransport mTransport;
+    private Session mSession;
+
+    @Setup
+    public void setup() throws Exception {
+        mTransport = new LoopbackTransport(new CBORSerializer());
+        mSession = new Session(new CurrentThreadExecutor());
+        mTransport.connect(mSession);
+        mSession.join("realm1").get(5, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mTransport.close();
+    }
+
+    @Benchmark
+    public CompletableFuture<Publication> fireAndForget() {
+        return mSession.publish(TOPIC, 42);
+    }
+
+    @Benchmark
+    public Publication acknowledged() throws Exception {
+        return mSession.publish(TOPIC, mAcknowledged, 42).get(5, TimeUnit.SECONDS);
+    }
+}
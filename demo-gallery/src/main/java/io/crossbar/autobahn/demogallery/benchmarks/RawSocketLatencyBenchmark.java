@@ -0,0 +1,165 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.transports.NettyRawSocket;
+import io.crossbar.autobahn.wamp.transports.RawSocket;
+import io.crossbar.autobahn.wamp.transports.UnixRawSocket;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+
+/**
+ * Round trip of a 128 byte message through the RawSocket transports to an
+ * in-process echo router: RawSocket over TCP loopback ("tcp") and over a
+ * Unix domain socket ("unix"), and NettyRawSocket over TCP loopback
+ * ("netty").
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=RawSocketLatency
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawSocketLatencyBenchmark {
+
+    @Param({"tcp", "unix", "netty"})
+    public String transport;
+
+    private final BlockingQueue<byte[]> mReceived = new LinkedBlockingQueue<>();
+    private final byte[] mPayload = new byte[128];
+
+    private ServerSocketChannel mServer;
+    private Path mPath;
+    private ITransport mTransport;
+
+    @Setup
+    public void setup() throws Exception {
+        String uri;
+        if ("unix".equals(transport)) {
+            mPath = Files.createTempFile("autobahn", ".sock");
+            Files.delete(mPath);
+            mServer = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            mServer.bind(UnixDomainSocketAddress.of(mPath));
+            uri = "unix://" + mPath;
+            mTransport = new UnixRawSocket(uri);
+        } else {
+            mServer = ServerSocketChannel.open();
+            mServer.bind(new InetSocketAddress("127.0.0.1", 0));
+            int port = ((InetSocketAddress) mServer.getLocalAddress()).getPort();
+            uri = "rs://127.0.0.1:" + port;
+            if ("netty".equals(transport)) {
+                mTransport = new NettyRawSocket(uri);
+            } else {
+                mTransport = new RawSocket(uri);
+            }
+        }
+        Thread router = new Thread(this::echo, "EchoRouter");
+        router.setDaemon(true);
+        router.start();
+
+        mTransport.connect(new ITransportHandler() {
+            @Override
+            public void onConnect(ITransport transport, ISerializer serializer) {
+                mReceived.add(new byte[0]);
+            }
+
+            @Override
+            public void onMessage(byte[] payload, boolean isBinary) {
+                mReceived.add(payload);
+            }
+
+            @Override
+            public void onLeave(CloseDetails details) {
+            }
+
+            @Override
+            public void onDisconnect(boolean wasClean) {
+            }
+
+            @Override
+            public boolean isConnected() {
+                return true;
+            }
+        });
+        mReceived.take();
+    }
+
+    // Accepts the handshake and echoes every frame.
+    private void echo() {
+        try (SocketChannel channel = mServer.accept()) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            int handshake = in.readInt();
+            out.writeInt(0x7ff00000 | (handshake & 0x000f0000));
+            while (true) {
+                int header = in.readInt();
+                byte[] frame = new byte[4 + (header & 0xffffff)];
+                in.readFully(frame, 4, frame.length - 4);
+                frame[0] = (byte) (header >>> 24);
+                frame[1] = (byte) (header >>> 16);
+                frame[2] = (byte) (header >>> 8);
+                frame[3] = (byte) header;
+                out.write(frame);
+            }
+        } catch (IOException ignore) {
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mTransport.close();
+        mServer.close();
+        if (mPath != null) {
+            Files.deleteIfExists(mPath);
+        }
+    }
+
+    @Benchmark
+    public byte[] roundTrip() throws InterruptedException {
+        mTransport.send(mPayload, true);
+        return mReceived.take();
+    }
+}
@@ -0,0 +1,172 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.transports.NettyWebSocket;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+
+/**
+ * Bursts of PUBLISH messages through {@link NettyWebSocket} to a local
+ * WebSocket server, with the negotiated CBOR serializer. "array"
+ * serializes to a byte[] and sends that, "message" lets the transport
+ * serialize straight into a pooled buffer of the channel. Run with
+ * "-prof gc" to see the allocations per message.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=SendBuffer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendBufferBenchmark {
+
+    private static final int BURST = 1000;
+
+    @Param({"array", "message"})
+    public String path;
+
+    private final AtomicLong mReceived = new AtomicLong();
+
+    private NioEventLoopGroup mServerGroup;
+    private Channel mServerChannel;
+    private NettyWebSocket mTransport;
+    private ISerializer mSerializer;
+    private Publish mPublish;
+
+    @Setup
+    public void setup() throws Exception {
+        mServerGroup = new NioEventLoopGroup(1);
+        mServerChannel = new ServerBootstrap()
+                .group(mServerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(
+                                new HttpServerCodec(),
+                                new HttpObjectAggregator(65536),
+                                new WebSocketServerProtocolHandler("/ws", "wamp.2.cbor"),
+                                new SimpleChannelInboundHandler<WebSocketFrame>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx,
+                                                                WebSocketFrame frame) {
+                                        mReceived.incrementAndGet();
+                                    }
+                                });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        int port = ((InetSocketAddress) mServerChannel.localAddress()).getPort();
+
+        CountDownLatch connected = new CountDownLatch(1);
+        mTransport = new NettyWebSocket(String.format("ws://127.0.0.1:%d/ws", port));
+        mTransport.connect(new ITransportHandler() {
+            @Override
+            public void onConnect(ITransport transport, ISerializer serializer) {
+                mSerializer = serializer;
+                connected.countDown();
+            }
+
+            @Override
+            public void onMessage(byte[] payload, boolean isBinary) {
+            }
+
+            @Override
+            public void onLeave(CloseDetails details) {
+            }
+
+            @Override
+            public void onDisconnect(boolean wasClean) {
+            }
+
+            @Override
+            public boolean isConnected() {
+                return connected.getCount() == 0;
+            }
+        });
+        if (!connected.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("WebSocket handshake timed out");
+        }
+
+        Map<String, Object> kwargs = new HashMap<>();
+        for (int i = 0; i < 16; i++) {
+            kwargs.put("key" + i, i * 1.5);
+        }
+        char[] text = new char[256];
+        Arrays.fill(text, 'x');
+        mPublish = new Publish(1, "com.example.topic", Arrays.asList(new String(text), 42),
+                kwargs, false, false, false);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mTransport.close();
+        mServerChannel.close().sync();
+        mServerGroup.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst() {
+        long target = mReceived.get() + BURST;
+        for (int i = 0; i < BURST; i++) {
+            if ("message".equals(path)) {
+                mTransport.send(mPublish, mSerializer);
+            } else {
+                mTransport.send(mSerializer.serialize(mPublish), true);
+            }
+        }
+        while (mReceived.get() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Call;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.serializers.JSONSerializer;
+import io.crossbar.autobahn.wamp.serializers.MessagePackSerializer;
+import io.crossbar.autobahn.wamp.serializers.SerializerRegistry;
+
+/**
+ * Per-connection serializer setup cost: obtaining the serializer for the
+ * negotiated subprotocol and encoding the first CALL with it.
+ * <p>
+ * "perConnection" constructs a new serializer (and ObjectMapper) the way
+ * transports used to on every connect, "shared" takes it from the
+ * {@link SerializerRegistry}. Add "-prof gc" to the JMH args to see the
+ * bytes allocated per connect.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=SerializerStartup
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerStartupBenchmark {
+
+    private static final Call CALL = new Call(
+            1, "com.example.add", Arrays.asList(1, 2), null, 0);
+
+    @Param({JSONSerializer.NAME, CBORSerializer.NAME, MessagePackSerializer.NAME})
+    public String serializer;
+
+    @Benchmark
+    public byte[] perConnection() {
+        ISerializer serializer;
+        switch (this.serializer) {
+            case CBORSerializer.NAME:
+                serializer = new CBORSerializer();
+                break;
+            case MessagePackSerializer.NAME:
+                serializer = new MessagePackSerializer();
+                break;
+            default:
+                serializer = new JSONSerializer();
+                break;
+        }
+        return serializer.serialize(CALL);
+    }
+
+    @Benchmark
+    public byte[] shared() {
+        return SerializerRegistry.get(serializer).serialize(CALL);
+    }
+}
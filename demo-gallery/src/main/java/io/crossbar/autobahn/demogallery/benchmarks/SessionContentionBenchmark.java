@@ -0,0 +1,101 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.Session;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+import io.crossbar.autobahn.wamp.types.CallResult;
+import io.crossbar.autobahn.wamp.utils.CurrentThreadExecutor;
+
+/**
+ * Calls/sec through one shared Session as the number of caller threads
+ * grows. Each operation is a full CALL/RESULT round trip against the
+ * in-process {@link LoopbackTransport}, with RESULTs delivered from a
+ * separate router thread so the request tables see real contention.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=SessionContention
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionContentionBenchmark {
+
+    private static final String PROCEDURE = "com.example.echo";
+
+    private LoopbackTransport mTransport;
+    private Session mSession;
+
+    @Setup
+    public void setup() throws Exception {
+        mTransport = new LoopbackTransport(new CBORSerializer());
+        mSession = new Session(new CurrentThreadExecutor());
+        mTransport.connect(mSession);
+        mSession.join("realm1").get(5, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mTransport.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CallResult callers01() throws Exception {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public CallResult callers02() throws Exception {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CallResult callers04() throws Exception {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public CallResult callers08() throws Exception {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public CallResult callers16() throws Exception {
+        return call();
+    }
+
+    private CallResult call() throws Exception {
+        return mSession.call(PROCEDURE, 42).get(5, TimeUnit.SECONDS);
+    }
+}
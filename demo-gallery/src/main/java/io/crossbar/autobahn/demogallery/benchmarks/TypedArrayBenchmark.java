@@ -0,0 +1,103 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.messages.Event;
+import io.crossbar.autobahn.wamp.messages.MessageMap;
+import io.crossbar.autobahn.wamp.messages.Publish;
+import io.crossbar.autobahn.wamp.serializers.CBORSerializer;
+
+/**
+ * Publishing and receiving a double vector with the CBOR serializer with
+ * typed arrays enabled, as an RFC 8746 typed array ("typed", a double[])
+ * and as a CBOR array of boxed numbers ("boxed", a List of Double). The
+ * receiving side converts the arg to a double[], as a typed handler would.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=TypedArray
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypedArrayBenchmark {
+
+    @Param({"1024"})
+    public int length;
+
+    private ISerializer mSerializer;
+    private double[] mVector;
+    private List<Object> mBoxedVector;
+    private byte[] mTypedEvent;
+    private byte[] mBoxedEvent;
+
+    @Setup
+    public void setup() {
+        mSerializer = new CBORSerializer(true);
+        mVector = new double[length];
+        mBoxedVector = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            mVector[i] = i * 0.25;
+            mBoxedVector.add(mVector[i]);
+        }
+        mTypedEvent = mSerializer.serialize(new Event(
+                1, 2, null, false, Collections.singletonList(mVector), null));
+        mBoxedEvent = mSerializer.serialize(new Event(
+                1, 2, null, false, Collections.singletonList(mBoxedVector), null));
+    }
+
+    @Benchmark
+    public byte[] publishTyped() {
+        return mSerializer.serialize(new Publish(1, "com.example.vector",
+                Collections.singletonList(mVector), null, false, true, false));
+    }
+
+    @Benchmark
+    public byte[] publishBoxed() {
+        return mSerializer.serialize(new Publish(1, "com.example.vector",
+                Collections.singletonList(mBoxedVector), null, false, true, false));
+    }
+
+    @Benchmark
+    public double[] receiveTyped() {
+        return receive(mTypedEvent);
+    }
+
+    @Benchmark
+    public double[] receiveBoxed() {
+        return receive(mBoxedEvent);
+    }
+
+    private double[] receive(byte[] payload) {
+        Event event = (Event) MessageMap.parse(mSerializer.unserializeLazily(payload, true));
+        return mSerializer.convertArg(event.args, 0, double[].class);
+    }
+}
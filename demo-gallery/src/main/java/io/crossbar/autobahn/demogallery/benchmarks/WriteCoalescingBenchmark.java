@@ -0,0 +1,184 @@
+///////////////////////////////////////////////////////////////////////////////
+//
+//   AutobahnJava - http://crossbar.io/autobahn
+//
+//   Copyright (c) Crossbar.io Technologies GmbH and contributors
+//
+//   Licensed under the MIT License.
+//   http://www.opensource.org/licenses/mit-license.php
+//
+///////////////////////////////////////////////////////////////////////////////
+
+package io.crossbar.autobahn.demogallery.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.crossbar.autobahn.wamp.interfaces.ISerializer;
+import io.crossbar.autobahn.wamp.interfaces.ITransport;
+import io.crossbar.autobahn.wamp.interfaces.ITransportHandler;
+import io.crossbar.autobahn.wamp.transports.NettyWebSocket;
+import io.crossbar.autobahn.wamp.types.CloseDetails;
+import io.crossbar.autobahn.wamp.types.TransportOptions;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+
+/**
+ * Bursts of small WAMP-sized messages through {@link NettyWebSocket} to a
+ * local WebSocket server, reporting messages/sec and write syscalls/sec.
+ * Their ratio is the number of messages coalesced per write.
+ * <p>
+ * Write syscalls are taken from /proc/self/io (syscw), so they are only
+ * reported on Linux. The server only reads, so they're the client's writes.
+ *
+ * Run with: gradle :demo-gallery:jmh -PbuildPlatform=netty -PjmhArgs=WriteCoalescing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteCoalescingBenchmark {
+
+    private static final int BURST = 1000;
+
+    // Max flush delay in milliseconds, see TransportOptions.setMaxFlushDelay().
+    @Param({"0", "1"})
+    public int maxFlushDelay;
+
+    private final AtomicLong mReceived = new AtomicLong();
+    private final byte[] mPayload = new byte[64];
+
+    private NioEventLoopGroup mServerGroup;
+    private Channel mServerChannel;
+    private NettyWebSocket mTransport;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long messages;
+        public long writeSyscalls;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        mServerGroup = new NioEventLoopGroup(1);
+        mServerChannel = new ServerBootstrap()
+                .group(mServerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(
+                                new HttpServerCodec(),
+                                new HttpObjectAggregator(65536),
+                                new WebSocketServerProtocolHandler(
+                                        "/ws", "wamp.2.cbor,wamp.2.msgpack,wamp.2.json"),
+                                new SimpleChannelInboundHandler<WebSocketFrame>() {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx,
+                                                                WebSocketFrame frame) {
+                                        mReceived.incrementAndGet();
+                                    }
+                                });
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+        int port = ((InetSocketAddress) mServerChannel.localAddress()).getPort();
+
+        CountDownLatch connected = new CountDownLatch(1);
+        TransportOptions options = new TransportOptions();
+        options.setMaxFlushDelay(maxFlushDelay);
+        mTransport = new NettyWebSocket(String.format("ws://127.0.0.1:%d/ws", port));
+        mTransport.connect(new ITransportHandler() {
+            @Override
+            public void onConnect(ITransport transport, ISerializer serializer) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onMessage(byte[] payload, boolean isBinary) {
+            }
+
+            @Override
+            public void onLeave(CloseDetails details) {
+            }
+
+            @Override
+            public void onDisconnect(boolean wasClean) {
+            }
+
+            @Override
+            public boolean isConnected() {
+                return connected.getCount() == 0;
+            }
+        }, options);
+        if (!connected.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("WebSocket handshake timed out");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        mTransport.close();
+        mServerChannel.close().sync();
+        mServerGroup.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    public void burst(Counters counters) throws Exception {
+        long target = mReceived.get() + BURST;
+        long syscallsBefore = readWriteSyscalls();
+        for (int i = 0; i < BURST; i++) {
+            mTransport.send(mPayload, true);
+        }
+        while (mReceived.get() < target) {
+            Thread.onSpinWait();
+        }
+        counters.messages += BURST;
+        counters.writeSyscalls += readWriteSyscalls() - syscallsBefore;
+    }
+
+    private static long readWriteSyscalls() {
+        try {
+            for (String line: Files.readAllLines(Paths.get("/proc/self/io"))) {
+                if (line.startsWith("syscw:")) {
+                    return Long.parseLong(line.substring(6).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // Not on Linux.
+        }
+        return 0;
+    }
+}